@@ -0,0 +1,146 @@
+package com.ivor.todolist;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.widget.TextView;
+
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.material.chip.Chip;
+import com.ivor.todolist.adapter.TodoAdapter;
+import com.ivor.todolist.database.TodoQuery;
+import com.ivor.todolist.database.TodoRepository;
+import com.ivor.todolist.model.Todo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 配置变化（Activity 重建）后沿用同一个 TodoListViewModel：筛选和排序条件都保留，
+ * 新的界面创建新的 Adapter（颜色跟随新的主题），用保留的列表内容按原来的顺序填充，并恢复选中的筛选；
+ * 整个重建过程不读取数据库。
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainActivityRecreateTest {
+    private static final String TEST_DATABASE = "recreate_test.db";
+    private static final long TIMEOUT_MS = 5_000;
+
+    private Context context;
+    // 未完成的待办按标题（不区分大小写）排列后的 ID 和标题
+    private final List<Long> expectedIds = new ArrayList<>();
+    private final List<String> expectedTitles = Arrays.asList("alpha", "bravo", "Charlie", "Delta", "Echo");
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DATABASE);
+        TodoRepository.useDatabaseForTesting(context, TEST_DATABASE);
+
+        TodoRepository repository = new TodoRepository(context);
+        long[] ids = new long[expectedTitles.size()];
+        String[] insertOrder = {"Delta", "alpha", "Echo", "Charlie", "bravo"};
+        for (String title : insertOrder) {
+            ids[expectedTitles.indexOf(title)] = repository.insertTodo(new Todo(title, "Description"), null).get();
+        }
+        for (long id : ids) {
+            expectedIds.add(id);
+        }
+        // 已完成的不在未完成筛选中
+        Todo completed = new Todo("Zulu", null);
+        completed.setCompleted(true);
+        repository.insertTodo(completed, null).get();
+        repository.close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        TodoRepository.useDatabaseForTesting(context, null);
+        // 测试数据库的连接在写线程上关闭，等它完成后再删除文件
+        TodoRepository repository = new TodoRepository(context);
+        repository.flushQueuedChanges().get();
+        repository.close();
+        context.deleteDatabase(TEST_DATABASE);
+    }
+
+    @Test
+    public void recreate_keepsListStateWithoutReading() {
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            TodoListViewModel[] before = new TodoListViewModel[1];
+            TodoQuery[] query = new TodoQuery[1];
+            RecyclerView.Adapter<?>[] adapter = new RecyclerView.Adapter<?>[1];
+            scenario.onActivity(activity -> {
+                TodoListViewModel viewModel = new ViewModelProvider(activity).get(TodoListViewModel.class);
+                ((Chip) activity.findViewById(R.id.chipIncomplete)).setChecked(true);
+                viewModel.sortTodos(viewModel.getCurrentQuery().buildUpon().clearOrder()
+                        .orderBy(TodoQuery.SortKey.TITLE, false));
+                before[0] = viewModel;
+                query[0] = viewModel.getCurrentQuery();
+                adapter[0] = ((RecyclerView) activity.findViewById(R.id.recyclerViewTodos)).getAdapter();
+            });
+            // 列表和统计都读取完成后才开始计数
+            awaitDisplayed(scenario);
+            int readsBefore = TodoRepository.getReadCount();
+
+            scenario.recreate();
+
+            scenario.onActivity(activity -> {
+                TodoListViewModel viewModel = new ViewModelProvider(activity).get(TodoListViewModel.class);
+                assertSame(before[0], viewModel);
+                assertSame(query[0], viewModel.getCurrentQuery());
+                assertEquals(TodoAdapter.FilterType.INCOMPLETE, viewModel.getCurrentFilter());
+                assertTrue(((Chip) activity.findViewById(R.id.chipIncomplete)).isChecked());
+                RecyclerView recyclerView = activity.findViewById(R.id.recyclerViewTodos);
+                assertNotNull(recyclerView.getAdapter());
+                assertNotSame(adapter[0], recyclerView.getAdapter());
+            });
+
+            // 新的 Adapter 在后台创建行数据后按原来的顺序显示相同的内容，期间没有发起任何读取
+            awaitDisplayed(scenario);
+            assertEquals(readsBefore, TodoRepository.getReadCount());
+        }
+    }
+
+    // 等待列表按 expectedIds 的顺序显示 expectedTitles，且统计已读取
+    private void awaitDisplayed(ActivityScenario<MainActivity> scenario) {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        List<Long> ids = new ArrayList<>();
+        List<String> titles = new ArrayList<>();
+        boolean[] statsLoaded = new boolean[1];
+        while (SystemClock.uptimeMillis() < deadline) {
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+            scenario.onActivity(activity -> {
+                statsLoaded[0] = new ViewModelProvider(activity).get(TodoListViewModel.class).getStats() != null;
+                ids.clear();
+                titles.clear();
+                RecyclerView recyclerView = activity.findViewById(R.id.recyclerViewTodos);
+                RecyclerView.Adapter<?> adapter = recyclerView.getAdapter();
+                for (int i = 0; i < adapter.getItemCount(); i++) {
+                    ids.add(adapter.getItemId(i));
+                    RecyclerView.ViewHolder holder = recyclerView.findViewHolderForAdapterPosition(i);
+                    titles.add(holder != null
+                            ? ((TextView) holder.itemView.findViewById(R.id.textViewTitle)).getText().toString()
+                            : null);
+                }
+            });
+            if (statsLoaded[0] && ids.equals(expectedIds) && titles.equals(expectedTitles)) {
+                return;
+            }
+            SystemClock.sleep(50);
+        }
+        assertTrue(statsLoaded[0]);
+        assertEquals(expectedIds, ids);
+        assertEquals(expectedTitles, titles);
+    }
+}
@@ -0,0 +1,73 @@
+package com.ivor.todolist.adapter;
+
+import android.content.Context;
+import android.os.Debug;
+import android.view.ContextThemeWrapper;
+import android.widget.FrameLayout;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.ivor.todolist.R;
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 模拟快速滑动时反复绑定不同的行：预热之后，每次绑定都不应再分配对象。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoAdapterBindAllocationTest {
+    private static final int ROW_COUNT = 100;
+    private static final int BIND_COUNT = 2_000;
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void bind_doesNotAllocate() {
+        Context context = new ContextThemeWrapper(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(), R.style.Theme_TodoList);
+        int[] allocations = new int[1];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            TodoAdapter adapter = new TodoAdapter(context);
+            TodoAdapter.TodoViewHolder holder = adapter.onCreateViewHolder(new FrameLayout(context), 0);
+            List<TodoRow> rows = new TodoRow.Factory(context).createAll(createTodos());
+
+            // 预热：首次设置各种状态时视图内部可能会创建缓存
+            for (TodoRow row : rows) {
+                holder.bind(row);
+            }
+
+            Debug.startAllocCounting();
+            Debug.resetThreadAllocCount();
+            for (int i = 0; i < BIND_COUNT; i++) {
+                holder.bind(rows.get(i % ROW_COUNT));
+            }
+            allocations[0] = Debug.getThreadAllocCount();
+            Debug.stopAllocCounting();
+        });
+
+        assertEquals("allocations during " + BIND_COUNT + " binds", 0, allocations[0]);
+    }
+
+    // 覆盖各种显示状态：有无描述、完成与否、三种优先级、无截止时间、逾期和未逾期
+    private static List<Todo> createTodos() {
+        long now = System.currentTimeMillis();
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < ROW_COUNT; i++) {
+            Date dueDate = i % 3 == 0 ? null : new Date(now + (i % 2 == 0 ? 1 : -1) * 3_600_000L * i);
+            Todo todo = new Todo("Todo " + i, i % 4 == 0 ? null : "Description " + i, dueDate, i % 3 + 1);
+            todo.setId(i + 1);
+            todo.setCompleted(i % 5 == 0);
+            todos.add(todo);
+        }
+        return todos;
+    }
+}
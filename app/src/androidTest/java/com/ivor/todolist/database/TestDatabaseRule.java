@@ -0,0 +1,85 @@
+package com.ivor.todolist.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.rules.ExternalResource;
+
+import java.util.function.Function;
+
+/**
+ * 数据库测试共用的独立测试库：每个测试前删除旧文件并创建 TodoDatabaseHelper，测试后关闭连接并删除文件。
+ * TodoDAO 在第一次调用 dao() 时创建并打开，只需要 helper 的测试不会额外持有连接。
+ */
+public class TestDatabaseRule extends ExternalResource {
+    private final String name;
+    private final Function<TodoDatabaseHelper, ? extends TodoDAO> daoFactory;
+
+    private Context context;
+    private TodoDatabaseHelper helper;
+    private TodoDAO todoDAO;
+
+    public TestDatabaseRule(String name) {
+        this(name, TodoDAO::new);
+    }
+
+    public TestDatabaseRule(String name, Function<TodoDatabaseHelper, ? extends TodoDAO> daoFactory) {
+        this.name = name;
+        this.daoFactory = daoFactory;
+    }
+
+    @Override
+    protected void before() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(name);
+        helper = new TodoDatabaseHelper(context, name);
+    }
+
+    @Override
+    protected void after() {
+        todoDAO = null;
+        helper.close();
+        context.deleteDatabase(name);
+    }
+
+    public Context context() {
+        return context;
+    }
+
+    public TodoDatabaseHelper helper() {
+        return helper;
+    }
+
+    public TodoDAO dao() {
+        if (todoDAO == null) {
+            todoDAO = daoFactory.apply(helper);
+            todoDAO.open();
+        }
+        return todoDAO;
+    }
+
+    public Todo insert(String title) {
+        return insert(new Todo(title, null));
+    }
+
+    // 插入后 todo 带有新分配的 ID
+    public Todo insert(Todo todo) {
+        dao().insertTodo(todo);
+        return todo;
+    }
+
+    // 返回查询结果第一行第一列的整数
+    public int count(String sql) {
+        Cursor cursor = helper.getReadableDatabase().rawQuery(sql, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.ivor.todolist.database;
+
+import android.content.ComponentCallbacks2;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Todo 缓存测试：读取返回缓存内容的副本、未保存的修改不进入缓存、DAO 写入后精确失效、事务提交后才更新缓存、
+ * 容量上限与内存回收，以及命中统计。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoCacheTest {
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("cache_test.db");
+
+    private TodoCache cache;
+
+    @Before
+    public void setUp() {
+        cache = database.dao().getCache();
+    }
+
+    @Test
+    public void reads_returnCopiesAndCountHits() {
+        Todo inserted = database.insert("Task");
+        int hits = cache.hitCount();
+        Todo cached = database.dao().getTodoById(inserted.getId());
+        assertNotSame(inserted, cached);
+        assertEquals("Task", cached.getTitle());
+        assertEquals(hits + 1, cache.hitCount());
+
+        cache.evictAll();
+        int misses = cache.missCount();
+        Todo loaded = database.dao().getTodoById(inserted.getId());
+        assertEquals(misses + 1, cache.missCount());
+
+        hits = cache.hitCount();
+        // 分页和搜索也从缓存得到，每次都是新的副本
+        Todo again = database.dao().getTodoById(inserted.getId());
+        Todo paged = database.dao().getTodosPage(TodoQuery.builder().build(), null, true, 10).get(0);
+        assertEquals(hits + 2, cache.hitCount());
+        assertNotSame(loaded, again);
+        assertNotSame(again, paged);
+        assertEquals(inserted.getCreatedAtMillis(), paged.getCreatedAtMillis());
+    }
+
+    @Test
+    public void unsavedChanges_doNotLeakIntoLaterReads() {
+        Todo inserted = database.insert("Task");
+        Todo editing = database.dao().getTodoById(inserted.getId());
+        editing.setTitle("Unsaved");
+        editing.setCompleted(true);
+        inserted.setPriority(1);
+
+        Todo loaded = database.dao().getTodoById(inserted.getId());
+        assertEquals("Task", loaded.getTitle());
+        assertFalse(loaded.isCompleted());
+        assertEquals(2, loaded.getPriority());
+        assertFalse(loaded.hasChanges());
+    }
+
+    @Test
+    public void writes_invalidateOnlyAffectedRows() {
+        Todo first = database.insert("First");
+        Todo second = database.insert("Second");
+
+        database.dao().setCompleted(new long[]{first.getId()}, true);
+        int misses = cache.missCount();
+        assertTrue(database.dao().getTodoById(first.getId()).isCompleted());
+        assertEquals(misses + 1, cache.missCount());
+        int hits = cache.hitCount();
+        assertEquals("Second", database.dao().getTodoById(second.getId()).getTitle());
+        assertEquals(hits + 1, cache.hitCount());
+
+        database.dao().deleteTodo(second.getId());
+        assertNull(database.dao().getTodoById(second.getId()));
+    }
+
+    @Test
+    public void saveChanges_updatesCachedCopyWithWrittenFields() {
+        Todo cached = database.insert("Task");
+        Todo copy = new Todo("Stale title", null);
+        copy.setId(cached.getId());
+        copy.clearDirtyFields();
+
+        copy.setPriority(1);
+        database.dao().saveChanges(copy);
+        // 缓存中的副本只应用写入的列，仍然命中
+        int hits = cache.hitCount();
+        Todo loaded = database.dao().getTodoById(cached.getId());
+        assertEquals(hits + 1, cache.hitCount());
+        assertEquals(1, loaded.getPriority());
+        assertEquals("Task", loaded.getTitle());
+        assertFalse(loaded.hasChanges());
+    }
+
+    @Test
+    public void transactionWrites_appliedOnlyAfterCommit() throws Exception {
+        Todo todo = database.insert("Task");
+        Todo[] seenByOtherThread = new Todo[1];
+        database.dao().runInTransaction(() -> {
+            Todo edited = database.dao().getTodoById(todo.getId());
+            edited.setTitle("Uncommitted");
+            database.dao().saveChanges(edited);
+            // 提交前其他线程只能得到已提交的值
+            Thread reader = new Thread(() -> seenByOtherThread[0] = database.dao().getTodoById(todo.getId()));
+            reader.start();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        assertEquals("Task", seenByOtherThread[0].getTitle());
+
+        int hits = cache.hitCount();
+        assertEquals("Uncommitted", database.dao().getTodoById(todo.getId()).getTitle());
+        assertEquals(hits + 1, cache.hitCount());
+    }
+
+    @Test
+    public void rolledBackWrites_neverReachCache() {
+        Todo todo = database.insert("Task");
+        try {
+            database.dao().runInTransaction(() -> {
+                Todo edited = database.dao().getTodoById(todo.getId());
+                edited.setTitle("Rolled back");
+                database.dao().saveChanges(edited);
+                throw new IllegalStateException("rollback");
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        // 缓存中仍是提交的值，不需要清空
+        int hits = cache.hitCount();
+        assertEquals("Task", database.dao().getTodoById(todo.getId()).getTitle());
+        assertEquals(hits + 1, cache.hitCount());
+    }
+
+    @Test
+    public void readStartedBeforeWrite_isNotCached() {
+        Todo todo = database.insert("Task");
+        cache.evictAll();
+
+        // 模拟读取在写入提交前读到旧行，写入完成后才放入缓存
+        long generation = cache.generation();
+        Todo staleRead = new Todo("Task", null);
+        staleRead.setId(todo.getId());
+        database.dao().markTodoAsCompleted(todo.getId());
+        cache.putIfUnchanged(staleRead, generation);
+
+        assertTrue(database.dao().getTodoById(todo.getId()).isCompleted());
+    }
+
+    @Test
+    public void cache_isBoundedAndTrimmedUnderMemoryPressure() {
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < TodoCache.DEFAULT_MAX_SIZE + 50; i++) {
+            todos.add(new Todo("Task " + i, null));
+        }
+        database.dao().insertTodos(todos);
+        assertEquals(TodoCache.DEFAULT_MAX_SIZE, cache.size());
+        assertTrue(cache.evictionCount() >= 50);
+
+        cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(TodoCache.DEFAULT_MAX_SIZE / 2, cache.size());
+
+        cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(0, cache.size());
+    }
+}
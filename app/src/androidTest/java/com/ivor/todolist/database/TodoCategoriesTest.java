@@ -0,0 +1,83 @@
+package com.ivor.todolist.database;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分类字典测试：同名分类共享一行和一个 String 实例，回滚的事务不留下失效的 ID，搜索和分类筛选仍按名称工作。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoCategoriesTest {
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("categories_test.db");
+
+    @Test
+    public void sameName_sharesRowAndInstance() {
+        Todo first = insert("First", new String("Work"));
+        Todo second = insert("Second", new String("Work"));
+        Todo none = insert("None", null);
+        database.dao().getCache().evictAll();
+
+        String firstCategory = database.dao().getTodoById(first.getId()).getCategory();
+        String secondCategory = database.dao().getTodoById(second.getId()).getCategory();
+        assertEquals("Work", firstCategory);
+        assertSame(firstCategory, secondCategory);
+        assertNull(database.dao().getTodoById(none.getId()).getCategory());
+        assertEquals(1, database.count("SELECT COUNT(*) FROM categories"));
+    }
+
+    @Test
+    public void rolledBackCategory_isInsertedAgain() {
+        try {
+            database.dao().runInTransaction(() -> {
+                insert("Discarded", "Temp");
+                throw new IllegalStateException("rollback");
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            // 预期的回滚
+        }
+        assertEquals(0, database.count("SELECT COUNT(*) FROM categories"));
+
+        Todo todo = insert("Kept", "Temp");
+        database.dao().getCache().evictAll();
+        assertEquals("Temp", database.dao().getTodoById(todo.getId()).getCategory());
+        assertEquals(1, database.count("SELECT COUNT(*) FROM categories WHERE name = 'Temp'"));
+    }
+
+    @Test
+    public void searchAndFilter_useCategoryName() {
+        Todo work = insert("Report", "Work");
+        Todo home = insert("Dishes", "Home");
+
+        List<Todo> found = database.dao().search("Work", 10);
+        assertEquals(1, found.size());
+        assertEquals(work.getId(), found.get(0).getId());
+
+        // 修改分类后全文索引随之更新
+        home.setCategory("Work");
+        database.dao().saveChanges(home);
+        assertEquals(2, database.dao().search("Work", 10).size());
+        assertTrue(database.dao().search("Home", 10).isEmpty());
+
+        TodoQuery query = TodoQuery.builder().category("Work").build();
+        assertEquals(2, database.dao().getTodosPage(query, null, true, 10).size());
+        query = TodoQuery.builder().category("Missing").build();
+        assertTrue(database.dao().getTodosPage(query, null, true, 10).isEmpty());
+    }
+
+    private Todo insert(String title, String category) {
+        Todo todo = new Todo(title, null, null, 1);
+        todo.setCategory(category);
+        return database.insert(todo);
+    }
+}
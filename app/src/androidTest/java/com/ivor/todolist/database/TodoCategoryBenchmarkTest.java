@@ -0,0 +1,151 @@
+package com.ivor.todolist.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 对比分类以文本存储与以字典 ID 存储在 100k 行规模下的文件大小，以及读取时分类字符串的分配数量，结果输出到 logcat。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoCategoryBenchmarkTest {
+    private static final String TAG = "TodoCategoryBenchmark";
+    private static final String TEXT_DATABASE = "category_text_benchmark.db";
+    private static final String DICTIONARY_DATABASE = "category_dictionary_benchmark.db";
+    private static final int ROW_COUNT = 100_000;
+    private static final int CATEGORY_COUNT = 10;
+
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule(DICTIONARY_DATABASE);
+
+    @After
+    public void tearDown() {
+        database.context().deleteDatabase(TEXT_DATABASE);
+    }
+
+    @Test
+    public void fileSize_dictionaryVersusText() {
+        // 两个库只有分类列不同，其余列和数据相同，差值就是分类存储的开销
+        long textSize = createTable(TEXT_DATABASE, "category TEXT", false);
+        long dictionarySize = createTable(DICTIONARY_DATABASE, "category_id INTEGER", true);
+        Log.i(TAG, String.format("file size: text %d KB, dictionary %d KB (%.1f bytes/row saved)",
+                textSize / 1024, dictionarySize / 1024, (textSize - dictionarySize) / (double) ROW_COUNT));
+        assertTrue(dictionarySize < textSize);
+    }
+
+    @Test
+    public void load_sharesCategoryInstances() {
+        TodoDAO todoDAO = database.dao();
+        todoDAO.insertTodos(createTodos());
+
+        // 按文本读取：每行一个新的 String
+        SQLiteDatabase db = database.helper().getReadableDatabase();
+        Set<String> textInstances = Collections.newSetFromMap(new IdentityHashMap<String, Boolean>());
+        long start = System.nanoTime();
+        Cursor cursor = db.rawQuery("SELECT " + TodoDatabaseHelper.COLUMN_CATEGORY + " FROM " +
+                TodoDatabaseHelper.VIEW_TODOS_CONTENT, null);
+        try {
+            while (cursor.moveToNext()) {
+                textInstances.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        long textNanos = System.nanoTime() - start;
+
+        // 按字典读取：同一分类的所有 Todo 共享一个实例
+        start = System.nanoTime();
+        List<Todo> todos = todoDAO.getTodosPage(TodoQuery.builder().build(), null, true,
+                Integer.MAX_VALUE);
+        long dictionaryNanos = System.nanoTime() - start;
+        Set<String> dictionaryInstances = Collections.newSetFromMap(new IdentityHashMap<String, Boolean>());
+        for (Todo todo : todos) {
+            dictionaryInstances.add(todo.getCategory());
+        }
+        todoDAO.close();
+
+        Log.i(TAG, String.format("category strings: text %d instances in %d ms, dictionary %d instances " +
+                        "(getTodosPage %d ms)", textInstances.size(), textNanos / 1_000_000,
+                dictionaryInstances.size(), dictionaryNanos / 1_000_000));
+        assertEquals(ROW_COUNT, todos.size());
+        assertEquals(ROW_COUNT, textInstances.size());
+        assertEquals(CATEGORY_COUNT, dictionaryInstances.size());
+    }
+
+    // 建一个只有 todos（和字典表）的库，写入 ROW_COUNT 行后 VACUUM，返回文件大小
+    private long createTable(String name, String categoryColumn, boolean dictionary) {
+        database.context().deleteDatabase(name);
+        SQLiteDatabase db = database.context().openOrCreateDatabase(name, Context.MODE_PRIVATE, null);
+        try {
+            db.execSQL("CREATE TABLE todos (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT NOT NULL, " +
+                    "description TEXT, due_date INTEGER, priority INTEGER DEFAULT 1, " +
+                    "is_completed INTEGER DEFAULT 0, created_at INTEGER, " + categoryColumn + ")");
+            if (dictionary) {
+                db.execSQL("CREATE TABLE categories (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE)");
+                for (int i = 0; i < CATEGORY_COUNT; i++) {
+                    db.execSQL("INSERT INTO categories (id, name) VALUES (?, ?)",
+                            new Object[]{i + 1, "category " + i});
+                }
+            }
+            long now = System.currentTimeMillis();
+            SQLiteStatement insert = db.compileStatement("INSERT INTO todos (title, description, due_date, " +
+                    "priority, created_at, " + (dictionary ? "category_id" : "category") + ") VALUES (?, ?, ?, ?, ?, ?)");
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < ROW_COUNT; i++) {
+                    insert.clearBindings();
+                    insert.bindString(1, "Task " + i);
+                    insert.bindString(2, "Description " + i);
+                    insert.bindLong(3, now + i * 60_000L);
+                    insert.bindLong(4, i % 3 + 1);
+                    insert.bindLong(5, now - i * 1000L);
+                    if (dictionary) {
+                        insert.bindLong(6, i % CATEGORY_COUNT + 1);
+                    } else {
+                        insert.bindString(6, "category " + (i % CATEGORY_COUNT));
+                    }
+                    insert.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                insert.close();
+            }
+            db.execSQL("VACUUM");
+        } finally {
+            db.close();
+        }
+        return database.context().getDatabasePath(name).length();
+    }
+
+    private static List<Todo> createTodos() {
+        List<Todo> todos = new ArrayList<>(ROW_COUNT);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ROW_COUNT; i++) {
+            Todo todo = new Todo("Task " + i, "Description " + i, new Date(now + i * 60_000L), i % 3 + 1);
+            todo.setCategory("category " + (i % CATEGORY_COUNT));
+            todos.add(todo);
+        }
+        return todos;
+    }
+}
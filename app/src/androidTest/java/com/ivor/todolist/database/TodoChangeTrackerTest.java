@@ -0,0 +1,138 @@
+package com.ivor.todolist.database;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 变化通知测试：写入提交后通知涉及的行 ID，事务中的写入合并为一次通知；内存中的查询条件和排序与 SQL 结果一致。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoChangeTrackerTest {
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("change_tracker_test.db");
+
+    private final List<long[]> notifications = new ArrayList<>();
+    private final TodoChangeTracker.Listener listener = notifications::add;
+
+    @Before
+    public void setUp() {
+        database.dao().addChangeListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        database.dao().removeChangeListener(listener);
+    }
+
+    @Test
+    public void writes_notifyAffectedIds() {
+        Todo todo = database.insert("Task");
+        assertArrayEquals(new long[]{todo.getId()}, notifications.get(0));
+
+        todo.setPriority(2);
+        database.dao().saveChanges(todo);
+        database.dao().deleteTodo(todo.getId());
+        assertEquals(3, notifications.size());
+        assertArrayEquals(new long[]{todo.getId()}, notifications.get(2));
+
+        // 没有更新到行的写入不通知
+        database.dao().markTodoAsCompleted(todo.getId());
+        assertEquals(3, notifications.size());
+    }
+
+    @Test
+    public void batchAndTransaction_notifyOnceAfterCommit() {
+        List<Todo> todos = Arrays.asList(new Todo("A", null), new Todo("B", null), new Todo("C", null));
+        long[] ids = database.dao().insertTodos(todos);
+        assertEquals(1, notifications.size());
+        assertArrayEquals(ids, notifications.get(0));
+
+        notifications.clear();
+        database.dao().runInTransaction(() -> {
+            database.dao().setCompleted(new long[]{ids[2], ids[0]}, true);
+            database.dao().markTodoAsIncomplete(ids[0]);
+            // 事务结束前不通知
+            assertTrue(notifications.isEmpty());
+        });
+        assertEquals(1, notifications.size());
+        // 去重并排序
+        assertArrayEquals(new long[]{ids[0], ids[2]}, notifications.get(0));
+    }
+
+    @Test
+    public void getTodosByIds_skipsMissingRows() {
+        Todo first = database.insert("First");
+        Todo second = database.insert("Second");
+        database.dao().deleteTodo(first.getId());
+
+        List<Todo> loaded = database.dao().getTodosByIds(new long[]{first.getId(), second.getId()});
+        assertEquals(1, loaded.size());
+        assertEquals(second.getId(), loaded.get(0).getId());
+    }
+
+    @Test
+    public void matchesAndComparator_agreeWithSql() {
+        Random random = new Random(11);
+        long now = System.currentTimeMillis();
+        String[] titles = {"alpha", "Beta", "beta", "gamma", "_x"};
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Todo todo = new Todo(titles[random.nextInt(titles.length)], null);
+            todo.setCompleted(random.nextBoolean());
+            todo.setPriority(random.nextInt(3));
+            todo.setCategory(random.nextBoolean() ? "Work" : null);
+            todo.setCreatedAt(new Date(now - random.nextInt(5) * 60_000L));
+            if (random.nextBoolean()) {
+                todo.setDueDate(new Date(now + (random.nextInt(10) - 5) * 3_600_000L));
+            }
+            todos.add(todo);
+        }
+        database.dao().insertTodos(todos);
+
+        List<TodoQuery> queries = Arrays.asList(
+                TodoQuery.builder().build(),
+                TodoQuery.builder().status(TodoQuery.Status.INCOMPLETE)
+                        .orderBy(TodoQuery.SortKey.PRIORITY, true).build(),
+                TodoQuery.builder().category("Work").priorities(0, 2)
+                        .orderBy(TodoQuery.SortKey.TITLE, false).build(),
+                TodoQuery.builder().overdueOnly(true).orderBy(TodoQuery.SortKey.DUE_DATE, false).build(),
+                TodoQuery.builder().dueBetween(now - 3_600_000L, now + 3_600_000L)
+                        .orderBy(TodoQuery.SortKey.DUE_DATE, true).build());
+        for (TodoQuery query : queries) {
+            List<Todo> expected = database.dao().getTodosPage(query, null, true, todos.size());
+
+            List<Todo> actual = new ArrayList<>();
+            for (Todo todo : todos) {
+                if (query.matches(todo, now)) {
+                    actual.add(todo);
+                }
+            }
+            actual.sort(query.comparator());
+
+            assertEquals(ids(expected), ids(actual));
+        }
+    }
+
+    private static List<Long> ids(List<Todo> todos) {
+        List<Long> ids = new ArrayList<>();
+        for (Todo todo : todos) {
+            ids.add(todo.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,121 @@
+package com.ivor.todolist.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 多个读线程和写线程各自使用独立的 TodoDAO，反复 open/close 并同时读写，不应出现已关闭连接的异常。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoConnectionManagerConcurrencyTest {
+    private static final int READER_COUNT = 4;
+    private static final int WRITER_COUNT = 2;
+    private static final int ITERATIONS = 200;
+
+    // 只使用 helper，连接全部经由 connectionManager 获取
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("concurrency_test.db");
+
+    private TodoConnectionManager connectionManager;
+
+    @Before
+    public void setUp() {
+        connectionManager = new TodoConnectionManager(database.helper());
+    }
+
+    @Test
+    public void databaseUsesWriteAheadLogging() {
+        SQLiteDatabase db = connectionManager.acquire();
+        try {
+            Cursor cursor = db.rawQuery("PRAGMA journal_mode", null);
+            assertTrue(cursor.moveToFirst());
+            assertEquals("wal", cursor.getString(0).toLowerCase());
+            cursor.close();
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    @Test
+    public void concurrentReadersAndWriters_neverSeeClosedConnection() throws InterruptedException {
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(READER_COUNT + WRITER_COUNT);
+
+        for (int i = 0; i < WRITER_COUNT; i++) {
+            final int writer = i;
+            startThread(start, finished, failures, () -> {
+                TodoDAO todoDAO = new TodoDAO(connectionManager);
+                for (int n = 0; n < ITERATIONS; n++) {
+                    todoDAO.open();
+                    Todo todo = new Todo("writer " + writer + " #" + n, null);
+                    todoDAO.insertTodo(todo);
+                    todo.setCompleted(true);
+                    todoDAO.updateTodo(todo);
+                    if (n % 3 == 0) {
+                        todoDAO.deleteTodo(todo.getId());
+                    }
+                    // 每次都关闭，制造连接引用计数归零后重新打开的情况
+                    todoDAO.close();
+                }
+            });
+        }
+        for (int i = 0; i < READER_COUNT; i++) {
+            startThread(start, finished, failures, () -> {
+                TodoDAO todoDAO = new TodoDAO(connectionManager);
+                for (int n = 0; n < ITERATIONS; n++) {
+                    if (n % 2 == 0) {
+                        todoDAO.open();
+                    }
+                    todoDAO.getTodosPage(TodoQuery.builder().build(), null, true, 50);
+                    todoDAO.getTodosPage(TodoQuery.builder().status(TodoQuery.Status.INCOMPLETE).build(),
+                            null, true, 50);
+                    todoDAO.close();
+                }
+            });
+        }
+
+        start.countDown();
+        assertTrue(finished.await(2, TimeUnit.MINUTES));
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.size() + " thread(s) failed", failures.get(0));
+        }
+        assertEquals(0, connectionManager.getReferenceCount());
+
+        TodoDAO todoDAO = new TodoDAO(connectionManager);
+        int expected = WRITER_COUNT * (ITERATIONS - (ITERATIONS + 2) / 3);
+        assertEquals(expected, todoDAO.getTodosPage(TodoQuery.builder().status(TodoQuery.Status.COMPLETED).build(),
+                null, true, Integer.MAX_VALUE).size());
+    }
+
+    private static void startThread(CountDownLatch start, CountDownLatch finished,
+                                    List<Throwable> failures, Runnable body) {
+        new Thread(() -> {
+            try {
+                start.await();
+                body.run();
+            } catch (Throwable t) {
+                failures.add(t);
+            } finally {
+                finished.countDown();
+            }
+        }).start();
+    }
+}
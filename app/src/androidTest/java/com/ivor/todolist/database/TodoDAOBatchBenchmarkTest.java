@@ -0,0 +1,130 @@
+package com.ivor.todolist.database;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 对比逐行写入与批量写入在 10k 行规模下的吞吐量（行/秒），结果输出到 logcat。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoDAOBatchBenchmarkTest {
+    private static final String TAG = "TodoDAOBatchBenchmark";
+    private static final int BATCH_SIZE = 10_000;
+
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("batch_benchmark.db");
+
+    @Test
+    public void insert_batchVersusPerRow() {
+        List<Todo> perRow = createTodos("per-row");
+        long start = System.nanoTime();
+        for (Todo todo : perRow) {
+            database.dao().insertTodo(todo);
+        }
+        double perRowRate = report("insertTodo", System.nanoTime() - start);
+
+        List<Todo> batch = createTodos("batch");
+        start = System.nanoTime();
+        long[] ids = database.dao().insertTodos(batch);
+        double batchRate = report("insertTodos", System.nanoTime() - start);
+
+        assertEquals(BATCH_SIZE, ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            assertTrue(ids[i] > 0);
+            assertEquals(ids[i], batch.get(i).getId());
+        }
+        assertEquals(2 * BATCH_SIZE, getTodos(TodoQuery.Status.ALL).size());
+        assertTrue(batchRate > perRowRate);
+    }
+
+    @Test
+    public void update_batchVersusPerRow() {
+        List<Todo> todos = createTodos("update");
+        database.dao().insertTodos(todos);
+
+        for (Todo todo : todos) {
+            todo.setTitle(todo.getTitle() + " (per-row)");
+        }
+        long start = System.nanoTime();
+        for (Todo todo : todos) {
+            database.dao().updateTodo(todo);
+        }
+        double perRowRate = report("updateTodo", System.nanoTime() - start);
+
+        for (Todo todo : todos) {
+            todo.setTitle(todo.getTitle() + " (batch)");
+        }
+        start = System.nanoTime();
+        int[] results = database.dao().updateTodos(todos);
+        double batchRate = report("updateTodos", System.nanoTime() - start);
+
+        for (int result : results) {
+            assertEquals(1, result);
+        }
+        assertTrue(database.dao().getTodoById(todos.get(0).getId()).getTitle().endsWith("(batch)"));
+        assertTrue(batchRate > perRowRate);
+    }
+
+    @Test
+    public void deleteAndSetCompleted_returnPerRowResults() {
+        List<Todo> todos = createTodos("delete");
+        long[] ids = database.dao().insertTodos(todos);
+
+        long start = System.nanoTime();
+        int[] completed = database.dao().setCompleted(ids, true);
+        report("setCompleted", System.nanoTime() - start);
+        for (int result : completed) {
+            assertEquals(1, result);
+        }
+        assertEquals(BATCH_SIZE, getTodos(TodoQuery.Status.COMPLETED).size());
+
+        long[] withMissing = new long[ids.length + 1];
+        System.arraycopy(ids, 0, withMissing, 0, ids.length);
+        withMissing[ids.length] = Long.MAX_VALUE;
+
+        start = System.nanoTime();
+        int[] deleted = database.dao().deleteTodos(withMissing);
+        report("deleteTodos", System.nanoTime() - start);
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(1, deleted[i]);
+        }
+        assertEquals(0, deleted[ids.length]);
+        assertTrue(getTodos(TodoQuery.Status.ALL).isEmpty());
+    }
+
+    private List<Todo> getTodos(TodoQuery.Status status) {
+        return database.dao().getTodosPage(TodoQuery.builder().status(status).build(), null, true, Integer.MAX_VALUE);
+    }
+
+    private static List<Todo> createTodos(String prefix) {
+        List<Todo> todos = new ArrayList<>(BATCH_SIZE);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Todo todo = new Todo(prefix + " " + i, "Description " + i,
+                    new Date(now + i * 60_000L), i % 3 + 1);
+            todo.setCategory("category " + (i % 10));
+            todos.add(todo);
+        }
+        return todos;
+    }
+
+    private static double report(String operation, long elapsedNanos) {
+        double rowsPerSecond = BATCH_SIZE / (elapsedNanos / 1_000_000_000.0);
+        Log.i(TAG, String.format("%s: %d rows in %d ms (%.0f rows/s)",
+                operation, BATCH_SIZE, elapsedNanos / 1_000_000, rowsPerSecond));
+        return rowsPerSecond;
+    }
+}
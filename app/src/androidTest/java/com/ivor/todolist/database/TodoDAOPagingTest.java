@@ -0,0 +1,233 @@
+package com.ivor.todolist.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 键集分页测试：逐页向后、向前翻页都能不重不漏地遍历全部数据，且顺序与一次性排序结果一致；
+ * TodoQuery 的各种筛选条件与在内存中筛选的结果一致，按状态筛选后的排序走索引。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoDAOPagingTest {
+    private static final int ROW_COUNT = 1_000;
+    private static final int PAGE_SIZE = 37;
+    private static final long BASE = 1_700_000_000_000L;
+
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("paging_test.db");
+
+    @Before
+    public void setUp() {
+        // 故意制造大量相同的排序键（创建时间、优先级、截止时间、标题），检验 id 作为唯一键的处理
+        List<Todo> todos = new ArrayList<>();
+        long base = BASE;
+        for (int i = 0; i < ROW_COUNT; i++) {
+            Todo todo = new Todo((i % 2 == 0 ? "task " : "Task ") + (i % 50), null);
+            todo.setCreatedAt(new Date(base + (i % 100) * 1000L));
+            todo.setDueDate(i % 5 == 0 ? null : new Date(base + (i % 30) * 60_000L));
+            todo.setPriority(i % 3 + 1);
+            todo.setCompleted(i % 4 == 0);
+            todo.setCategory(i % 7 == 0 ? "work" : null);
+            todos.add(todo);
+        }
+        database.dao().insertTodos(todos);
+    }
+
+    @Test
+    public void forwardAndBackwardPaging_visitEveryRowOnceInOrder() {
+        for (TodoQuery.Builder sorted : sortVariants()) {
+            for (TodoQuery.Status status : TodoQuery.Status.values()) {
+                TodoQuery query = sorted.status(status).build();
+                String name = query.getShape();
+                List<Todo> expected = database.dao().getTodosPage(query, null, true, ROW_COUNT);
+
+                List<Todo> forward = new ArrayList<>();
+                Todo anchor = null;
+                List<Todo> page;
+                do {
+                    page = database.dao().getTodosPage(query, anchor, true, PAGE_SIZE);
+                    forward.addAll(page);
+                    anchor = page.isEmpty() ? null : page.get(page.size() - 1);
+                } while (page.size() == PAGE_SIZE);
+                assertSameIds(name + " forward", expected, forward);
+
+                List<Todo> backward = new ArrayList<>();
+                anchor = forward.get(forward.size() - 1);
+                backward.add(anchor);
+                do {
+                    page = database.dao().getTodosPage(query, anchor, false, PAGE_SIZE);
+                    backward.addAll(0, page);
+                    anchor = page.isEmpty() ? null : page.get(0);
+                } while (page.size() == PAGE_SIZE);
+                assertSameIds(name + " backward", expected, backward);
+            }
+        }
+    }
+
+    @Test
+    public void dueDateOrder_putsTodosWithoutDueDateLast() {
+        TodoQuery query = TodoQuery.builder().orderBy(TodoQuery.SortKey.DUE_DATE, false).build();
+        List<Todo> all = database.dao().getTodosPage(query, null, true, ROW_COUNT);
+        boolean seenNoDueDate = false;
+        for (Todo todo : all) {
+            if (todo.getDueDate() == null) {
+                seenNoDueDate = true;
+            } else {
+                assertFalse(seenNoDueDate);
+            }
+        }
+        assertTrue(seenNoDueDate);
+    }
+
+    @Test
+    public void filters_matchInMemoryFiltering() {
+        List<Todo> all = database.dao().getTodosPage(TodoQuery.builder().build(), null, true, ROW_COUNT);
+        assertEquals(ROW_COUNT, all.size());
+
+        long from = BASE + 5 * 60_000L;
+        long to = BASE + 20 * 60_000L;
+        TodoQuery query = TodoQuery.builder()
+                .status(TodoQuery.Status.INCOMPLETE)
+                .priorities(3, 1)
+                .dueBetween(from, to)
+                .orderBy(TodoQuery.SortKey.DUE_DATE, false)
+                .build();
+        Set<Long> expected = new HashSet<>();
+        for (Todo todo : all) {
+            if (!todo.isCompleted() && todo.getPriority() != 2 && todo.getDueDate() != null
+                    && todo.getDueDate().getTime() >= from && todo.getDueDate().getTime() < to) {
+                expected.add(todo.getId());
+            }
+        }
+        assertMatches(expected, database.dao().getTodosPage(query, null, true, ROW_COUNT));
+
+        query = TodoQuery.builder().category("work").build();
+        expected.clear();
+        for (Todo todo : all) {
+            if ("work".equals(todo.getCategory())) {
+                expected.add(todo.getId());
+            }
+        }
+        assertMatches(expected, database.dao().getTodosPage(query, null, true, ROW_COUNT));
+
+        // 测试数据的截止时间都在过去，逾期即未完成且有截止时间
+        query = TodoQuery.builder().overdueOnly(true).orderBy(TodoQuery.SortKey.PRIORITY, true).build();
+        expected.clear();
+        for (Todo todo : all) {
+            if (!todo.isCompleted() && todo.getDueDate() != null) {
+                expected.add(todo.getId());
+            }
+        }
+        assertMatches(expected, database.dao().getTodosPage(query, null, true, ROW_COUNT));
+    }
+
+    @Test
+    public void shape_dependsOnlyOnStructure() {
+        TodoQuery a = TodoQuery.builder().priorities(1, 2).category("work").build();
+        TodoQuery b = TodoQuery.builder().priorities(3, 2).category("home").build();
+        TodoQuery c = TodoQuery.builder().priorities(1).category("work").build();
+        assertEquals(a.getShape(), b.getShape());
+        assertEquals(a.toSql(true, true), b.toSql(true, true));
+        assertNotEquals(a.getShape(), c.getShape());
+    }
+
+    @Test
+    public void statusFilteredSorts_useIndexes() {
+        SQLiteDatabase db = database.helper().getReadableDatabase();
+        for (TodoQuery.Builder sorted : sortVariants()) {
+            TodoQuery query = sorted.status(TodoQuery.Status.INCOMPLETE).build();
+            if (query.getSortKeys().size() > 1 && query.getSortKeys().get(1) != TodoQuery.SortKey.DUE_DATE) {
+                // 任意组合的多列排序没有对应的索引
+                continue;
+            }
+            for (boolean after : new boolean[]{true, false}) {
+                List<Object> args = new ArrayList<>();
+                query.bindArgs(args, firstTodo(), after, PAGE_SIZE, System.currentTimeMillis());
+                assertUsesIndex(db, query.toSql(true, after), args);
+            }
+        }
+    }
+
+    // 覆盖界面上的各种排序方式，以及一个方向混合的多列排序
+    private static List<TodoQuery.Builder> sortVariants() {
+        List<TodoQuery.Builder> variants = new ArrayList<>();
+        variants.add(TodoQuery.builder().orderBy(TodoQuery.SortKey.CREATED_AT, true));
+        variants.add(TodoQuery.builder().orderBy(TodoQuery.SortKey.CREATED_AT, false));
+        variants.add(TodoQuery.builder().orderBy(TodoQuery.SortKey.DUE_DATE, false));
+        variants.add(TodoQuery.builder().orderBy(TodoQuery.SortKey.PRIORITY, false)
+                .orderBy(TodoQuery.SortKey.DUE_DATE, false));
+        variants.add(TodoQuery.builder().orderBy(TodoQuery.SortKey.TITLE, false));
+        variants.add(TodoQuery.builder().orderBy(TodoQuery.SortKey.PRIORITY, true)
+                .orderBy(TodoQuery.SortKey.TITLE, false));
+        return variants;
+    }
+
+    private Todo firstTodo() {
+        return database.dao().getTodosPage(TodoQuery.builder().build(), null, true, 1).get(0);
+    }
+
+    private static void assertMatches(Set<Long> expected, List<Todo> actual) {
+        assertFalse(expected.isEmpty());
+        Set<Long> actualIds = new HashSet<>();
+        for (Todo todo : actual) {
+            actualIds.add(todo.getId());
+        }
+        assertEquals(expected, actualIds);
+    }
+
+    // 键集条件要能在索引上定位（SEARCH 且带范围条件），并且不需要额外排序
+    private static void assertUsesIndex(SQLiteDatabase db, String sql, List<Object> args) {
+        // EXPLAIN QUERY PLAN 不执行查询，参数的具体值不影响计划，但类型会影响，因此同样按类型绑定
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.rawQueryWithFactory((database, driver, editTable, query) -> {
+            for (int i = 0; i < args.size(); i++) {
+                Object arg = args.get(i);
+                if (arg instanceof Long) {
+                    query.bindLong(i + 1, (Long) arg);
+                } else {
+                    query.bindString(i + 1, String.valueOf(arg));
+                }
+            }
+            return new SQLiteCursor(driver, editTable, query);
+        }, "EXPLAIN QUERY PLAN " + sql, null, null);
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailIndex)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        String detail = plan.toString();
+        assertTrue(sql + "\n" + detail, detail.contains("SEARCH") && detail.contains("USING INDEX"));
+        assertTrue(sql + "\n" + detail, detail.contains("<") || detail.contains(">"));
+        assertFalse(sql + "\n" + detail, detail.contains("TEMP B-TREE"));
+    }
+
+    private static void assertSameIds(String message, List<Todo> expected, List<Todo> actual) {
+        assertEquals(message, expected.size(), actual.size());
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(message + " at " + i, expected.get(i).getId(), actual.get(i).getId());
+            assertTrue(message, seen.add(actual.get(i).getId()));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.ivor.todolist.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 只写回修改过的列：生成的 UPDATE 语句只包含被标记的列，保存结果正确，并且写入 WAL 的数据量少于整行更新。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoDAOSaveChangesTest {
+    private static final String TAG = "TodoDAOSaveChangesTest";
+    private static final int UPDATE_COUNT = 50;
+
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("save_changes_test.db");
+
+    private static final int[] FIELDS = {
+            Todo.FIELD_TITLE, Todo.FIELD_DESCRIPTION, Todo.FIELD_COMPLETED, Todo.FIELD_CREATED_AT,
+            Todo.FIELD_DUE_DATE, Todo.FIELD_PRIORITY, Todo.FIELD_CATEGORY
+    };
+    private static final String[] COLUMNS = {
+            TodoDatabaseHelper.COLUMN_TITLE, TodoDatabaseHelper.COLUMN_DESCRIPTION,
+            TodoDatabaseHelper.COLUMN_IS_COMPLETED, TodoDatabaseHelper.COLUMN_CREATED_AT,
+            TodoDatabaseHelper.COLUMN_DUE_DATE, TodoDatabaseHelper.COLUMN_PRIORITY,
+            TodoDatabaseHelper.COLUMN_CATEGORY_ID
+    };
+
+    @Test
+    public void updateSql_setsOnlyDirtyColumns() {
+        for (int fields = 1; fields <= Todo.ALL_FIELDS; fields++) {
+            String sql = TodoDAO.getUpdateSql(fields);
+            String setClause = sql.substring(sql.indexOf(" SET ") + 5, sql.indexOf(" WHERE "));
+            Set<String> columns = new HashSet<>();
+            for (String assignment : setClause.split(", ")) {
+                assertTrue(sql, assignment.endsWith(" = ?"));
+                columns.add(assignment.substring(0, assignment.length() - 4));
+            }
+
+            Set<String> expected = new HashSet<>();
+            for (int i = 0; i < FIELDS.length; i++) {
+                if ((fields & FIELDS[i]) != 0) {
+                    expected.add(COLUMNS[i]);
+                }
+            }
+            assertEquals(sql, expected, columns);
+            assertTrue(sql, sql.endsWith(" WHERE " + TodoDatabaseHelper.COLUMN_ID + " = ?"));
+            // 同一列集合返回同一条 SQL
+            assertSame(sql, TodoDAO.getUpdateSql(fields));
+        }
+    }
+
+    @Test
+    public void setters_markOnlyChangedFields() {
+        Todo todo = database.dao().getTodoById(insert("Title", "Description"));
+        assertFalse(todo.hasChanges());
+
+        todo.setTitle("Title");
+        todo.setCompleted(false);
+        assertFalse(todo.hasChanges());
+
+        todo.setCompleted(true);
+        todo.setDueDate(new Date(1_000L));
+        assertEquals(Todo.FIELD_COMPLETED | Todo.FIELD_DUE_DATE, todo.getDirtyFields());
+    }
+
+    @Test
+    public void saveChanges_leavesOtherColumnsUntouched() {
+        long id = insert("Title", "Description");
+        Todo stale = loadFromDatabase(id);
+
+        // 另一处修改了描述，stale 上的旧描述不会被写回
+        Todo other = loadFromDatabase(id);
+        assertNotSame(stale, other);
+        other.setDescription("Edited elsewhere");
+        assertEquals(1, database.dao().saveChanges(other));
+
+        stale.setCompleted(true);
+        stale.setPriority(1);
+        assertEquals(1, database.dao().saveChanges(stale));
+        assertFalse(stale.hasChanges());
+        assertEquals(0, database.dao().saveChanges(stale));
+
+        Todo loaded = loadFromDatabase(id);
+        assertTrue(loaded.isCompleted());
+        assertEquals(1, loaded.getPriority());
+        assertEquals("Title", loaded.getTitle());
+        assertEquals("Edited elsewhere", loaded.getDescription());
+    }
+
+    @Test
+    public void saveChanges_clearsDueDate() {
+        Todo todo = new Todo("Title", null, new Date(5_000L), 2);
+        database.dao().insertTodo(todo);
+
+        todo.setDueDate(null);
+        assertEquals(1, database.dao().saveChanges(todo));
+        assertNull(loadFromDatabase(todo.getId()).getDueDate());
+    }
+
+    @Test
+    public void saveChanges_writesLessThanFullUpdate() {
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < UPDATE_COUNT * 2; i++) {
+            todos.add(new Todo("Task " + i, longDescription(i), null, 2));
+        }
+        database.dao().insertTodos(todos);
+        SQLiteDatabase db = database.helper().getWritableDatabase();
+        File wal = new File(db.getPath() + "-wal");
+
+        truncateWal(db);
+        for (int i = 0; i < UPDATE_COUNT; i++) {
+            Todo todo = todos.get(i);
+            todo.setCompleted(true);
+            database.dao().updateTodo(todo);
+        }
+        long fullUpdateBytes = wal.length();
+
+        truncateWal(db);
+        for (int i = UPDATE_COUNT; i < UPDATE_COUNT * 2; i++) {
+            Todo todo = todos.get(i);
+            todo.setCompleted(true);
+            database.dao().saveChanges(todo);
+        }
+        long partialUpdateBytes = wal.length();
+
+        Log.i(TAG, "WAL bytes for " + UPDATE_COUNT + " completion toggles: updateTodo=" + fullUpdateBytes +
+                ", saveChanges=" + partialUpdateBytes);
+        assertTrue(fullUpdateBytes > 0);
+        assertTrue("saveChanges wrote " + partialUpdateBytes + " bytes, updateTodo " + fullUpdateBytes,
+                partialUpdateBytes < fullUpdateBytes);
+    }
+
+    // 清空缓存后读取，得到数据库中的实际值和一个新的对象
+    private Todo loadFromDatabase(long id) {
+        database.dao().getCache().evictAll();
+        return database.dao().getTodoById(id);
+    }
+
+    private long insert(String title, String description) {
+        return database.dao().insertTodo(new Todo(title, description));
+    }
+
+    private static String longDescription(int seed) {
+        char[] words = new char[4000];
+        Arrays.fill(words, 'x');
+        for (int i = 0; i < words.length; i += 8) {
+            words[i] = ' ';
+            words[i + 1] = (char) ('a' + (seed + i) % 26);
+        }
+        return new String(words);
+    }
+
+    // 把 WAL 中的内容写回数据库并截断为 0，之后的文件大小即为新写入的量
+    private static void truncateWal(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("checkpoint busy", 0, cursor.getInt(0));
+        } finally {
+            cursor.close();
+        }
+    }
+}
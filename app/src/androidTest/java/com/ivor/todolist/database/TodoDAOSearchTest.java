@@ -0,0 +1,110 @@
+package com.ivor.todolist.database;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 全文搜索测试：触发器保持索引同步、前缀匹配、按相关度排序，以及大数据量下的查询耗时。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoDAOSearchTest {
+    private static final String TAG = "TodoDAOSearchTest";
+
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("search_test.db");
+
+    @Test
+    public void search_matchesPrefixesAcrossColumns() {
+        insert("Buy groceries", "milk and eggs", "home");
+        insert("Call plumber", null, "home");
+        insert("Prepare slides", "quarterly review", "work");
+
+        assertTitles(database.dao().search("groc", 10), "Buy groceries");
+        assertTitles(database.dao().search("MILK", 10), "Buy groceries");
+        assertEquals(2, database.dao().search("home", 10).size());
+        assertTitles(database.dao().search("home plumb", 10), "Call plumber");
+        assertTrue(database.dao().search("nothing", 10).isEmpty());
+    }
+
+    @Test
+    public void search_ignoresQuerySyntaxInUserInput() {
+        insert("Fix \"quoted\" bug", null, null);
+
+        assertTitles(database.dao().search("\"quoted", 10), "Fix \"quoted\" bug");
+        assertTrue(database.dao().search("   ", 10).isEmpty());
+        assertTrue(database.dao().search("* ( ) -", 10).isEmpty());
+    }
+
+    @Test
+    public void search_ranksTitleMatchesFirst() {
+        insert("Report draft", "write the report", null);
+        insert("Budget", "attach to the report", null);
+        insert("Report", null, null);
+
+        List<Todo> results = database.dao().search("report", 10);
+        assertEquals(3, results.size());
+        assertEquals("Budget", results.get(2).getTitle());
+    }
+
+    @Test
+    public void triggers_keepIndexInSyncWithUpdatesAndDeletes() {
+        Todo todo = insert("Old title", null, null);
+        assertEquals(1, database.dao().search("old", 10).size());
+
+        todo.setTitle("New title");
+        database.dao().updateTodo(todo);
+        assertTrue(database.dao().search("old", 10).isEmpty());
+        assertEquals(1, database.dao().search("new", 10).size());
+
+        // 只修改完成状态时不需要重建索引，结果仍然正确
+        todo.setCompleted(true);
+        database.dao().updateTodo(todo);
+        assertEquals(1, database.dao().search("new", 10).size());
+
+        database.dao().deleteTodo(todo.getId());
+        assertTrue(database.dao().search("new", 10).isEmpty());
+    }
+
+    @Test
+    public void search_over100kTodosIsFast() {
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            todos.add(new Todo("Task " + i, i % 1000 == 0 ? "needle in haystack" : "filler text " + (i % 97),
+                    null, i % 3 + 1));
+        }
+        database.dao().insertTodos(todos);
+
+        long start = System.nanoTime();
+        List<Todo> results = database.dao().search("needle", 50);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        Log.i(TAG, "search over 100k todos: " + results.size() + " results in " + elapsedMs + " ms");
+
+        assertEquals(50, results.size());
+        assertTrue("search took " + elapsedMs + " ms", elapsedMs < 200);
+    }
+
+    private Todo insert(String title, String description, String category) {
+        Todo todo = new Todo(title, description);
+        todo.setCategory(category);
+        return database.insert(todo);
+    }
+
+    private static void assertTitles(List<Todo> results, String... titles) {
+        assertEquals(titles.length, results.size());
+        for (int i = 0; i < titles.length; i++) {
+            assertEquals(titles[i], results.get(i).getTitle());
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.ivor.todolist.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 从版本1数据库升级的迁移测试：数据不丢失，且各查询的执行计划使用新索引。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoDatabaseMigrationTest {
+    private static final String TEST_DATABASE = "migration_test.db";
+    private static final int ROW_COUNT = 50_000;
+
+    // 版本1的建表语句，与当时的 CREATE_TABLE_TODOS 保持一致
+    private static final String CREATE_TABLE_TODOS_V1 = "CREATE TABLE todos (" +
+            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "title TEXT NOT NULL, " +
+            "description TEXT, " +
+            "is_completed INTEGER DEFAULT 0, " +
+            "created_at INTEGER NOT NULL, " +
+            "due_date INTEGER, " +
+            "priority INTEGER DEFAULT 2, " +
+            "category TEXT" +
+            ")";
+
+    // helper 在第一次打开数据库时才执行升级，测试先写入版本1的库再打开
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule(TEST_DATABASE);
+
+    @Test
+    public void upgradeFromV1_keepsAllRows() {
+        createV1Database();
+
+        SQLiteDatabase db = openWithHelper();
+        assertEquals(TodoDatabaseHelper.DATABASE_VERSION, db.getVersion());
+        assertEquals(ROW_COUNT, count(db, "SELECT COUNT(*) FROM todos"));
+        assertEquals(ROW_COUNT / 2, count(db, "SELECT COUNT(*) FROM todos WHERE is_completed = 1"));
+        // 统计表按已有数据建立
+        assertEquals(ROW_COUNT / 2, count(db, "SELECT SUM(open_count) FROM todo_stats"));
+        assertEquals(ROW_COUNT / 2, count(db, "SELECT SUM(completed_count) FROM todo_stats"));
+        assertEquals(30, count(db, "SELECT COUNT(*) FROM todo_stats"));
+        // 分类名称移到 categories，每个名称一行
+        assertEquals(10, count(db, "SELECT COUNT(*) FROM categories"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM todos WHERE category_id IS NULL"));
+
+        Cursor cursor = db.rawQuery("SELECT title, priority, name FROM todos " +
+                        "LEFT JOIN categories ON categories.id = todos.category_id WHERE todos.id = ?",
+                new String[]{"12345"});
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Todo 12344", cursor.getString(0));
+        assertEquals(12344 % 3 + 1, cursor.getInt(1));
+        assertEquals("category " + (12344 % 10), cursor.getString(2));
+        cursor.close();
+    }
+
+    @Test
+    public void upgradeFromV1_queriesUseIndexes() {
+        createV1Database();
+        SQLiteDatabase db = openWithHelper();
+
+        // TodoQuery 生成的分页查询（第一页和向后、向前翻页），结尾的 id 由索引中隐含的 rowid 提供
+        assertPagesUseIndex(db, TodoQuery.builder()
+                        .status(TodoQuery.Status.INCOMPLETE)
+                        .orderBy(TodoQuery.SortKey.PRIORITY, false)
+                        .orderBy(TodoQuery.SortKey.DUE_DATE, false)
+                        .build(),
+                TodoDatabaseHelper.INDEX_STATUS_PRIORITY_DUE_SORT);
+        assertPagesUseIndex(db, TodoQuery.builder().status(TodoQuery.Status.COMPLETED).build(),
+                TodoDatabaseHelper.INDEX_STATUS_CREATED);
+        assertPagesUseIndex(db, TodoQuery.builder()
+                        .status(TodoQuery.Status.INCOMPLETE)
+                        .orderBy(TodoQuery.SortKey.DUE_DATE, false)
+                        .build(),
+                TodoDatabaseHelper.INDEX_STATUS_DUE_SORT);
+        assertPagesUseIndex(db, TodoQuery.builder()
+                        .status(TodoQuery.Status.INCOMPLETE)
+                        .orderBy(TodoQuery.SortKey.TITLE, false)
+                        .build(),
+                TodoDatabaseHelper.INDEX_STATUS_TITLE);
+        assertPagesUseIndex(db, TodoQuery.builder()
+                        .priorities(1)
+                        .orderBy(TodoQuery.SortKey.DUE_DATE, false)
+                        .build(),
+                TodoDatabaseHelper.INDEX_PRIORITY_DUE_SORT);
+        assertPagesUseIndex(db, TodoQuery.builder().build(), TodoDatabaseHelper.INDEX_CREATED);
+        // 按分类筛选后的行数很少，定位走分类索引，排序在内存中完成
+        TodoQuery byCategory = TodoQuery.builder().category("category 3").build();
+        List<Object> args = new ArrayList<>();
+        byCategory.bindArgs(args, null, true, 20, System.currentTimeMillis());
+        assertPlanUsesIndex(db, byCategory.toSql(false, true), args, TodoDatabaseHelper.INDEX_CATEGORY, false);
+        // 提醒调度的范围查询
+        assertUsesIndex(db, "SELECT * FROM todos WHERE is_completed = 0 AND " +
+                        TodoDatabaseHelper.EXPR_DUE_DATE_SORT + " >= ? AND " +
+                        TodoDatabaseHelper.EXPR_DUE_DATE_SORT + " < ? ORDER BY " +
+                        TodoDatabaseHelper.EXPR_DUE_DATE_SORT,
+                new String[]{"0", "1"}, TodoDatabaseHelper.INDEX_STATUS_DUE_SORT);
+        // 统计触发器按分组重新计算最早截止时间
+        assertUsesIndex(db, "SELECT MIN(due_date) FROM todos WHERE is_completed = 0 AND priority = ? " +
+                        "AND due_date IS NOT NULL AND category_id IS ?",
+                new String[]{"1", "3"}, TodoDatabaseHelper.INDEX_STATUS_PRIORITY_CATEGORY_DUE);
+
+        // 已被表达式索引取代的版本2索引不再保留
+        assertIndexMissing(db, TodoDatabaseHelper.INDEX_STATUS_PRIORITY_DUE);
+        assertIndexMissing(db, TodoDatabaseHelper.INDEX_PRIORITY_DUE);
+    }
+
+    @Test
+    public void freshInstall_hasSameIndexesAsUpgrade() {
+        SQLiteDatabase db = openWithHelper();
+        assertEquals(TodoDatabaseHelper.DATABASE_VERSION, db.getVersion());
+        assertIndexMissing(db, TodoDatabaseHelper.INDEX_STATUS_PRIORITY_DUE);
+        assertIndexExists(db, TodoDatabaseHelper.INDEX_STATUS_CREATED);
+        assertIndexMissing(db, TodoDatabaseHelper.INDEX_PRIORITY_DUE);
+        assertIndexExists(db, TodoDatabaseHelper.INDEX_CREATED);
+        assertIndexExists(db, TodoDatabaseHelper.INDEX_DUE_SORT);
+        assertIndexExists(db, TodoDatabaseHelper.INDEX_PRIORITY_DUE_SORT);
+        assertIndexExists(db, TodoDatabaseHelper.INDEX_TITLE);
+        assertIndexExists(db, TodoDatabaseHelper.INDEX_STATUS_DUE_SORT);
+        assertIndexExists(db, TodoDatabaseHelper.INDEX_STATUS_PRIORITY_DUE_SORT);
+        assertIndexExists(db, TodoDatabaseHelper.INDEX_STATUS_TITLE);
+        assertIndexExists(db, TodoDatabaseHelper.INDEX_CATEGORY);
+        assertIndexExists(db, TodoDatabaseHelper.INDEX_STATUS_PRIORITY_CATEGORY_DUE);
+    }
+
+    private void createV1Database() {
+        SQLiteDatabase db = database.context().openOrCreateDatabase(TEST_DATABASE, Context.MODE_PRIVATE, null);
+        db.execSQL(CREATE_TABLE_TODOS_V1);
+
+        long now = System.currentTimeMillis();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO todos " +
+                "(title, description, is_completed, created_at, due_date, priority, category) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ROW_COUNT; i++) {
+                insert.clearBindings();
+                insert.bindString(1, "Todo " + i);
+                insert.bindString(2, "Description " + i);
+                insert.bindLong(3, i % 2);
+                insert.bindLong(4, now - i * 1000L);
+                if (i % 4 == 0) {
+                    insert.bindNull(5);
+                } else {
+                    insert.bindLong(5, now + i * 60_000L);
+                }
+                insert.bindLong(6, i % 3 + 1);
+                insert.bindString(7, "category " + (i % 10));
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        insert.close();
+        db.setVersion(1);
+        db.close();
+    }
+
+    private SQLiteDatabase openWithHelper() {
+        return database.helper().getWritableDatabase();
+    }
+
+    private static int count(SQLiteDatabase db, String sql) {
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // 按 TodoDAO.getTodosPage 的方式生成并绑定第一页、向后翻页和向前翻页的 SQL，都应由索引定位并提供顺序
+    private static void assertPagesUseIndex(SQLiteDatabase db, TodoQuery query, String indexName) {
+        Todo anchor = new Todo("Anchor", null, System.currentTimeMillis(), 2);
+        anchor.setId(100);
+        anchor.setCreatedAtMillis(System.currentTimeMillis());
+        long now = System.currentTimeMillis();
+
+        List<Object> args = new ArrayList<>();
+        query.bindArgs(args, null, true, 20, now);
+        assertPlanUsesIndex(db, query.toSql(false, true), args, indexName, true);
+        for (boolean after : new boolean[]{true, false}) {
+            args.clear();
+            query.bindArgs(args, anchor, after, 20, now);
+            assertPlanUsesIndex(db, query.toSql(true, after), args, indexName, true);
+        }
+    }
+
+    private static void assertUsesIndex(SQLiteDatabase db, String sql, String[] args, String indexName) {
+        List<Object> typedArgs = new ArrayList<>();
+        if (args != null) {
+            for (String arg : args) {
+                typedArgs.add(Long.valueOf(arg));
+            }
+        }
+        assertPlanUsesIndex(db, sql, typedArgs, indexName, true);
+    }
+
+    // ordered 为 true 时还要求排序直接由索引提供，不需要临时 B 树
+    private static void assertPlanUsesIndex(SQLiteDatabase db, String sql, List<Object> args, String indexName,
+                                            boolean ordered) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = TodoDAO.rawQueryWithTypedArgs(db, "EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailIndex)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        String detail = plan.toString();
+        assertTrue(sql + "\n" + detail, detail.contains("USING INDEX " + indexName));
+        if (ordered) {
+            assertFalse(sql + "\n" + detail, detail.contains("TEMP B-TREE"));
+        }
+    }
+
+    private static void assertIndexExists(SQLiteDatabase db, String indexName) {
+        assertTrue(indexName, indexExists(db, indexName));
+    }
+
+    private static void assertIndexMissing(SQLiteDatabase db, String indexName) {
+        assertFalse(indexName, indexExists(db, indexName));
+    }
+
+    private static boolean indexExists(SQLiteDatabase db, String indexName) {
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND name = ?",
+                new String[]{indexName});
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+}
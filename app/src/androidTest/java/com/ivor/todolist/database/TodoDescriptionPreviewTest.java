@@ -0,0 +1,131 @@
+package com.ivor.todolist.database;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 描述预览测试：列表查询只读出描述开头，按 ID 读取时补全为完整描述；只有预览的 Todo 写回时不会截断数据库中的描述。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoDescriptionPreviewTest {
+    private static final TodoQuery QUERY = TodoQuery.builder().build();
+
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("description_preview_test.db");
+
+    @Test
+    public void listQueries_readPreviewOnly() {
+        String full = longDescription(TodoDAO.DESCRIPTION_PREVIEW_LENGTH * 10);
+        long longId = insert("Long", full);
+        long shortId = insert("Short", "short");
+        // 恰好等于预览长度的描述不算截断
+        String exact = longDescription(TodoDAO.DESCRIPTION_PREVIEW_LENGTH);
+        long exactId = insert("Exact", exact);
+        database.dao().getCache().evictAll();
+
+        for (Todo todo : database.dao().getTodosPage(QUERY, null, true, 10)) {
+            if (todo.getId() == longId) {
+                assertFalse(todo.isDescriptionLoaded());
+                assertEquals(full.substring(0, full.offsetByCodePoints(0, TodoDAO.DESCRIPTION_PREVIEW_LENGTH)),
+                        todo.getDescription());
+                assertFalse(todo.hasChanges());
+            } else {
+                assertTrue(todo.isDescriptionLoaded());
+                assertEquals(todo.getId() == shortId ? "short" : exact, todo.getDescription());
+            }
+        }
+        database.dao().getCache().evictAll();
+        List<Todo> byIds = database.dao().getTodosByIds(new long[]{longId, shortId, exactId});
+        assertEquals(3, byIds.size());
+        for (Todo todo : byIds) {
+            assertEquals(todo.getId() != longId, todo.isDescriptionLoaded());
+        }
+    }
+
+    @Test
+    public void getTodoById_completesCachedPreview() {
+        String full = longDescription(500);
+        long id = insert("Long", full);
+        database.dao().getCache().evictAll();
+
+        Todo preview = database.dao().getTodosPage(QUERY, null, true, 10).get(0);
+        assertFalse(preview.isDescriptionLoaded());
+
+        // 返回补全后的副本，列表持有的预览不变
+        Todo loaded = database.dao().getTodoById(id);
+        assertNotSame(preview, loaded);
+        assertFalse(preview.isDescriptionLoaded());
+        assertTrue(loaded.isDescriptionLoaded());
+        assertEquals(full, loaded.getDescription());
+        assertFalse(loaded.hasChanges());
+
+        // 补全的描述已放回缓存
+        int hits = database.dao().getCache().hitCount();
+        assertEquals(full, database.dao().getTodoById(id).getDescription());
+        assertEquals(hits + 1, database.dao().getCache().hitCount());
+    }
+
+    @Test
+    public void writingPreview_keepsFullDescription() {
+        String first = longDescription(300);
+        String second = longDescription(400);
+        long firstId = insert("First", first);
+        long secondId = insert("Second", second);
+        database.dao().getCache().evictAll();
+
+        List<Todo> previews = database.dao().getTodosByIds(new long[]{firstId, secondId});
+        for (Todo todo : previews) {
+            todo.setTitle(todo.getTitle() + " (edited)");
+        }
+        Todo firstPreview = previews.get(0).getId() == firstId ? previews.get(0) : previews.get(1);
+        Todo secondPreview = firstPreview == previews.get(0) ? previews.get(1) : previews.get(0);
+        assertEquals(1, database.dao().updateTodo(firstPreview));
+        assertArrayEquals(new int[]{1}, database.dao().updateTodos(Arrays.asList(secondPreview)));
+
+        database.dao().getCache().evictAll();
+        assertEquals(first, database.dao().getTodoById(firstId).getDescription());
+        assertEquals(second, database.dao().getTodoById(secondId).getDescription());
+        assertEquals("First (edited)", database.dao().getTodoById(firstId).getTitle());
+    }
+
+    @Test
+    public void setDescriptionOnPreview_isWritten() {
+        long id = insert("Long", longDescription(300));
+        database.dao().getCache().evictAll();
+
+        Todo preview = database.dao().getTodosPage(QUERY, null, true, 10).get(0);
+        preview.setDescription("replaced");
+        assertTrue(preview.isDescriptionLoaded());
+        assertEquals(1, database.dao().saveChanges(preview));
+
+        database.dao().getCache().evictAll();
+        assertEquals("replaced", database.dao().getTodoById(id).getDescription());
+    }
+
+    private long insert(String title, String description) {
+        return database.dao().insertTodo(new Todo(title, description));
+    }
+
+    // 含代理对（emoji）的长描述，检验按码点截断
+    private static String longDescription(int codePoints) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < codePoints; i++) {
+            if (i % 10 == 9) {
+                builder.appendCodePoint(0x1F600);
+            } else {
+                builder.append((char) ('a' + i % 26));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package com.ivor.todolist.database;
+
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 对比 SELECT * 与列表投影在 50k 行长描述下的 CursorWindow 填充次数、读入的描述字符数和耗时，结果输出到 logcat。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoListProjectionBenchmarkTest {
+    private static final String TAG = "TodoListProjection";
+    private static final int ROW_COUNT = 50_000;
+    private static final int DESCRIPTION_LENGTH = 1_000;
+    private static final int PAGE_SIZE = 500;
+
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("list_projection_benchmark.db");
+
+    @Before
+    public void setUp() {
+        StringBuilder description = new StringBuilder(DESCRIPTION_LENGTH);
+        for (int i = 0; i < DESCRIPTION_LENGTH; i++) {
+            description.append((char) ('a' + i % 26));
+        }
+        List<Todo> todos = new ArrayList<>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            todos.add(new Todo("Task " + i, i + " " + description, null, i % 3 + 1));
+        }
+        database.dao().insertTodos(todos);
+        database.dao().getCache().evictAll();
+    }
+
+    @Test
+    public void scan_listColumnsVersusAllColumns() {
+        long[] all = scan("SELECT * FROM " + TodoDatabaseHelper.TABLE_TODOS);
+        long[] list = scan("SELECT " + TodoDAO.LIST_COLUMNS + " FROM " + TodoDatabaseHelper.TABLE_TODOS);
+        Log.i(TAG, String.format("SELECT *: %d window fills, %d description chars, %d ms",
+                all[0], all[1], all[2] / 1_000_000));
+        Log.i(TAG, String.format("LIST_COLUMNS: %d window fills, %d description chars, %d ms",
+                list[0], list[1], list[2] / 1_000_000));
+        assertTrue(list[0] * 4 < all[0]);
+        assertTrue(list[1] * 4 < all[1]);
+    }
+
+    @Test
+    public void pageThroughList_keepsOnlyPreviews() {
+        TodoQuery query = TodoQuery.builder().build();
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+
+        // 保留所有页，模拟列表持有全部已加载的行
+        List<List<Todo>> pages = new ArrayList<>();
+        Todo anchor = null;
+        int count = 0;
+        long descriptionChars = 0;
+        List<Todo> page;
+        while (!(page = database.dao().getTodosPage(query, anchor, true, PAGE_SIZE)).isEmpty()) {
+            pages.add(page);
+            for (Todo todo : page) {
+                assertFalse(todo.isDescriptionLoaded());
+                descriptionChars += todo.getDescription().length();
+            }
+            count += page.size();
+            anchor = page.get(page.size() - 1);
+        }
+        long elapsed = System.nanoTime() - start;
+        runtime.gc();
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+        Log.i(TAG, String.format("paged %d rows (%d pages) in %d ms, %d description chars, heap +%d KB",
+                count, pages.size(), elapsed / 1_000_000, descriptionChars, (heapAfter - heapBefore) / 1024));
+        assertEquals(ROW_COUNT, count);
+        assertTrue(descriptionChars <= (long) ROW_COUNT * TodoDAO.DESCRIPTION_PREVIEW_LENGTH);
+    }
+
+    // 返回 {CursorWindow 填充次数, 读入的描述字符数, 耗时纳秒}
+    private long[] scan(String sql) {
+        long start = System.nanoTime();
+        long fills = 0;
+        long chars = 0;
+        int windowStart = -1;
+        Cursor cursor = database.helper().getReadableDatabase().rawQuery(sql, null);
+        try {
+            int descriptionIndex = cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_DESCRIPTION);
+            while (cursor.moveToNext()) {
+                // 移出当前窗口时重新填充，窗口起始位置随之变化
+                int position = ((AbstractWindowedCursor) cursor).getWindow().getStartPosition();
+                if (position != windowStart) {
+                    windowStart = position;
+                    fills++;
+                }
+                chars += cursor.getString(descriptionIndex).length();
+            }
+        } finally {
+            cursor.close();
+        }
+        return new long[]{fills, chars, System.nanoTime() - start};
+    }
+}
@@ -0,0 +1,99 @@
+package com.ivor.todolist.database;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 提醒调度使用的截止时间范围查询：只返回未完成且截止时间在范围内的任务，按截止时间排列；
+ * 下一个截止时间跳过已完成和没有截止时间的任务；50k 行时重建提醒（重启后）的耗时输出到 logcat。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoReminderQueryTest {
+    private static final long BASE = 1_700_000_000_000L;
+    private static final long MINUTE = 60_000L;
+    private static final String TAG = "TodoReminderQuery";
+    private static final int ROW_COUNT = 50_000;
+
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("reminder_query_test.db");
+
+    @Test
+    public void openTodosDueBetween_returnsRangeInDueOrder() {
+        long late = insert("Late", BASE + 30 * MINUTE, false);
+        long early = insert("Early", BASE + 10 * MINUTE, false);
+        insert("Completed", BASE + 20 * MINUTE, true);
+        insert("No due date", Todo.NO_DUE_DATE, false);
+        insert("Outside", BASE + 60 * MINUTE, false);
+        database.dao().getCache().evictAll();
+
+        List<Todo> due = database.dao().getOpenTodosDueBetween(BASE, BASE + 60 * MINUTE);
+        assertEquals(2, due.size());
+        assertEquals(early, due.get(0).getId());
+        assertEquals(late, due.get(1).getId());
+        assertTrue(due.get(0).isDescriptionLoaded());
+
+        // 下界包含、上界不包含
+        assertEquals(1, database.dao().getOpenTodosDueBetween(BASE + 10 * MINUTE, BASE + 30 * MINUTE).size());
+        assertTrue(database.dao().getOpenTodosDueBetween(BASE + 61 * MINUTE, Todo.NO_DUE_DATE).isEmpty());
+    }
+
+    @Test
+    public void nextOpenDueDate_skipsCompletedAndUndated() {
+        assertEquals(Todo.NO_DUE_DATE, database.dao().getNextOpenDueDate(BASE));
+
+        insert("Completed", BASE + 5 * MINUTE, true);
+        insert("No due date", Todo.NO_DUE_DATE, false);
+        assertEquals(Todo.NO_DUE_DATE, database.dao().getNextOpenDueDate(BASE));
+
+        insert("Open", BASE + 20 * MINUTE, false);
+        insert("Past", BASE - MINUTE, false);
+        assertEquals(BASE + 20 * MINUTE, database.dao().getNextOpenDueDate(BASE));
+        assertEquals(BASE - MINUTE, database.dao().getNextOpenDueDate(0));
+        assertEquals(Todo.NO_DUE_DATE, database.dao().getNextOpenDueDate(BASE + 20 * MINUTE + 1));
+    }
+
+    @Test
+    public void rebuildWith50kTodos_readsOnlyNextReminder() {
+        // 一半已完成，其余按分钟分布在 BASE 前后，每 7 个没有截止时间
+        List<Todo> todos = new ArrayList<>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            long dueDate = i % 7 == 0 ? Todo.NO_DUE_DATE : BASE + (i - ROW_COUNT / 2) * MINUTE;
+            Todo todo = new Todo("Task " + i, null, dueDate, i % 3 + 1);
+            todo.setCompleted(i % 2 == 0);
+            todos.add(todo);
+        }
+        database.dao().insertTodos(todos);
+        database.dao().getCache().evictAll();
+
+        long start = System.nanoTime();
+        long next = database.dao().getNextOpenDueDate(BASE);
+        List<Todo> due = database.dao().getOpenTodosDueBetween(next, next + MINUTE);
+        long elapsed = System.nanoTime() - start;
+        Log.i(TAG, String.format("rebuild over %d todos: next due %d, %d due in window, %d us",
+                ROW_COUNT, next - BASE, due.size(), elapsed / 1_000));
+
+        // 第一个不早于 BASE 的未完成任务：i = ROW_COUNT / 2 + 1（奇数，且不是 7 的倍数）
+        assertEquals(BASE + MINUTE, next);
+        assertEquals(1, due.size());
+        // 远小于广播 10 秒的处理时限
+        assertTrue(elapsed < 1_000_000_000L);
+    }
+
+    private long insert(String title, long dueDate, boolean completed) {
+        Todo todo = new Todo(title, "description of " + title, dueDate, 2);
+        todo.setCompleted(completed);
+        return database.dao().insertTodo(todo);
+    }
+}
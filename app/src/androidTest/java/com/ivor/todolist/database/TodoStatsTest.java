@@ -0,0 +1,148 @@
+package com.ivor.todolist.database;
+
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 统计表测试：随机插入、修改、完成和删除后，触发器维护的统计与直接聚合 todos 的结果一致。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoStatsTest {
+    private static final String[] CATEGORIES = {null, "Work", "Home", "Shopping"};
+
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("stats_test.db");
+
+    @Test
+    public void emptyDatabase_hasNoStats() {
+        TodoStats stats = database.dao().getStats();
+        assertTrue(stats.isEmpty());
+        assertNull(stats.getEarliestOpenDueDate());
+        assertEquals(0, database.count("SELECT COUNT(*) FROM " + TodoDatabaseHelper.TABLE_TODO_STATS));
+    }
+
+    @Test
+    public void earliestOpenDueDate_followsCompletionAndDeletion() {
+        long now = System.currentTimeMillis();
+        Todo early = insert("Early", now - 1000, 1, "Work");
+        Todo late = insert("Late", now + 1000, 1, "Work");
+        insert("No due", null, 1, "Work");
+
+        TodoStats stats = database.dao().getStats();
+        assertEquals(new Date(now - 1000), stats.getEarliestOpenDueDate());
+        assertTrue(stats.hasOverdue(now));
+        assertEquals(3, stats.getOpenCount("Work"));
+
+        early.setCompleted(true);
+        database.dao().saveChanges(early);
+        stats = database.dao().getStats();
+        assertEquals(new Date(now + 1000), stats.getEarliestOpenDueDate());
+        assertFalse(stats.hasOverdue(now));
+        assertEquals(2, stats.getOpenCount("Work"));
+        assertEquals(3, stats.getCount("Work"));
+
+        database.dao().deleteTodo(late.getId());
+        assertNull(database.dao().getStats().getEarliestOpenDueDate());
+    }
+
+    @Test
+    public void randomWrites_matchAggregateOverTodos() {
+        Random random = new Random(5);
+        long now = System.currentTimeMillis();
+        List<Todo> todos = new ArrayList<>();
+        for (int step = 0; step < 500; step++) {
+            int operation = todos.isEmpty() ? 0 : random.nextInt(5);
+            switch (operation) {
+                case 0: {
+                    Long due = random.nextBoolean() ? now + (random.nextInt(100) - 50) * 60_000L : null;
+                    todos.add(insert("Task " + step, due, random.nextInt(3) + 1,
+                            CATEGORIES[random.nextInt(CATEGORIES.length)]));
+                    break;
+                }
+                case 1: {
+                    Todo todo = todos.get(random.nextInt(todos.size()));
+                    todo.setPriority(random.nextInt(3) + 1);
+                    todo.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                    todo.setDueDate(random.nextBoolean() ? new Date(now + random.nextInt(100) * 60_000L) : null);
+                    database.dao().saveChanges(todo);
+                    break;
+                }
+                case 2: {
+                    Todo todo = todos.get(random.nextInt(todos.size()));
+                    database.dao().setCompleted(new long[]{todo.getId()}, !todo.isCompleted());
+                    todos.set(todos.indexOf(todo), database.dao().getTodoById(todo.getId()));
+                    break;
+                }
+                case 3: {
+                    // 只修改标题，不触发统计更新
+                    Todo todo = todos.get(random.nextInt(todos.size()));
+                    todo.setTitle("Renamed " + step);
+                    database.dao().saveChanges(todo);
+                    break;
+                }
+                default: {
+                    Todo todo = todos.remove(random.nextInt(todos.size()));
+                    database.dao().deleteTodo(todo.getId());
+                    break;
+                }
+            }
+            if (step % 50 == 0) {
+                assertMatchesAggregate(now);
+            }
+        }
+        assertMatchesAggregate(now);
+    }
+
+    private void assertMatchesAggregate(long now) {
+        TodoStats stats = database.dao().getStats();
+        assertEquals(database.count("SELECT COUNT(*) FROM todos"), stats.getTotalCount());
+        assertEquals(database.count("SELECT COUNT(*) FROM todos WHERE is_completed = 0"), stats.getOpenCount());
+        for (int priority = 1; priority <= 3; priority++) {
+            assertEquals(database.count("SELECT COUNT(*) FROM todos WHERE is_completed = 0 AND priority = " + priority),
+                    stats.getOpenCount(priority));
+        }
+        for (String category : CATEGORIES) {
+            if (category != null) {
+                String categoryId = "(SELECT id FROM categories WHERE name = '" + category + "')";
+                assertEquals(database.count("SELECT COUNT(*) FROM todos WHERE category_id = " + categoryId),
+                        stats.getCount(category));
+                assertEquals(database.count("SELECT COUNT(*) FROM todos WHERE is_completed = 0 AND category_id = " +
+                        categoryId), stats.getOpenCount(category));
+            }
+        }
+        Cursor cursor = database.helper().getReadableDatabase()
+                .rawQuery("SELECT MIN(due_date) FROM todos WHERE is_completed = 0", null);
+        try {
+            cursor.moveToFirst();
+            Date expected = cursor.isNull(0) ? null : new Date(cursor.getLong(0));
+            assertEquals(expected, stats.getEarliestOpenDueDate());
+        } finally {
+            cursor.close();
+        }
+        // 计数归零的分组不保留
+        assertEquals(0, database.count("SELECT COUNT(*) FROM " + TodoDatabaseHelper.TABLE_TODO_STATS +
+                " WHERE open_count = 0 AND completed_count = 0"));
+        assertEquals(stats.hasOverdue(now), database.count("SELECT COUNT(*) FROM todos WHERE is_completed = 0 AND " +
+                "due_date < " + now) > 0);
+    }
+
+    private Todo insert(String title, Long due, int priority, String category) {
+        Todo todo = new Todo(title, null, due != null ? new Date(due) : null, priority);
+        todo.setCategory(category);
+        return database.insert(todo);
+    }
+}
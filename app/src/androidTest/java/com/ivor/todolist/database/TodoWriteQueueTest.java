@@ -0,0 +1,199 @@
+package com.ivor.todolist.database;
+
+import android.database.sqlite.SQLiteException;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 延迟写入队列测试：同一 ID 的修改合并、写入顺序、合并窗口到期自动写入，以及写入失败时回滚并保留修改。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoWriteQueueTest {
+    // 足够长，测试中只有显式 flush 才会写入
+    private static final long LONG_WINDOW_MS = 60_000;
+
+    @Rule
+    public final TestDatabaseRule database = new TestDatabaseRule("write_queue_test.db", FailingTodoDAO::new);
+
+    private FailingTodoDAO todoDAO;
+    private ScheduledExecutorService executor;
+    private final List<List<TodoWriteQueue.Change>> flushes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        todoDAO = (FailingTodoDAO) database.dao();
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void enqueue_coalescesChangesToSameTodo() throws Exception {
+        TodoWriteQueue queue = newQueue(LONG_WINDOW_MS);
+        Todo todo = database.insert("Task");
+
+        for (int i = 0; i < 5; i++) {
+            todo.setCompleted(!todo.isCompleted());
+            queue.enqueue(todo);
+        }
+        todo.setPriority(1);
+        queue.enqueue(todo);
+
+        // 合并窗口内没有写入
+        assertFalse(loadFromDatabase(todo.getId()).isCompleted());
+        assertEquals(0, todoDAO.saveCount.get());
+
+        queue.flush().get();
+        assertEquals(1, todoDAO.saveCount.get());
+        assertEquals(1, flushes.size());
+        assertEquals(1, flushes.get(0).size());
+        assertEquals(Todo.FIELD_COMPLETED | Todo.FIELD_PRIORITY, flushes.get(0).get(0).fields);
+
+        Todo loaded = loadFromDatabase(todo.getId());
+        assertTrue(loaded.isCompleted());
+        assertEquals(1, loaded.getPriority());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void flush_writesInFirstEnqueueOrderWithLatestValues() throws Exception {
+        TodoWriteQueue queue = newQueue(LONG_WINDOW_MS);
+        Todo first = database.insert("First");
+        Todo second = database.insert("Second");
+
+        first.setTitle("First v1");
+        queue.enqueue(first);
+        second.setTitle("Second v1");
+        queue.enqueue(second);
+        first.setTitle("First v2");
+        queue.enqueue(first);
+        // 加入队列后的修改不影响已加入的快照
+        second.setTitle("Second local");
+
+        queue.flush().get();
+        List<TodoWriteQueue.Change> changes = flushes.get(0);
+        assertEquals(2, changes.size());
+        assertEquals(first.getId(), changes.get(0).todo.getId());
+        assertEquals(second.getId(), changes.get(1).todo.getId());
+        assertEquals("First v2", loadFromDatabase(first.getId()).getTitle());
+        assertEquals("Second v1", loadFromDatabase(second.getId()).getTitle());
+    }
+
+    @Test
+    public void discard_dropsPendingChangeOfDeletedTodo() throws Exception {
+        TodoWriteQueue queue = newQueue(LONG_WINDOW_MS);
+        Todo kept = database.insert("Kept");
+        Todo deleted = database.insert("Deleted");
+
+        kept.setCompleted(true);
+        queue.enqueue(kept);
+        deleted.setCompleted(true);
+        queue.enqueue(deleted);
+        queue.discard(deleted.getId());
+        todoDAO.deleteTodo(deleted.getId());
+
+        queue.flush().get();
+        assertEquals(1, flushes.get(0).size());
+        assertEquals(kept.getId(), flushes.get(0).get(0).todo.getId());
+    }
+
+    @Test
+    public void enqueue_flushesAfterCoalesceWindow() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(1);
+        TodoWriteQueue queue = new TodoWriteQueue(todoDAO, executor, 100, changes -> flushed.countDown());
+        Todo todo = database.insert("Task");
+
+        todo.setCompleted(true);
+        queue.enqueue(todo);
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        assertTrue(loadFromDatabase(todo.getId()).isCompleted());
+    }
+
+    @Test
+    public void failedFlush_rollsBackAndKeepsChangesForRetry() throws Exception {
+        TodoWriteQueue queue = newQueue(LONG_WINDOW_MS);
+        Todo first = database.insert("First");
+        Todo second = database.insert("Second");
+
+        first.setCompleted(true);
+        queue.enqueue(first);
+        second.setPriority(3);
+        queue.enqueue(second);
+
+        // 第二条写入失败：整个事务回滚，第一条也不会写入
+        todoDAO.failOnSave = 2;
+        try {
+            queue.flush().get();
+            fail("flush should fail");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof SQLiteException);
+        }
+        assertFalse(loadFromDatabase(first.getId()).isCompleted());
+        assertTrue(flushes.isEmpty());
+        assertFalse(queue.isEmpty());
+
+        // 失败后又有新的修改，与放回队列的修改合并
+        second.setTitle("Second v2");
+        queue.enqueue(second);
+
+        queue.flush().get();
+        assertTrue(queue.isEmpty());
+        assertTrue(loadFromDatabase(first.getId()).isCompleted());
+        Todo loaded = loadFromDatabase(second.getId());
+        assertEquals(3, loaded.getPriority());
+        assertEquals("Second v2", loaded.getTitle());
+        assertEquals(Todo.FIELD_PRIORITY | Todo.FIELD_TITLE, flushes.get(0).get(1).fields);
+    }
+
+    private TodoWriteQueue newQueue(long windowMs) {
+        return new TodoWriteQueue(todoDAO, executor, windowMs, flushes::add);
+    }
+
+    // 清空缓存后读取，得到数据库中的实际值，而不是测试中正在修改的同一个对象
+    private Todo loadFromDatabase(long id) {
+        todoDAO.getCache().evictAll();
+        return todoDAO.getTodoById(id);
+    }
+
+    // 统计 saveChanges 的调用次数，并可以让第 n 次调用失败
+    private static class FailingTodoDAO extends TodoDAO {
+        final AtomicInteger saveCount = new AtomicInteger();
+        volatile int failOnSave;
+
+        FailingTodoDAO(TodoDatabaseHelper helper) {
+            super(helper);
+        }
+
+        @Override
+        public int saveChanges(Todo todo) {
+            if (saveCount.incrementAndGet() == failOnSave) {
+                failOnSave = 0;
+                saveCount.set(0);
+                throw new SQLiteException("simulated write failure");
+            }
+            return super.saveChanges(todo);
+        }
+    }
+}
@@ -15,9 +15,8 @@ import androidx.appcompat.widget.Toolbar;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.textfield.TextInputEditText;
-import com.ivor.todolist.database.TodoDAO;
+import com.ivor.todolist.database.TodoRepository;
 import com.ivor.todolist.model.Todo;
-import com.ivor.todolist.notification.NotificationHelper;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -35,8 +34,7 @@ public class AddTodoActivity extends AppCompatActivity {
     private Button btnCancel;
     private Button btnSave;
     
-    private TodoDAO todoDAO;
-    private NotificationHelper notificationHelper;
+    private TodoRepository todoRepository;
     private Calendar selectedDateTime;
     private SimpleDateFormat dateTimeFormat;
     
@@ -49,12 +47,17 @@ public class AddTodoActivity extends AppCompatActivity {
         setupToolbar();
         setupClickListeners();
         
-        todoDAO = new TodoDAO(this);
-        notificationHelper = new NotificationHelper(this);
+        todoRepository = new TodoRepository(this);
         selectedDateTime = Calendar.getInstance();
         dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
     }
     
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        todoRepository.close();
+    }
+    
     private void initViews() {
         editTextTitle = findViewById(R.id.editTextTitle);
         editTextDescription = findViewById(R.id.editTextDescription);
@@ -142,26 +145,24 @@ public class AddTodoActivity extends AppCompatActivity {
         
         // 检查是否设置了截止时间
         if (!textViewSelectedDateTime.getText().toString().equals("未设置截止时间")) {
-            todo.setDueDate(selectedDateTime.getTime());
+            todo.setDueDateMillis(selectedDateTime.getTimeInMillis());
         }
         
-        todoDAO.open();
-        long result = todoDAO.insertTodo(todo);
-        todoDAO.close();
-        
-        if (result != -1) {
-            // 设置通知提醒
-            todo.setId(result);
-            if (todo.getDueDate() != null) {
-                notificationHelper.scheduleNotification(todo);
+        // 保存完成前禁用按钮，防止重复提交
+        btnSave.setEnabled(false);
+        todoRepository.insertTodo(todo, result -> {
+            if (result != -1) {
+                // 提醒由 TodoApplication 在写入提交后重设，不依赖这个回调
+                todo.setId(result);
+                
+                Toast.makeText(this, "任务添加成功", Toast.LENGTH_SHORT).show();
+                setResult(RESULT_OK);
+                finish();
+            } else {
+                btnSave.setEnabled(true);
+                Toast.makeText(this, "任务添加失败", Toast.LENGTH_SHORT).show();
             }
-            
-            Toast.makeText(this, "任务添加成功", Toast.LENGTH_SHORT).show();
-            setResult(RESULT_OK);
-            finish();
-        } else {
-            Toast.makeText(this, "任务添加失败", Toast.LENGTH_SHORT).show();
-        }
+        });
     }
     
     private int getSelectedPriority() {
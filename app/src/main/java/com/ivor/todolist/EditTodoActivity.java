@@ -16,9 +16,8 @@ import androidx.appcompat.widget.Toolbar;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.textfield.TextInputEditText;
-import com.ivor.todolist.database.TodoDAO;
+import com.ivor.todolist.database.TodoRepository;
 import com.ivor.todolist.model.Todo;
-import com.ivor.todolist.notification.NotificationHelper;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -37,8 +36,7 @@ public class EditTodoActivity extends AppCompatActivity {
     private Button btnSave;
     private TextView textViewSelectedDateTime;
     
-    private TodoDAO todoDAO;
-    private NotificationHelper notificationHelper;
+    private TodoRepository todoRepository;
     private Todo currentTodo;
     private Calendar selectedDateTime;
     private SimpleDateFormat dateTimeFormat;
@@ -52,14 +50,19 @@ public class EditTodoActivity extends AppCompatActivity {
         setupToolbar();
         setupClickListeners();
         
-        todoDAO = new TodoDAO(this);
-        notificationHelper = new NotificationHelper(this);
+        todoRepository = new TodoRepository(this);
         dateTimeFormat = new SimpleDateFormat("yyyy年MM月dd日 HH:mm", Locale.getDefault());
         selectedDateTime = Calendar.getInstance();
         
         loadTodoData();
     }
     
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        todoRepository.close();
+    }
+    
     private void initViews() {
         editTextTitle = findViewById(R.id.editTextTitle);
         editTextDescription = findViewById(R.id.editTextDescription);
@@ -93,14 +96,18 @@ public class EditTodoActivity extends AppCompatActivity {
     private void loadTodoData() {
         long todoId = getIntent().getLongExtra("todo_id", -1);
         if (todoId != -1) {
-            todoDAO.open();
-            currentTodo = todoDAO.getTodoById(todoId);
-            if (currentTodo != null) {
-                populateFields();
-            } else {
-                Toast.makeText(this, "无法加载任务数据", Toast.LENGTH_SHORT).show();
-                finish();
-            }
+            // 数据加载完成前不允许保存。列表中的 Todo 只有描述预览，getTodoById 会按 ID 补全完整描述
+            btnSave.setEnabled(false);
+            todoRepository.getTodoById(todoId, todo -> {
+                currentTodo = todo;
+                if (currentTodo != null) {
+                    populateFields();
+                    btnSave.setEnabled(true);
+                } else {
+                    Toast.makeText(this, "无法加载任务数据", Toast.LENGTH_SHORT).show();
+                    finish();
+                }
+            });
         } else {
             Toast.makeText(this, "无效的任务ID", Toast.LENGTH_SHORT).show();
             finish();
@@ -126,8 +133,8 @@ public class EditTodoActivity extends AppCompatActivity {
         }
         
         // 设置截止时间
-        if (currentTodo.getDueDate() != null) {
-            selectedDateTime.setTime(currentTodo.getDueDate());
+        if (currentTodo.hasDueDate()) {
+            selectedDateTime.setTimeInMillis(currentTodo.getDueDateMillis());
             updateDateTimeDisplay();
         } else {
             textViewSelectedDateTime.setText("未设置截止时间");
@@ -206,25 +213,31 @@ public class EditTodoActivity extends AppCompatActivity {
         currentTodo.setPriority(getSelectedPriority());
         
         if (selectedDateTime != null) {
-            currentTodo.setDueDate(selectedDateTime.getTime());
+            currentTodo.setDueDateMillis(selectedDateTime.getTimeInMillis());
         } else {
-            currentTodo.setDueDate(null);
+            currentTodo.setDueDateMillis(Todo.NO_DUE_DATE);
         }
         
-        // 保存到数据库
-        todoDAO.open();
-        int rowsAffected = todoDAO.updateTodo(currentTodo);
-        
-        if (rowsAffected > 0) {
-            // 更新通知提醒
-            notificationHelper.updateNotification(currentTodo);
-            
-            Toast.makeText(this, "任务已更新", Toast.LENGTH_SHORT).show();
-            setResult(RESULT_OK);
+        // 没有任何修改时直接返回
+        if (!currentTodo.hasChanges()) {
+            setResult(RESULT_CANCELED);
             finish();
-        } else {
-            Toast.makeText(this, "更新失败，请重试", Toast.LENGTH_SHORT).show();
+            return;
         }
+        
+        // 保存到数据库，只写回修改过的字段
+        btnSave.setEnabled(false);
+        todoRepository.saveChanges(currentTodo, rowsAffected -> {
+            if (rowsAffected > 0) {
+                // 截止时间或完成状态变化时，TodoApplication 在写入提交后重设提醒
+                Toast.makeText(this, "任务已更新", Toast.LENGTH_SHORT).show();
+                setResult(RESULT_OK);
+                finish();
+            } else {
+                btnSave.setEnabled(true);
+                Toast.makeText(this, "更新失败，请重试", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
     
     @Override
@@ -2,14 +2,18 @@ package com.ivor.todolist;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.HorizontalScrollView;
 import android.widget.PopupMenu;
 import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -17,46 +21,93 @@ import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.ivor.todolist.adapter.TodoAdapter;
-import com.ivor.todolist.database.TodoDAO;
+import com.ivor.todolist.database.TodoQuery;
+import com.ivor.todolist.database.TodoRepository;
+import com.ivor.todolist.database.TodoStats;
 import com.ivor.todolist.model.Todo;
-import com.ivor.todolist.notification.NotificationHelper;
 
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
-public class MainActivity extends AppCompatActivity implements TodoAdapter.OnTodoItemClickListener {
-    private static final int REQUEST_ADD_TODO = 1;
-    private static final int REQUEST_EDIT_TODO = 2;
+public class MainActivity extends AppCompatActivity implements TodoAdapter.OnTodoItemClickListener,
+        TodoListViewModel.StatsListener {
     
     private RecyclerView recyclerViewTodos;
-    private TodoAdapter todoAdapter;
     private TextView textViewEmpty;
     private ChipGroup chipGroupFilter;
-    private TodoDAO todoDAO;
-    private NotificationHelper notificationHelper;
-    private List<Todo> allTodos;
+    private HorizontalScrollView scrollCategoryFilter;
+    private ChipGroup chipGroupCategory;
+    // 列表数据、筛选条件和进行中的读取都在 ViewModel 中，Activity 重建后继续使用
+    private TodoListViewModel viewModel;
+    private TodoAdapter todoAdapter;
+    private TodoRepository todoRepository;
+    // 分类筛选中当前显示的分类，与统计中的分类相同时只更新数量，不重建选项
+    private final List<String> categoryChipNames = new ArrayList<>();
+    private final RecyclerView.AdapterDataObserver emptyViewObserver = new RecyclerView.AdapterDataObserver() {
+        @Override
+        public void onChanged() {
+            updateEmptyView();
+        }
+        
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            updateEmptyView();
+        }
+        
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            updateEmptyView();
+        }
+    };
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         
+        // 配置变化后拿到的是同一个实例，保留的列表内容直接填充新的 Adapter
+        viewModel = new ViewModelProvider(this).get(TodoListViewModel.class);
+        // Adapter 随 Activity 创建，行的颜色按当前主题和夜间模式解析
+        todoAdapter = new TodoAdapter(this);
+        todoRepository = viewModel.getRepository();
+        
         initViews();
         setupToolbar();
         setupRecyclerView();
         setupFilterChips();
         setupFab();
         
-        todoDAO = new TodoDAO(this);
-        notificationHelper = new NotificationHelper(this);
-        loadTodos();
+        viewModel.setStatsListener(this);
+    }
+    
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // 离开界面前写入延迟队列中的修改
+        todoRepository.flushQueuedChanges();
+    }
+    
+    @Override
+    protected void onStop() {
+        super.onStop();
+        todoRepository.flushQueuedChanges();
+    }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // 列表内容交给 ViewModel 保存，重建后的 Activity 用它填充新的 Adapter；读取和订阅由 ViewModel 在结束时取消
+        viewModel.setStatsListener(null);
+        viewModel.detachAdapter();
     }
     
     private void initViews() {
         recyclerViewTodos = findViewById(R.id.recyclerViewTodos);
         textViewEmpty = findViewById(R.id.textViewEmpty);
         chipGroupFilter = findViewById(R.id.chipGroupFilter);
+        scrollCategoryFilter = findViewById(R.id.scrollCategoryFilter);
+        chipGroupCategory = findViewById(R.id.chipGroupCategory);
     }
     
     private void setupToolbar() {
@@ -68,48 +119,156 @@ public class MainActivity extends AppCompatActivity implements TodoAdapter.OnTod
     }
     
     private void setupRecyclerView() {
-        todoAdapter = new TodoAdapter(this);
         todoAdapter.setOnTodoItemClickListener(this);
+        todoAdapter.registerAdapterDataObserver(emptyViewObserver);
+        // 重建时 Adapter 填充保留的内容后，滚动位置由 LinearLayoutManager 保存的状态恢复
         recyclerViewTodos.setLayoutManager(new LinearLayoutManager(this));
         recyclerViewTodos.setAdapter(todoAdapter);
+        viewModel.attachAdapter(todoAdapter);
+        updateEmptyView();
     }
     
     private void setupFilterChips() {
+        // 先选中保留的筛选，再设置监听，重建时不会触发重新加载
+        int checkedId;
+        switch (viewModel.getCurrentFilter()) {
+            case INCOMPLETE:
+                checkedId = R.id.chipIncomplete;
+                break;
+            case COMPLETED:
+                checkedId = R.id.chipCompleted;
+                break;
+            default:
+                checkedId = R.id.chipAll;
+                break;
+        }
+        ((Chip) findViewById(checkedId)).setChecked(true);
+        
         chipGroupFilter.setOnCheckedStateChangeListener((group, checkedIds) -> {
             if (!checkedIds.isEmpty()) {
-                int checkedId = checkedIds.get(0);
-                if (checkedId == R.id.chipAll) {
-                    todoAdapter.filterTodos(TodoAdapter.FilterType.ALL);
-                } else if (checkedId == R.id.chipIncomplete) {
-                    todoAdapter.filterTodos(TodoAdapter.FilterType.INCOMPLETE);
-                } else if (checkedId == R.id.chipCompleted) {
-                    todoAdapter.filterTodos(TodoAdapter.FilterType.COMPLETED);
+                int id = checkedIds.get(0);
+                if (id == R.id.chipAll) {
+                    filterTodos(TodoAdapter.FilterType.ALL);
+                } else if (id == R.id.chipIncomplete) {
+                    filterTodos(TodoAdapter.FilterType.INCOMPLETE);
+                } else if (id == R.id.chipCompleted) {
+                    filterTodos(TodoAdapter.FilterType.COMPLETED);
                 }
-                updateEmptyView();
             }
         });
         
-        // 默认选中"全部"
-        ((Chip) findViewById(R.id.chipAll)).setChecked(true);
+        chipGroupCategory.setOnCheckedStateChangeListener((group, checkedIds) -> {
+            if (!checkedIds.isEmpty()) {
+                viewModel.filterCategory((String) group.findViewById(checkedIds.get(0)).getTag());
+            }
+        });
+    }
+    
+    @Override
+    public void onStatsChanged(TodoStats stats) {
+        updateSummary(stats);
+        updateCategoryChips(stats);
+        updateEmptyView();
+    }
+    
+    // 按统计中的分类生成分类筛选，每个分类显示其待办数量
+    private void updateCategoryChips(TodoStats stats) {
+        String currentCategory = viewModel.getCurrentCategory();
+        List<String> names = new ArrayList<>();
+        for (String category : stats.getCategories()) {
+            names.add(category);
+        }
+        if (names.isEmpty() && currentCategory == null) {
+            scrollCategoryFilter.setVisibility(View.GONE);
+            return;
+        }
+        scrollCategoryFilter.setVisibility(View.VISIBLE);
+        // 选中的分类暂时没有待办时仍保留该选项，避免筛选条件被悄悄改变
+        if (currentCategory != null && !names.contains(currentCategory)) {
+            names.add(currentCategory);
+        }
+        if (!names.equals(categoryChipNames)) {
+            categoryChipNames.clear();
+            categoryChipNames.addAll(names);
+            chipGroupCategory.removeAllViews();
+            addCategoryChip(null);
+            for (String name : names) {
+                addCategoryChip(name);
+            }
+        }
+        for (int i = 0; i < chipGroupCategory.getChildCount(); i++) {
+            Chip chip = (Chip) chipGroupCategory.getChildAt(i);
+            String category = (String) chip.getTag();
+            chip.setText(category == null ? "全部分类" : category + " " + stats.getCount(category));
+        }
+    }
+    
+    private void addCategoryChip(String category) {
+        String currentCategory = viewModel.getCurrentCategory();
+        Chip chip = (Chip) LayoutInflater.from(this).inflate(R.layout.item_category_chip, chipGroupCategory, false);
+        chip.setId(View.generateViewId());
+        chip.setTag(category);
+        chipGroupCategory.addView(chip);
+        // 添加后再选中，由 ChipGroup 保证单选；与当前筛选相同，不会重新加载
+        chip.setChecked(category == null ? currentCategory == null : category.equals(currentCategory));
     }
     
     private void setupFab() {
         FloatingActionButton fab = findViewById(R.id.fabAddTodo);
         fab.setOnClickListener(v -> {
             Intent intent = new Intent(MainActivity.this, AddTodoActivity.class);
-            startActivityForResult(intent, REQUEST_ADD_TODO);
+            startActivity(intent);
         });
     }
     
-    private void loadTodos() {
-        todoDAO.open();
-        allTodos = todoDAO.getAllTodos();
-        todoAdapter.setTodoList(allTodos);
-        updateEmptyView();
+    private void filterTodos(TodoAdapter.FilterType filterType) {
+        if (viewModel.filterTodos(filterType)) {
+            updateEmptyView();
+        }
+    }
+    
+    private void updateSummary(TodoStats stats) {
+        if (getSupportActionBar() == null) {
+            return;
+        }
+        if (stats.isEmpty()) {
+            getSupportActionBar().setSubtitle(null);
+            return;
+        }
+        String summary = String.format(Locale.getDefault(), "%d 项未完成，%d 项已完成",
+                stats.getOpenCount(), stats.getCompletedCount());
+        if (stats.hasOverdue(System.currentTimeMillis())) {
+            summary += "，有逾期";
+        }
+        getSupportActionBar().setSubtitle(summary);
+    }
+    
+    // 当前筛选下的待办数量，由统计得到，不需要把列表全部加载到内存
+    private int countForFilter(TodoStats stats) {
+        String currentCategory = viewModel.getCurrentCategory();
+        int open = currentCategory == null ? stats.getOpenCount() : stats.getOpenCount(currentCategory);
+        int total = currentCategory == null ? stats.getTotalCount() : stats.getCount(currentCategory);
+        switch (viewModel.getCurrentFilter()) {
+            case INCOMPLETE:
+                return open;
+            case COMPLETED:
+                return total - open;
+            default:
+                return total;
+        }
     }
     
     private void updateEmptyView() {
-        if (todoAdapter.isEmpty()) {
+        TodoStats stats = viewModel.getStats();
+        boolean empty;
+        if (viewModel.getSearchQuery().isEmpty() && stats != null) {
+            empty = countForFilter(stats) == 0;
+            textViewEmpty.setText(stats.isEmpty() ? "暂无待办事项\n点击右下角按钮添加新的任务" : "没有符合条件的待办事项");
+        } else {
+            // 搜索结果只有已加载的这些
+            empty = todoAdapter.isEmpty();
+        }
+        if (empty) {
             textViewEmpty.setVisibility(View.VISIBLE);
             recyclerViewTodos.setVisibility(View.GONE);
         } else {
@@ -121,6 +280,31 @@ public class MainActivity extends AppCompatActivity implements TodoAdapter.OnTod
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint("搜索标题、描述或分类");
+        // 重建后恢复进行中的搜索；与保留的搜索词相同，不会重新搜索
+        String searchQuery = viewModel.getSearchQuery();
+        if (!searchQuery.isEmpty()) {
+            searchItem.expandActionView();
+            searchView.setQuery(searchQuery, false);
+            searchView.clearFocus();
+        }
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                viewModel.submitSearch(query);
+                searchView.clearFocus();
+                return true;
+            }
+            
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                viewModel.onSearchQueryChanged(newText);
+                return true;
+            }
+        });
         return true;
     }
     
@@ -139,14 +323,17 @@ public class MainActivity extends AppCompatActivity implements TodoAdapter.OnTod
         
         popupMenu.setOnMenuItemClickListener(item -> {
             int itemId = item.getItemId();
+            TodoQuery.Builder builder = viewModel.getCurrentQuery().buildUpon().clearOrder();
             if (itemId == R.id.sort_by_date_created) {
-                sortTodos(Comparator.comparing(Todo::getCreatedAt));
+                viewModel.sortTodos(builder.orderBy(TodoQuery.SortKey.CREATED_AT, false));
             } else if (itemId == R.id.sort_by_due_date) {
-                sortTodos(Comparator.comparing(Todo::getDueDate, Comparator.nullsLast(Comparator.naturalOrder())));
+                viewModel.sortTodos(builder.orderBy(TodoQuery.SortKey.DUE_DATE, false));
             } else if (itemId == R.id.sort_by_priority) {
-                sortTodos(Comparator.comparing(Todo::getPriority));
+                // 同一优先级内截止时间早的在前
+                viewModel.sortTodos(builder.orderBy(TodoQuery.SortKey.PRIORITY, false)
+                        .orderBy(TodoQuery.SortKey.DUE_DATE, false));
             } else if (itemId == R.id.sort_by_title) {
-                sortTodos(Comparator.comparing(Todo::getTitle, String.CASE_INSENSITIVE_ORDER));
+                viewModel.sortTodos(builder.orderBy(TodoQuery.SortKey.TITLE, false));
             }
             return true;
         });
@@ -154,30 +341,13 @@ public class MainActivity extends AppCompatActivity implements TodoAdapter.OnTod
         popupMenu.show();
     }
     
-    private void sortTodos(Comparator<Todo> comparator) {
-        Collections.sort(allTodos, comparator);
-        todoAdapter.setTodoList(allTodos);
-        updateEmptyView();
-    }
-    
-    @Override
-    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
-        super.onActivityResult(requestCode, resultCode, data);
-        
-        if (resultCode == RESULT_OK) {
-            if (requestCode == REQUEST_ADD_TODO || requestCode == REQUEST_EDIT_TODO) {
-                loadTodos(); // 重新加载数据
-            }
-        }
-    }
-    
     // TodoAdapter.OnTodoItemClickListener 接口实现
     @Override
     public void onTodoClick(Todo todo) {
         // 点击todo项，进入编辑界面
         Intent intent = new Intent(this, EditTodoActivity.class);
         intent.putExtra("todo_id", todo.getId());
-        startActivityForResult(intent, REQUEST_EDIT_TODO);
+        startActivity(intent);
     }
     
     @Override
@@ -188,14 +358,16 @@ public class MainActivity extends AppCompatActivity implements TodoAdapter.OnTod
     
     @Override
     public void onCheckboxClick(Todo todo, boolean isChecked) {
-        // 更新完成状态
-        todo.setCompleted(isChecked);
-        todoDAO.open();
-        todoDAO.updateTodo(todo);
-        todoAdapter.updateTodo(todo);
-        
-        // 更新通知提醒
-        notificationHelper.updateNotification(todo);
+        // 更新完成状态：界面立即更新，数据库写入和提醒重设由延迟写入队列合并完成。
+        // 修改副本，列表中的对象可能正在后台构建行
+        toggleCompleted(todo, isChecked);
+    }
+    
+    private void toggleCompleted(Todo todo, boolean completed) {
+        Todo updated = todo.copy();
+        updated.setCompleted(completed);
+        todoRepository.queueChanges(updated);
+        todoAdapter.updateTodo(updated, TodoAdapter.Payload.COMPLETION);
     }
     
     @Override
@@ -218,19 +390,13 @@ public class MainActivity extends AppCompatActivity implements TodoAdapter.OnTod
                  // 编辑todo
                  Intent intent = new Intent(this, EditTodoActivity.class);
                  intent.putExtra("todo_id", todo.getId());
-                 startActivityForResult(intent, REQUEST_EDIT_TODO);
+                 startActivity(intent);
             } else if (itemId == R.id.action_delete) {
                 // 删除todo
                 deleteTodo(todo);
             } else if (itemId == R.id.action_toggle_complete) {
                 // 切换完成状态
-                todo.setCompleted(!todo.isCompleted());
-                todoDAO.open();
-                todoDAO.updateTodo(todo);
-                todoAdapter.updateTodo(todo);
-                
-                // 更新通知提醒
-                notificationHelper.updateNotification(todo);
+                toggleCompleted(todo, !todo.isCompleted());
             }
             return true;
         });
@@ -239,12 +405,8 @@ public class MainActivity extends AppCompatActivity implements TodoAdapter.OnTod
     }
     
     private void deleteTodo(Todo todo) {
-        // 取消通知提醒
-        notificationHelper.cancelNotification(todo.getId());
-        
-        todoDAO.open();
-        todoDAO.deleteTodo(todo.getId());
+        // 删除提交后由 TodoApplication 重设提醒，下一个闹钟不再指向这个任务
+        todoRepository.deleteTodo(todo.getId(), null);
         todoAdapter.removeTodo(todo);
-        updateEmptyView();
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.ivor.todolist;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
+
+import com.ivor.todolist.database.TodoRepository;
+import com.ivor.todolist.database.TodoWriteQueue;
+import com.ivor.todolist.model.Todo;
+import com.ivor.todolist.notification.ReminderScheduler;
+
+public class TodoApplication extends Application {
+    // 这些字段变化时需要重新设置提醒。提醒内容在送达时从数据库读取，标题和描述的修改不影响闹钟
+    private static final int REMINDER_FIELDS = Todo.FIELD_COMPLETED | Todo.FIELD_DUE_DATE;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // 调试版本中检查主线程的磁盘读写，数据库访问都应经由 TodoRepository 在后台线程完成
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
+
+        // 写入提交后重设提醒，一次写入不论涉及多少 Todo 只重新计算一次。在数据层回调，
+        // 发起写入的 Activity 已经销毁时也会执行。调度器的初始化和重新计算都在它自己的线程上执行，这里不读写磁盘
+        ReminderScheduler reminderScheduler = ReminderScheduler.getInstance(this);
+        TodoRepository.setOnChangesWrittenListener(changes -> {
+            for (TodoWriteQueue.Change change : changes) {
+                if ((change.fields & REMINDER_FIELDS) != 0) {
+                    reminderScheduler.reschedule();
+                    return;
+                }
+            }
+        });
+        // 启动时按当前数据设置一次，也替换旧版本按每个 Todo 注册的闹钟留下的状态
+        reminderScheduler.reschedule();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        TodoRepository.trimMemory(level);
+    }
+}
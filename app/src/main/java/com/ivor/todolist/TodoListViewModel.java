@@ -0,0 +1,268 @@
+package com.ivor.todolist;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.AndroidViewModel;
+
+import com.ivor.todolist.adapter.TodoAdapter;
+import com.ivor.todolist.database.TodoChangeSet;
+import com.ivor.todolist.database.TodoQuery;
+import com.ivor.todolist.database.TodoRepository;
+import com.ivor.todolist.database.TodoStats;
+import com.ivor.todolist.model.Todo;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+// MainActivity 的列表状态，在旋转、切换主题等配置变化时保留：已加载的列表窗口、筛选和排序条件、搜索词、
+// 统计，以及进行中的读取和订阅。Adapter 随 Activity 创建（颜色跟随新的主题），重建时旧 Adapter 的内容
+// 保存在这里，新的 Adapter 直接用它填充，不访问数据库；Activity 真正结束时（onCleared）才取消读取和订阅。
+// Activity 存在期间才引用它的 Adapter，不引用 Activity 和视图
+public class TodoListViewModel extends AndroidViewModel {
+    // 输入停顿这么久之后才发起搜索
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+    private static final int SEARCH_LIMIT = 100;
+
+    // 统计读取完成后在主线程回调
+    public interface StatsListener {
+        void onStatsChanged(TodoStats stats);
+    }
+
+    private final TodoRepository todoRepository;
+    // 当前 Activity 的 Adapter，Activity 重建期间为 null
+    private TodoAdapter todoAdapter;
+    // Activity 重建期间保存的列表内容，交给新的 Adapter 后清空
+    private TodoAdapter.State listState;
+    // 没有 Adapter 期间收到了数据变化，保存的内容已过期
+    private boolean listStale;
+    private TodoAdapter.FilterType currentFilter = TodoAdapter.FilterType.ALL;
+    // 选中的分类，null 表示全部分类
+    private String currentCategory;
+    // 当前的筛选和排序条件，默认按创建时间倒序
+    private TodoQuery currentQuery = TodoQuery.builder()
+            .orderBy(TodoQuery.SortKey.CREATED_AT, true)
+            .build();
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = this::runSearch;
+    private String searchQuery = "";
+    private Future<List<Todo>> searchFuture;
+    // 当前查询的变化订阅，查询条件改变时重新订阅
+    private TodoRepository.Subscription querySubscription;
+    // 统计用于空状态判断和工具栏摘要，任何写入后重新读取
+    private TodoStats stats;
+    private Future<TodoStats> statsFuture;
+    // Activity 重建期间为 null，期间读到的统计保存在 stats 中，重新设置时补发
+    private StatsListener statsListener;
+
+    public TodoListViewModel(Application application) {
+        super(application);
+        todoRepository = new TodoRepository(application);
+
+        // 列表在第一个 Adapter 接上时加载
+        observeQuery();
+        observeStats();
+        loadStats();
+    }
+
+    // Activity 创建 Adapter 后调用：首次时开始加载，重建时用保留的内容填充
+    public void attachAdapter(TodoAdapter adapter) {
+        todoAdapter = adapter;
+        // 按当前筛选和排序从数据库分页读取
+        adapter.setPageSource((anchor, after, limit, callback) ->
+                todoRepository.getTodosPage(currentQuery, anchor, after, limit, callback::onPageLoaded));
+        TodoAdapter.State state = listState;
+        listState = null;
+        if (state != null) {
+            adapter.restoreState(state);
+        }
+        if (state == null || state.isReloadPending() || listStale) {
+            listStale = false;
+            loadTodos();
+        }
+    }
+
+    // Activity 销毁时调用，保存 Adapter 中的列表内容
+    public void detachAdapter() {
+        if (todoAdapter != null) {
+            listState = todoAdapter.saveState();
+            todoAdapter.setPageSource(null);
+            todoAdapter = null;
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        searchHandler.removeCallbacks(searchRunnable);
+        todoRepository.close();
+    }
+
+    public TodoRepository getRepository() {
+        return todoRepository;
+    }
+
+    public TodoAdapter.FilterType getCurrentFilter() {
+        return currentFilter;
+    }
+
+    public String getCurrentCategory() {
+        return currentCategory;
+    }
+
+    public TodoQuery getCurrentQuery() {
+        return currentQuery;
+    }
+
+    public String getSearchQuery() {
+        return searchQuery;
+    }
+
+    // 尚未读取完成时为 null
+    public TodoStats getStats() {
+        return stats;
+    }
+
+    // 设置后如果已有统计立即回调一次；Activity 销毁时传 null
+    public void setStatsListener(StatsListener listener) {
+        statsListener = listener;
+        if (listener != null && stats != null) {
+            listener.onStatsChanged(stats);
+        }
+    }
+
+    // 返回条件是否改变
+    public boolean filterTodos(TodoAdapter.FilterType filterType) {
+        if (currentFilter == filterType) {
+            return false;
+        }
+        currentFilter = filterType;
+        // 筛选交给数据库，重新从第一页加载
+        currentQuery = currentQuery.buildUpon().status(toStatus(filterType)).build();
+        observeQuery();
+        loadTodos();
+        return true;
+    }
+
+    // 返回条件是否改变
+    public boolean filterCategory(String category) {
+        if (category == null ? currentCategory == null : category.equals(currentCategory)) {
+            return false;
+        }
+        currentCategory = category;
+        // 分类 ID 上有索引，由数据库筛选
+        currentQuery = currentQuery.buildUpon().category(category).build();
+        observeQuery();
+        loadTodos();
+        return true;
+    }
+
+    public void sortTodos(TodoQuery.Builder sortedQuery) {
+        // 排序交给数据库按索引完成，重新从第一页加载
+        currentQuery = sortedQuery.build();
+        observeQuery();
+        loadTodos();
+    }
+
+    public void onSearchQueryChanged(String query) {
+        String trimmed = query.trim();
+        if (trimmed.equals(searchQuery)) {
+            return;
+        }
+        searchQuery = trimmed;
+        searchHandler.removeCallbacks(searchRunnable);
+        cancelSearch();
+        if (searchQuery.isEmpty()) {
+            // 清空搜索后回到分页列表
+            loadTodos();
+        } else {
+            searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+        }
+    }
+
+    // 提交搜索时不再等待输入停顿
+    public void submitSearch(String query) {
+        onSearchQueryChanged(query);
+        if (!searchQuery.isEmpty()) {
+            searchHandler.removeCallbacks(searchRunnable);
+            runSearch();
+        }
+    }
+
+    private static TodoQuery.Status toStatus(TodoAdapter.FilterType filterType) {
+        switch (filterType) {
+            case INCOMPLETE:
+                return TodoQuery.Status.INCOMPLETE;
+            case COMPLETED:
+                return TodoQuery.Status.COMPLETED;
+            default:
+                return TodoQuery.Status.ALL;
+        }
+    }
+
+    private void loadTodos() {
+        if (todoAdapter == null) {
+            listStale = true;
+        } else if (searchQuery.isEmpty()) {
+            todoAdapter.refresh();
+        } else {
+            runSearch();
+        }
+    }
+
+    private void runSearch() {
+        // 新的搜索开始后，之前尚未返回的结果已经过期
+        cancelSearch();
+        searchFuture = todoRepository.search(searchQuery, SEARCH_LIMIT, results -> {
+            // 结果在 Activity 重建期间返回时交给新的 Adapter
+            if (todoAdapter != null) {
+                todoAdapter.setSearchResults(results);
+            } else {
+                listStale = true;
+            }
+        });
+    }
+
+    private void cancelSearch() {
+        if (searchFuture != null) {
+            searchFuture.cancel(false);
+            searchFuture = null;
+        }
+    }
+
+    // 订阅全部待办的变化，只用来得知何时重新读取统计
+    private void observeStats() {
+        todoRepository.observe(TodoQuery.builder().build(), changes -> loadStats());
+    }
+
+    private void loadStats() {
+        if (statsFuture != null) {
+            statsFuture.cancel(false);
+        }
+        statsFuture = todoRepository.getStats(result -> {
+            statsFuture = null;
+            stats = result;
+            if (statsListener != null) {
+                statsListener.onStatsChanged(result);
+            }
+        });
+    }
+
+    // 订阅当前查询：任何界面（编辑、添加、通知等）写入数据库后，只把变化的行应用到列表，不重新加载
+    private void observeQuery() {
+        if (querySubscription != null) {
+            querySubscription.cancel();
+        }
+        querySubscription = todoRepository.observe(currentQuery, this::onQueryChanged);
+    }
+
+    private void onQueryChanged(TodoChangeSet changes) {
+        if (todoAdapter == null) {
+            listStale = true;
+            return;
+        }
+        // 显示搜索结果时列表不按查询排序，只更新或移除已显示的行
+        todoAdapter.applyChanges(changes.getChanged(), changes.getRemovedIds(),
+                searchQuery.isEmpty() ? currentQuery.comparator() : null);
+    }
+}
@@ -0,0 +1,139 @@
+package com.ivor.todolist.adapter;
+
+import java.util.Arrays;
+
+// long 键到 int 值的哈希表，开放寻址 + 线性探测，避免 HashMap<Long, Integer> 的装箱和节点分配。
+// 删除时把后续同簇的元素前移填补空位，不使用墓碑标记，查找长度不会随删除次数增长
+class LongIntMap {
+    static final int NOT_FOUND = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    LongIntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    LongIntMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    // 返回 key 对应的值，不存在时返回 NOT_FOUND
+    int get(long key) {
+        int slot = findSlot(key);
+        return slot < 0 ? NOT_FOUND : values[slot];
+    }
+
+    boolean containsKey(long key) {
+        return findSlot(key) >= 0;
+    }
+
+    void put(long key, int value) {
+        int slot = hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        // 装载因子保持在 1/2 以下
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    // 删除 key，返回原来的值，不存在时返回 NOT_FOUND
+    int remove(long key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return NOT_FOUND;
+        }
+        int removed = values[slot];
+        int gap = slot;
+        int i = (gap + 1) & mask;
+        while (used[i]) {
+            // 元素的理想位置不在 (gap, i] 区间内时，可以前移到空位而不破坏探测链
+            int home = hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        used[gap] = false;
+        size--;
+        return removed;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(used, false);
+            size = 0;
+        }
+    }
+
+    private int findSlot(long key) {
+        int slot = hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // 数据库自增 ID 是连续整数，先打散再取低位
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
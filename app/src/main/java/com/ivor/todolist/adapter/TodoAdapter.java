@@ -2,7 +2,8 @@ package com.ivor.todolist.adapter;
 
 import android.content.Context;
 import android.graphics.Paint;
-import android.text.TextUtils;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,23 +12,59 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.chip.Chip;
 import com.ivor.todolist.R;
 import com.ivor.todolist.model.Todo;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder> {
-    private Context context;
-    private List<Todo> todoList;
-    private List<Todo> filteredTodoList;
+    private static final int PAGE_SIZE = 50;
+    // 距离已加载窗口边缘不足这么多行时预取下一页
+    private static final int PREFETCH_DISTANCE = 20;
+    // 内存中最多保留的 Todo 数量，超出后丢弃离可见区域最远的一端
+    private static final int MAX_WINDOW_SIZE = PAGE_SIZE * 4;
+    // 行显示数据的创建和列表差异的计算都在这个后台线程执行，所有 Adapter 共用
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    // 已加载的连续窗口，window.get(0) 对应列表中的 windowOffset 位置；之前的位置显示占位
+    private final TodoWindow window = new TodoWindow();
+    private int windowOffset;
+    private boolean hasMoreAfter;
+    private boolean loadingAfter;
+    private boolean loadingBefore;
+    // refresh 或 setSearchResults 的结果尚未显示
+    private boolean reloadPending;
+    // 每次 refresh 递增，用于丢弃过期的分页结果
+    private int generation;
+    // 每次修改 window 时递增，用于判断后台计算的差异是否仍然适用
+    private int windowVersion;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private PageSource pageSource;
+    private RecyclerView recyclerView;
     private OnTodoItemClickListener listener;
-    private SimpleDateFormat dateTimeFormat;
+    private final TodoRow.Factory rowFactory;
+
+    private final Runnable prefetchCheck = this::checkPrefetch;
+    private final RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            // 滚动回调可能发生在布局过程中，不能直接修改数据，推迟到下一帧
+            recyclerView.removeCallbacks(prefetchCheck);
+            recyclerView.post(prefetchCheck);
+        }
+    };
     
     public interface OnTodoItemClickListener {
         void onTodoClick(Todo todo);
@@ -35,68 +72,379 @@ public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder
         void onCheckboxClick(Todo todo, boolean isChecked);
         void onMoreClick(Todo todo, View view);
     }
+
+    // 分页数据来源：anchor 为 null 时加载第一页；after 为 true 时加载 anchor 之后的数据，否则加载之前的数据
+    public interface PageSource {
+        void loadPage(Todo anchor, boolean after, int limit, PageCallback callback);
+    }
+
+    public interface PageCallback {
+        void onPageLoaded(List<Todo> page);
+    }
+
+    private interface RowsCallback {
+        void onRowsCreated(List<TodoRow> rows);
+    }
+
+    // 局部刷新的类型：只重新绑定受影响的视图，而不是整行
+    public enum Payload {
+        COMPLETION, OVERDUE, DUE_DATE, PRIORITY
+    }
     
+    // Activity 重建时由 TodoListViewModel 保留的列表内容：只有已加载的 Todo 和它们在列表中的位置，
+    // 不包含按主题解析的显示数据，由新的 Adapter 重新创建
+    public static final class State {
+        private final List<Todo> todos;
+        private final int windowOffset;
+        private final boolean hasMoreAfter;
+        private final boolean reloadPending;
+
+        private State(List<Todo> todos, int windowOffset, boolean hasMoreAfter, boolean reloadPending) {
+            this.todos = todos;
+            this.windowOffset = windowOffset;
+            this.hasMoreAfter = hasMoreAfter;
+            this.reloadPending = reloadPending;
+        }
+
+        // 保存时重新加载尚未完成，结果会交给旧的 Adapter，恢复后需要重新发起
+        public boolean isReloadPending() {
+            return reloadPending;
+        }
+    }
+
+    // 随 Activity 创建，颜色按 Activity 的主题解析；行视图按所在 RecyclerView 的 Context 创建
     public TodoAdapter(Context context) {
-        this.context = context;
-        this.todoList = new ArrayList<>();
-        this.filteredTodoList = new ArrayList<>();
-        this.dateTimeFormat = new SimpleDateFormat("MM-dd HH:mm", Locale.getDefault());
+        // 颜色在这里解析一次，之后所有行共用
+        this.rowFactory = new TodoRow.Factory(context);
+        // 以 Todo ID 作为稳定 ID，重新加载后 RecyclerView 仍能对应到同一个 ViewHolder
+        setHasStableIds(true);
     }
     
     public void setOnTodoItemClickListener(OnTodoItemClickListener listener) {
         this.listener = listener;
     }
-    
-    public void setTodoList(List<Todo> todoList) {
-        this.todoList = todoList;
-        this.filteredTodoList = new ArrayList<>(todoList);
-        notifyDataSetChanged();
+
+    public void setPageSource(PageSource pageSource) {
+        this.pageSource = pageSource;
     }
-    
-    public void filterTodos(FilterType filterType) {
-        filteredTodoList.clear();
-        switch (filterType) {
-            case ALL:
-                filteredTodoList.addAll(todoList);
-                break;
-            case INCOMPLETE:
-                for (Todo todo : todoList) {
-                    if (!todo.isCompleted()) {
-                        filteredTodoList.add(todo);
-                    }
+
+    // 从头重新加载（筛选、排序或数据变化后调用），加载完成前保留当前内容，
+    // 加载完成后只分发与当前内容之间的最小差异
+    public void refresh() {
+        if (pageSource == null) {
+            return;
+        }
+        final int currentGeneration = ++generation;
+        loadingAfter = true;
+        loadingBefore = true;
+        reloadPending = true;
+        pageSource.loadPage(null, true, PAGE_SIZE, page -> {
+            if (currentGeneration != generation) {
+                return;
+            }
+            submitWindow(page, page.size() == PAGE_SIZE, currentGeneration);
+        });
+    }
+
+    // 显示搜索结果（不分页），之后调用 refresh() 回到分页列表
+    public void setSearchResults(List<Todo> results) {
+        final int currentGeneration = ++generation;
+        loadingAfter = true;
+        loadingBefore = true;
+        reloadPending = true;
+        submitWindow(new ArrayList<>(results), false, currentGeneration);
+    }
+
+    public State saveState() {
+        List<Todo> todos = new ArrayList<>(window.size());
+        for (int i = 0; i < window.size(); i++) {
+            todos.add(window.get(i).todo);
+        }
+        return new State(todos, windowOffset, hasMoreAfter, reloadPending);
+    }
+
+    // 用保留的内容填充新创建的 Adapter。行的显示数据在后台创建，完成前列表为空，
+    // LinearLayoutManager 保存的滚动位置会等到有数据时再恢复
+    public void restoreState(State state) {
+        final int version = windowVersion;
+        createRows(state.todos, rows -> {
+            // 之后提交的加载都在同一个后台线程排在后面，这里只防止期间已有其他内容
+            if (version != windowVersion) {
+                return;
+            }
+            windowOffset = state.windowOffset;
+            hasMoreAfter = state.hasMoreAfter;
+            window.replaceAll(rows);
+            windowVersion++;
+            notifyDataSetChanged();
+            // 保存时进行中的翻页已丢失，按可见位置重新检查
+            if (recyclerView != null) {
+                recyclerView.post(prefetchCheck);
+            }
+        });
+    }
+
+    // 在后台创建新数据的显示数据并与当前窗口比较，回到主线程后替换窗口并分发插入/删除/移动/变更事件
+    private void submitWindow(List<Todo> newTodos, boolean more, int currentGeneration) {
+        final List<TodoRow> oldWindow = window.snapshot();
+        final int version = windowVersion;
+        DIFF_EXECUTOR.execute(() -> {
+            List<TodoRow> newWindow = rowFactory.createAll(newTodos);
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(new TodoDiffCallback(oldWindow, newWindow), true);
+            mainHandler.post(() -> {
+                if (currentGeneration != generation) {
+                    return;
                 }
-                break;
-            case COMPLETED:
-                for (Todo todo : todoList) {
-                    if (todo.isCompleted()) {
-                        filteredTodoList.add(todo);
-                    }
+                if (version != windowVersion) {
+                    // 计算期间窗口被修改（如勾选、删除），基于最新内容重新比较
+                    submitWindow(newTodos, more, currentGeneration);
+                    return;
                 }
-                break;
+                applyWindow(newWindow, more, result);
+            });
+        });
+    }
+
+    private void applyWindow(List<TodoRow> newWindow, boolean more, DiffUtil.DiffResult result) {
+        loadingAfter = false;
+        loadingBefore = false;
+        reloadPending = false;
+        hasMoreAfter = more;
+        if (windowOffset > 0) {
+            // 新数据从列表开头开始，之前的占位全部移除，差异结果中的位置随之对齐
+            int placeholders = windowOffset;
+            windowOffset = 0;
+            notifyItemRangeRemoved(0, placeholders);
+        }
+        boolean wasEmpty = window.isEmpty();
+        window.replaceAll(newWindow);
+        windowVersion++;
+        if (wasEmpty && newWindow.isEmpty()) {
+            // 前后都为空时不会产生任何事件，通知一次以便观察者刷新空状态
+            notifyDataSetChanged();
+        } else {
+            result.dispatchUpdatesTo(this);
         }
-        notifyDataSetChanged();
+    }
+
+    private void loadAfter() {
+        if (pageSource == null || loadingAfter || !hasMoreAfter || window.isEmpty()) {
+            return;
+        }
+        final int currentGeneration = generation;
+        loadingAfter = true;
+        pageSource.loadPage(window.get(window.size() - 1).todo, true, PAGE_SIZE, page -> createRows(page, rows -> {
+            if (currentGeneration != generation) {
+                return;
+            }
+            loadingAfter = false;
+            hasMoreAfter = rows.size() == PAGE_SIZE;
+            if (!rows.isEmpty()) {
+                int insertPosition = getItemCount();
+                window.addAll(rows);
+                windowVersion++;
+                notifyItemRangeInserted(insertPosition, rows.size());
+                trimHead();
+            }
+        }));
+    }
+
+    private void loadBefore() {
+        if (pageSource == null || loadingBefore || windowOffset == 0 || window.isEmpty()) {
+            return;
+        }
+        final int currentGeneration = generation;
+        final int requested = Math.min(PAGE_SIZE, windowOffset);
+        loadingBefore = true;
+        pageSource.loadPage(window.get(0).todo, false, requested, page -> createRows(page, rows -> {
+            if (currentGeneration != generation) {
+                return;
+            }
+            loadingBefore = false;
+            if (rows.size() < requested) {
+                // 已经到开头：多出来的占位行对应期间被删除的数据，直接移除
+                int stale = windowOffset - rows.size();
+                windowOffset = rows.size();
+                notifyItemRangeRemoved(0, stale);
+            }
+            windowOffset -= rows.size();
+            window.prependAll(rows);
+            windowVersion++;
+            notifyItemRangeChanged(windowOffset, rows.size());
+            trimTail();
+        }));
+    }
+
+    // 在后台线程为新加载的一页创建显示数据，完成后回到主线程
+    private void createRows(List<Todo> page, RowsCallback callback) {
+        DIFF_EXECUTOR.execute(() -> {
+            List<TodoRow> rows = rowFactory.createAll(page);
+            mainHandler.post(() -> callback.onRowsCreated(rows));
+        });
+    }
+
+    private void checkPrefetch() {
+        if (recyclerView == null || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        if (last >= getItemCount() - PREFETCH_DISTANCE) {
+            loadAfter();
+        }
+        if (first < windowOffset + PREFETCH_DISTANCE) {
+            loadBefore();
+        }
+    }
+
+    // 窗口过大时丢弃开头、且不在可见区域附近的数据，对应位置变为占位
+    private void trimHead() {
+        int excess = window.size() - MAX_WINDOW_SIZE;
+        int first = firstVisiblePosition();
+        if (first != RecyclerView.NO_POSITION) {
+            excess = Math.min(excess, first - PREFETCH_DISTANCE - windowOffset);
+        }
+        if (excess <= 0 || loadingBefore) {
+            return;
+        }
+        window.removeRange(0, excess);
+        windowVersion++;
+        windowOffset += excess;
+        notifyItemRangeChanged(windowOffset - excess, excess);
+    }
+
+    // 窗口过大时丢弃末尾、且不在可见区域附近的数据，之后滚动到底部时重新加载
+    private void trimTail() {
+        int excess = window.size() - MAX_WINDOW_SIZE;
+        int last = lastVisiblePosition();
+        if (last != RecyclerView.NO_POSITION) {
+            excess = Math.min(excess, getItemCount() - 1 - last - PREFETCH_DISTANCE);
+        }
+        if (excess <= 0 || loadingAfter) {
+            return;
+        }
+        window.removeRange(window.size() - excess, window.size());
+        windowVersion++;
+        hasMoreAfter = true;
+        notifyItemRangeRemoved(getItemCount(), excess);
+    }
+
+    private int firstVisiblePosition() {
+        if (recyclerView != null && recyclerView.getLayoutManager() instanceof LinearLayoutManager) {
+            return ((LinearLayoutManager) recyclerView.getLayoutManager()).findFirstVisibleItemPosition();
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    private int lastVisiblePosition() {
+        if (recyclerView != null && recyclerView.getLayoutManager() instanceof LinearLayoutManager) {
+            return ((LinearLayoutManager) recyclerView.getLayoutManager()).findLastVisibleItemPosition();
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    // 返回指定位置的显示数据，尚未加载的占位位置返回 null
+    private TodoRow getRowAt(int position) {
+        int index = position - windowOffset;
+        return index >= 0 && index < window.size() ? window.get(index) : null;
+    }
+
+    private Todo getTodoAt(int position) {
+        TodoRow row = getRowAt(position);
+        return row != null ? row.todo : null;
     }
     
     public enum FilterType {
         ALL, INCOMPLETE, COMPLETED
     }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+        recyclerView.addOnScrollListener(scrollListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(scrollListener);
+        recyclerView.removeCallbacks(prefetchCheck);
+        this.recyclerView = null;
+    }
     
     @NonNull
     @Override
     public TodoViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(context).inflate(R.layout.item_todo, parent, false);
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_todo, parent, false);
         return new TodoViewHolder(view);
     }
     
     @Override
     public void onBindViewHolder(@NonNull TodoViewHolder holder, int position) {
-        Todo todo = filteredTodoList.get(position);
-        holder.bind(todo);
+        TodoRow row = getRowAt(position);
+        if (row != null) {
+            holder.bind(row);
+        } else {
+            holder.bindPlaceholder();
+        }
+    }
+    
+    @Override
+    public void onBindViewHolder(@NonNull TodoViewHolder holder, int position, @NonNull List<Object> payloads) {
+        TodoRow row = getRowAt(position);
+        if (payloads.isEmpty() || row == null) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        boolean completion = false;
+        boolean overdue = false;
+        boolean dueDate = false;
+        boolean priority = false;
+        for (int i = 0; i < payloads.size(); i++) {
+            Object payload = payloads.get(i);
+            if (payload instanceof Payload) {
+                completion |= payload == Payload.COMPLETION;
+                overdue |= payload == Payload.OVERDUE;
+                dueDate |= payload == Payload.DUE_DATE;
+                priority |= payload == Payload.PRIORITY;
+            } else if (payload instanceof EnumSet) {
+                EnumSet<?> set = (EnumSet<?>) payload;
+                completion |= set.contains(Payload.COMPLETION);
+                overdue |= set.contains(Payload.OVERDUE);
+                dueDate |= set.contains(Payload.DUE_DATE);
+                priority |= set.contains(Payload.PRIORITY);
+            } else {
+                onBindViewHolder(holder, position);
+                return;
+            }
+        }
+        if (completion) {
+            holder.bindCompletion(row);
+        }
+        if (dueDate) {
+            holder.bindDueDate(row);
+        } else if (overdue || completion) {
+            // 逾期状态取决于是否完成
+            holder.bindOverdue(row);
+        }
+        if (priority) {
+            holder.bindPriority(row);
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        TodoRow row = getRowAt(position);
+        // 数据库 ID 从 1 开始，占位位置使用负数，避开 NO_ID (-1)
+        return row != null ? row.id : -2 - position;
     }
     
     @Override
     public int getItemCount() {
-        return filteredTodoList.size();
+        return windowOffset + window.size();
     }
     
     public class TodoViewHolder extends RecyclerView.ViewHolder {
@@ -123,144 +471,294 @@ public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder
         
         private void setupClickListeners() {
             itemView.setOnClickListener(v -> {
-                if (listener != null) {
-                    int position = getAdapterPosition();
-                    if (position != RecyclerView.NO_POSITION) {
-                        listener.onTodoClick(filteredTodoList.get(position));
-                    }
+                Todo todo = getTodoAt(getAdapterPosition());
+                if (listener != null && todo != null) {
+                    listener.onTodoClick(todo);
                 }
             });
             
             itemView.setOnLongClickListener(v -> {
-                if (listener != null) {
-                    int position = getAdapterPosition();
-                    if (position != RecyclerView.NO_POSITION) {
-                        listener.onTodoLongClick(filteredTodoList.get(position));
-                        return true;
-                    }
+                Todo todo = getTodoAt(getAdapterPosition());
+                if (listener != null && todo != null) {
+                    listener.onTodoLongClick(todo);
+                    return true;
                 }
                 return false;
             });
             
             checkBoxCompleted.setOnClickListener(v -> {
-                if (listener != null) {
-                    int position = getAdapterPosition();
-                    if (position != RecyclerView.NO_POSITION) {
-                        listener.onCheckboxClick(filteredTodoList.get(position), checkBoxCompleted.isChecked());
-                    }
+                Todo todo = getTodoAt(getAdapterPosition());
+                if (listener != null && todo != null) {
+                    listener.onCheckboxClick(todo, checkBoxCompleted.isChecked());
                 }
             });
             
             btnMore.setOnClickListener(v -> {
-                if (listener != null) {
-                    int position = getAdapterPosition();
-                    if (position != RecyclerView.NO_POSITION) {
-                        listener.onMoreClick(filteredTodoList.get(position), v);
-                    }
+                Todo todo = getTodoAt(getAdapterPosition());
+                if (listener != null && todo != null) {
+                    listener.onMoreClick(todo, v);
                 }
             });
         }
         
-        public void bind(Todo todo) {
+        // 尚未加载的位置：清空内容，等待分页数据到达后重新绑定
+        public void bindPlaceholder() {
+            textViewTitle.setText(null);
+            textViewDescription.setVisibility(View.GONE);
+            checkBoxCompleted.setChecked(false);
+            chipPriority.setText(null);
+            textViewDueDate.setVisibility(View.GONE);
+            textViewOverdue.setVisibility(View.GONE);
+        }
+
+        // 只使用预先计算好的显示数据，不格式化、不查找资源
+        public void bind(TodoRow row) {
             // 设置标题
-            textViewTitle.setText(todo.getTitle());
+            textViewTitle.setText(row.title);
             
             // 设置描述
-            if (!TextUtils.isEmpty(todo.getDescription())) {
-                textViewDescription.setText(todo.getDescription());
+            if (row.description != null) {
+                textViewDescription.setText(row.description);
                 textViewDescription.setVisibility(View.VISIBLE);
             } else {
                 textViewDescription.setVisibility(View.GONE);
             }
             
+            bindCompletion(row);
+            bindPriority(row);
+            bindDueDate(row);
+        }
+
+        void bindCompletion(TodoRow row) {
             // 设置完成状态
-            checkBoxCompleted.setChecked(todo.isCompleted());
+            checkBoxCompleted.setChecked(row.completed);
             
             // 根据完成状态设置文本样式
-            if (todo.isCompleted()) {
+            if (row.completed) {
                 textViewTitle.setPaintFlags(textViewTitle.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
-                textViewTitle.setTextColor(context.getResources().getColor(android.R.color.darker_gray));
             } else {
                 textViewTitle.setPaintFlags(textViewTitle.getPaintFlags() & (~Paint.STRIKE_THRU_TEXT_FLAG));
-                textViewTitle.setTextColor(context.getResources().getColor(android.R.color.black));
             }
-            
+            textViewTitle.setTextColor(row.titleColor);
+        }
+
+        void bindPriority(TodoRow row) {
             // 设置优先级
-            chipPriority.setText(todo.getPriorityText());
-            switch (todo.getPriority()) {
-                case 1: // 高优先级
-                    chipPriority.setChipBackgroundColorResource(android.R.color.holo_red_light);
-                    break;
-                case 2: // 中优先级
-                    chipPriority.setChipBackgroundColorResource(android.R.color.holo_orange_light);
-                    break;
-                case 3: // 低优先级
-                    chipPriority.setChipBackgroundColorResource(android.R.color.holo_green_light);
-                    break;
+            chipPriority.setText(row.priorityLabel);
+            if (row.priorityColor != null) {
+                chipPriority.setChipBackgroundColor(row.priorityColor);
             }
-            
+        }
+
+        void bindDueDate(TodoRow row) {
             // 设置截止时间
-            if (todo.getDueDate() != null) {
-                textViewDueDate.setText(dateTimeFormat.format(todo.getDueDate()));
+            if (row.dueDateText != null) {
+                textViewDueDate.setText(row.dueDateText);
                 textViewDueDate.setVisibility(View.VISIBLE);
-                
-                // 检查是否逾期
-                if (todo.isOverdue()) {
-                    textViewOverdue.setVisibility(View.VISIBLE);
-                    textViewDueDate.setTextColor(context.getResources().getColor(android.R.color.holo_red_dark));
-                } else {
-                    textViewOverdue.setVisibility(View.GONE);
-                    textViewDueDate.setTextColor(context.getResources().getColor(android.R.color.darker_gray));
-                }
             } else {
                 textViewDueDate.setVisibility(View.GONE);
-                textViewOverdue.setVisibility(View.GONE);
             }
+            bindOverdue(row);
+        }
+
+        void bindOverdue(TodoRow row) {
+            // 检查是否逾期
+            textViewOverdue.setVisibility(row.overdue ? View.VISIBLE : View.GONE);
+            textViewDueDate.setTextColor(row.dueDateColor);
         }
     }
     
     public void updateTodo(Todo updatedTodo) {
-        for (int i = 0; i < todoList.size(); i++) {
-            if (todoList.get(i).getId() == updatedTodo.getId()) {
-                todoList.set(i, updatedTodo);
-                break;
-            }
+        updateTodo(updatedTodo, null);
+    }
+
+    // 已知只有部分字段变化时（如勾选完成）传入对应的 payload，只重新绑定相关视图；为 null 时整行重新绑定。
+    // 行的显示数据与分页一样在后台创建，回到主线程时再按 ID 找到当前位置
+    public void updateTodo(Todo updatedTodo, Payload payload) {
+        if (window.indexOfId(updatedTodo.getId()) < 0) {
+            return;
         }
-        
-        for (int i = 0; i < filteredTodoList.size(); i++) {
-            if (filteredTodoList.get(i).getId() == updatedTodo.getId()) {
-                filteredTodoList.set(i, updatedTodo);
-                notifyItemChanged(i);
-                break;
+        createRows(Collections.singletonList(updatedTodo), rows -> {
+            int index = window.indexOfId(updatedTodo.getId());
+            if (index >= 0) {
+                window.set(index, rows.get(0));
+                windowVersion++;
+                notifyItemChanged(windowOffset + index, payload);
             }
-        }
+        });
     }
     
-    public void removeTodo(Todo todo) {
-        int originalPosition = -1;
-        for (int i = 0; i < todoList.size(); i++) {
-            if (todoList.get(i).getId() == todo.getId()) {
-                todoList.remove(i);
-                originalPosition = i;
-                break;
+    // 应用数据库中的变化而不重新加载：removedIds 中的行从列表移除；changed 中的行按 order 放到正确位置，
+    // 已在列表中的原地更新或移动。位置在已加载窗口之后（还有下一页）的行不插入，滚动到那里时再加载；
+    // 位置在窗口之前的行变为一个占位。order 为 null 时（如显示搜索结果）只更新已在列表中的行
+    public void applyChanges(List<Todo> changed, long[] removedIds, Comparator<Todo> order) {
+        createRows(changed, rows -> {
+            for (long id : removedIds) {
+                int index = window.indexOfId(id);
+                if (index >= 0) {
+                    window.remove(index);
+                    windowVersion++;
+                    notifyItemRemoved(windowOffset + index);
+                }
+            }
+            for (TodoRow row : rows) {
+                applyRow(row, order);
+            }
+        });
+    }
+
+    private void applyRow(TodoRow row, Comparator<Todo> order) {
+        int oldIndex = window.indexOfId(row.id);
+        if (order == null) {
+            if (oldIndex >= 0) {
+                replaceRow(oldIndex, row);
             }
+            return;
         }
-        
-        int filteredPosition = -1;
-        for (int i = 0; i < filteredTodoList.size(); i++) {
-            if (filteredTodoList.get(i).getId() == todo.getId()) {
-                filteredTodoList.remove(i);
-                filteredPosition = i;
-                break;
+        TodoRow oldRow = null;
+        if (oldIndex >= 0) {
+            oldRow = window.remove(oldIndex);
+        }
+        int newIndex = insertionIndex(row.todo, order);
+        if (oldRow != null && newIndex == oldIndex) {
+            // 位置不变
+            window.add(newIndex, row);
+            windowVersion++;
+            notifyRowChanged(windowOffset + newIndex, oldRow, row);
+            return;
+        }
+        windowVersion++;
+        if (newIndex == window.size() && hasMoreAfter) {
+            // 属于尚未加载的后续页
+            if (oldRow != null) {
+                notifyItemRemoved(windowOffset + oldIndex);
             }
+        } else if (newIndex == 0 && windowOffset > 0) {
+            // 属于窗口之前尚未加载的部分：在窗口前增加一个占位，向前滚动时加载
+            if (oldRow != null) {
+                notifyItemRemoved(windowOffset + oldIndex);
+            }
+            windowOffset++;
+            notifyItemInserted(windowOffset - 1);
+        } else if (oldRow != null) {
+            window.add(newIndex, row);
+            notifyItemMoved(windowOffset + oldIndex, windowOffset + newIndex);
+            notifyRowChanged(windowOffset + newIndex, oldRow, row);
+        } else {
+            window.add(newIndex, row);
+            notifyItemInserted(windowOffset + newIndex);
         }
-        
-        if (filteredPosition != -1) {
-            notifyItemRemoved(filteredPosition);
+    }
+
+    private void replaceRow(int index, TodoRow row) {
+        TodoRow oldRow = window.get(index);
+        window.set(index, row);
+        windowVersion++;
+        notifyRowChanged(windowOffset + index, oldRow, row);
+    }
+
+    // 内容没有变化（如勾选后界面已提前更新）时不通知
+    private void notifyRowChanged(int position, TodoRow oldRow, TodoRow newRow) {
+        if (!TodoDiffCallback.sameContents(oldRow, newRow)) {
+            notifyItemChanged(position, TodoDiffCallback.changePayload(oldRow, newRow));
+        }
+    }
+
+    // 窗口按 order 排序，返回 todo 应插入的位置
+    private int insertionIndex(Todo todo, Comparator<Todo> order) {
+        int low = 0;
+        int high = window.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (order.compare(window.get(mid).todo, todo) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public void removeTodo(Todo todo) {
+        int index = window.indexOfId(todo.getId());
+        if (index >= 0) {
+            window.remove(index);
+            windowVersion++;
+            notifyItemRemoved(windowOffset + index);
         }
     }
     
     public boolean isEmpty() {
-        return filteredTodoList.isEmpty();
+        return getItemCount() == 0;
+    }
+
+    // 按 ID 判断是否为同一条目，按显示数据判断内容是否变化
+    private static class TodoDiffCallback extends DiffUtil.Callback {
+        private final List<TodoRow> oldList;
+        private final List<TodoRow> newList;
+
+        TodoDiffCallback(List<TodoRow> oldList, List<TodoRow> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).id == newList.get(newItemPosition).id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return sameContents(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+
+        // 只有完成状态、截止时间、优先级或逾期状态变化时返回对应的 payload，标题或描述变化时整行重新绑定
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            return changePayload(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+
+        static boolean sameContents(TodoRow oldRow, TodoRow newRow) {
+            return sameText(oldRow, newRow)
+                    && oldRow.completed == newRow.completed
+                    && oldRow.priority == newRow.priority
+                    && oldRow.overdue == newRow.overdue
+                    && Objects.equals(oldRow.dueDateText, newRow.dueDateText);
+        }
+
+        static Object changePayload(TodoRow oldRow, TodoRow newRow) {
+            if (!sameText(oldRow, newRow)) {
+                return null;
+            }
+            EnumSet<Payload> payloads = EnumSet.noneOf(Payload.class);
+            if (oldRow.completed != newRow.completed) {
+                payloads.add(Payload.COMPLETION);
+            }
+            if (!Objects.equals(oldRow.dueDateText, newRow.dueDateText)) {
+                payloads.add(Payload.DUE_DATE);
+            }
+            if (oldRow.overdue != newRow.overdue) {
+                payloads.add(Payload.OVERDUE);
+            }
+            if (oldRow.priority != newRow.priority) {
+                payloads.add(Payload.PRIORITY);
+            }
+            return payloads;
+        }
+
+        private static boolean sameText(TodoRow oldRow, TodoRow newRow) {
+            return Objects.equals(oldRow.title, newRow.title)
+                    && Objects.equals(oldRow.description, newRow.description);
+        }
     }
-}
\ No newline at end of file
+}
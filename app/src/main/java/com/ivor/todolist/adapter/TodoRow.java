@@ -0,0 +1,128 @@
+package com.ivor.todolist.adapter;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+
+import androidx.core.content.ContextCompat;
+
+import com.ivor.todolist.model.Todo;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+// 列表中一行的显示数据，创建后不再改变。日期格式化、逾期判断和颜色查找都在创建时完成，
+// 绑定 ViewHolder 时只把这些值设置到视图上，滑动过程中不产生新的对象
+final class TodoRow {
+    final Todo todo;
+    final long id;
+    final String title;
+    // 描述为空时为 null；只显示一行预览
+    final String description;
+    final boolean completed;
+    final int priority;
+    final String priorityLabel;
+    // 没有截止时间时为 null
+    final String dueDateText;
+    final boolean overdue;
+    final ColorStateList titleColor;
+    final ColorStateList dueDateColor;
+    final ColorStateList priorityColor;
+
+    TodoRow(Todo todo, String dueDateText, boolean overdue, ColorStateList titleColor,
+            ColorStateList dueDateColor, ColorStateList priorityColor) {
+        this.todo = todo;
+        this.id = todo.getId();
+        this.title = todo.getTitle();
+        String description = todo.getDescription();
+        if (description == null || description.isEmpty()) {
+            this.description = null;
+        } else {
+            // 列表查询只读出描述的开头部分，被截断时加省略号
+            this.description = todo.isDescriptionLoaded() ? description : description + "…";
+        }
+        this.completed = todo.isCompleted();
+        this.priority = todo.getPriority();
+        this.priorityLabel = todo.getPriorityText();
+        this.dueDateText = dueDateText;
+        this.overdue = overdue;
+        this.titleColor = titleColor;
+        this.dueDateColor = dueDateColor;
+        this.priorityColor = priorityColor;
+    }
+
+    // 根据 Todo 创建显示数据；颜色在创建时解析一次并在所有行之间共享。
+    // 可以在任意线程调用
+    static final class Factory {
+        private final SimpleDateFormat dateTimeFormat;
+        // 格式化截止时间时复用，与 dateTimeFormat 一起加锁
+        private final Date dueDate = new Date();
+        private final ColorStateList titleColor;
+        private final ColorStateList completedTitleColor;
+        private final ColorStateList dueDateColor;
+        private final ColorStateList overdueColor;
+        private final ColorStateList highPriorityColor;
+        private final ColorStateList mediumPriorityColor;
+        private final ColorStateList lowPriorityColor;
+
+        Factory(Context context) {
+            dateTimeFormat = new SimpleDateFormat("MM-dd HH:mm", Locale.getDefault());
+            titleColor = color(context, android.R.color.black);
+            completedTitleColor = color(context, android.R.color.darker_gray);
+            dueDateColor = color(context, android.R.color.darker_gray);
+            overdueColor = color(context, android.R.color.holo_red_dark);
+            highPriorityColor = color(context, android.R.color.holo_red_light);
+            mediumPriorityColor = color(context, android.R.color.holo_orange_light);
+            lowPriorityColor = color(context, android.R.color.holo_green_light);
+        }
+
+        List<TodoRow> createAll(List<Todo> todos) {
+            long now = System.currentTimeMillis();
+            List<TodoRow> rows = new ArrayList<>(todos.size());
+            for (Todo todo : todos) {
+                rows.add(create(todo, now));
+            }
+            return rows;
+        }
+
+        TodoRow create(Todo todo) {
+            return create(todo, System.currentTimeMillis());
+        }
+
+        private TodoRow create(Todo todo, long now) {
+            String dueDateText = null;
+            boolean overdue = false;
+            if (todo.hasDueDate()) {
+                // SimpleDateFormat 不是线程安全的
+                synchronized (dateTimeFormat) {
+                    dueDate.setTime(todo.getDueDateMillis());
+                    dueDateText = dateTimeFormat.format(dueDate);
+                }
+                overdue = todo.isOverdue(now);
+            }
+            return new TodoRow(todo, dueDateText, overdue,
+                    todo.isCompleted() ? completedTitleColor : titleColor,
+                    overdue ? overdueColor : dueDateColor,
+                    priorityColor(todo.getPriority()));
+        }
+
+        private ColorStateList priorityColor(int priority) {
+            switch (priority) {
+                case 1: // 高优先级
+                    return highPriorityColor;
+                case 2: // 中优先级
+                    return mediumPriorityColor;
+                case 3: // 低优先级
+                    return lowPriorityColor;
+                default:
+                    return null;
+            }
+        }
+
+        private static ColorStateList color(Context context, int colorRes) {
+            return ColorStateList.valueOf(ContextCompat.getColor(context, colorRes));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.ivor.todolist.adapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// TodoAdapter 已加载的连续窗口：按顺序保存每行的显示数据，同时维护 ID 到下标的索引，
+// 按 ID 查找（勾选、编辑后更新）为 O(1)；删除或在开头插入后只重建受影响部分的索引
+class TodoWindow {
+    private final List<TodoRow> rows = new ArrayList<>();
+    private final LongIntMap indexById = new LongIntMap();
+
+    int size() {
+        return rows.size();
+    }
+
+    boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    TodoRow get(int index) {
+        return rows.get(index);
+    }
+
+    // 返回指定 ID 在窗口中的下标，不在窗口中时返回 -1
+    int indexOfId(long id) {
+        return indexById.get(id);
+    }
+
+    // 追加到末尾
+    void addAll(List<TodoRow> page) {
+        int start = rows.size();
+        rows.addAll(page);
+        reindexFrom(start);
+    }
+
+    // 插入到开头，原有元素的下标整体后移
+    void prependAll(List<TodoRow> page) {
+        rows.addAll(0, page);
+        reindexFrom(0);
+    }
+
+    // 用新内容替换整个窗口
+    void replaceAll(List<TodoRow> newRows) {
+        rows.clear();
+        indexById.clear();
+        addAll(newRows);
+    }
+
+    // 插入到 index 处，之后的元素下标后移
+    void add(int index, TodoRow row) {
+        rows.add(index, row);
+        reindexFrom(index);
+    }
+
+    void set(int index, TodoRow row) {
+        TodoRow previous = rows.set(index, row);
+        if (previous.id != row.id) {
+            indexById.remove(previous.id);
+        }
+        indexById.put(row.id, index);
+    }
+
+    TodoRow remove(int index) {
+        TodoRow removed = rows.remove(index);
+        indexById.remove(removed.id);
+        reindexFrom(index);
+        return removed;
+    }
+
+    // 删除 [fromIndex, toIndex) 范围内的元素
+    void removeRange(int fromIndex, int toIndex) {
+        List<TodoRow> range = rows.subList(fromIndex, toIndex);
+        for (TodoRow row : range) {
+            indexById.remove(row.id);
+        }
+        range.clear();
+        reindexFrom(fromIndex);
+    }
+
+    // 当前内容的副本，供后台线程比较差异
+    List<TodoRow> snapshot() {
+        return new ArrayList<>(rows);
+    }
+
+    private void reindexFrom(int start) {
+        for (int i = start; i < rows.size(); i++) {
+            indexById.put(rows.get(i).id, i);
+        }
+    }
+}
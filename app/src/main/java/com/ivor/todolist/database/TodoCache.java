@@ -0,0 +1,191 @@
+package com.ivor.todolist.database;
+
+import android.content.ComponentCallbacks2;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LruCache;
+
+import com.ivor.todolist.model.Todo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 按 ID 缓存最近使用的 Todo，命中时不再从 Cursor 重新构建。由 TodoDAO 的写方法精确失效，每个数据库一个实例。
+// 缓存只保存自己的副本，放入和取出时都复制：调用方拿到的对象可以随意修改（如编辑界面修改后再保存），
+// 未保存或保存失败的值不会出现在之后的读取结果中；缓存中的副本只在持有锁时访问。
+//
+// 缓存与数据库一样只反映已提交的内容：事务中的写入先按线程记下，最外层事务成功结束后才应用，回滚时丢弃
+// （与 TodoCategories 相同）。其他线程在提交前只会命中已提交的值；有未提交写入的线程读到的行不放入缓存。
+//
+// 读取与写入并发时，读线程可能在写入提交前读到旧行。读取开始前记下 generation，
+// 放入缓存时如果期间发生过写入就放弃，避免旧数据覆盖写入后的状态
+public final class TodoCache {
+    static final int DEFAULT_MAX_SIZE = 500;
+
+    private final LruCache<Long, Todo> cache;
+    // 每次写入后递增，仅在持有锁时访问
+    private long generation;
+    private final ThreadLocal<List<Runnable>> uncommitted = new ThreadLocal<List<Runnable>>() {
+        @Override
+        protected List<Runnable> initialValue() {
+            return new ArrayList<>();
+        }
+    };
+
+    TodoCache(int maxSize) {
+        cache = new LruCache<>(maxSize);
+    }
+
+    // 读取前调用，把返回值传给 putIfUnchanged
+    synchronized long generation() {
+        return generation;
+    }
+
+    // 返回缓存内容的副本，没有时返回 null
+    synchronized Todo get(long id) {
+        Todo cached = cache.get(id);
+        return cached != null ? cached.copy() : null;
+    }
+
+    // 读取路径：读取开始后没有发生写入时放入 todo 的副本。已有完整描述时不用预览替换它。
+    // 当前线程有未提交的写入时，读到的可能是未提交的行，不放入
+    void putIfUnchanged(Todo todo, long readGeneration) {
+        if (!uncommitted.get().isEmpty()) {
+            return;
+        }
+        putIfGeneration(todo, readGeneration);
+    }
+
+    private synchronized void putIfGeneration(Todo todo, long readGeneration) {
+        if (readGeneration != generation) {
+            return;
+        }
+        // 不用 get 检查，避免重复计入命中/未命中次数
+        Todo existing = cache.put(todo.getId(), todo.copy());
+        if (existing != null && existing.isDescriptionLoaded() && !todo.isDescriptionLoaded()) {
+            cache.put(todo.getId(), existing);
+        }
+    }
+
+    // 写入路径：todo 的全部字段已写入数据库
+    void put(SQLiteDatabase database, Todo todo) {
+        Todo copy = todo.copy();
+        afterCommit(database, () -> {
+            generation++;
+            cache.put(copy.getId(), copy);
+        });
+    }
+
+    // 写入路径：只写入了 fields 对应的列，把这些列的新值应用到缓存中的副本，其他列保持缓存中的值
+    void update(SQLiteDatabase database, Todo todo, int fields) {
+        Todo values = todo.copy();
+        afterCommit(database, () -> applyUpdate(values, fields));
+    }
+
+    private void applyUpdate(Todo todo, int fields) {
+        generation++;
+        Todo cached = cache.remove(todo.getId());
+        if (cached == null) {
+            return;
+        }
+        if ((fields & Todo.FIELD_TITLE) != 0) {
+            cached.setTitle(todo.getTitle());
+        }
+        if ((fields & Todo.FIELD_DESCRIPTION) != 0) {
+            cached.setDescription(todo.getDescription());
+        }
+        if ((fields & Todo.FIELD_COMPLETED) != 0) {
+            cached.setCompleted(todo.isCompleted());
+        }
+        if ((fields & Todo.FIELD_CREATED_AT) != 0) {
+            cached.setCreatedAtMillis(todo.getCreatedAtMillis());
+        }
+        if ((fields & Todo.FIELD_DUE_DATE) != 0) {
+            cached.setDueDateMillis(todo.getDueDateMillis());
+        }
+        if ((fields & Todo.FIELD_PRIORITY) != 0) {
+            cached.setPriority(todo.getPriority());
+        }
+        if ((fields & Todo.FIELD_CATEGORY) != 0) {
+            cached.setCategory(todo.getCategory());
+        }
+        cached.clearDirtyFields();
+        cache.put(todo.getId(), cached);
+    }
+
+    void remove(SQLiteDatabase database, long id) {
+        afterCommit(database, () -> {
+            generation++;
+            cache.remove(id);
+        });
+    }
+
+    // 写入事务结束后调用：仍在外层事务中时不处理；成功时按顺序应用事务中的修改，回滚时丢弃。
+    // 提交后 generation 总会递增：事务进行中开始的读取可能读到提交前的数据
+    void onTransactionEnd(SQLiteDatabase database, boolean successful) {
+        if (database.inTransaction()) {
+            return;
+        }
+        List<Runnable> pending = uncommitted.get();
+        if (successful) {
+            synchronized (this) {
+                generation++;
+                for (Runnable change : pending) {
+                    change.run();
+                }
+            }
+        }
+        pending.clear();
+    }
+
+    // 不在事务中时写入已经提交，立即应用；否则等最外层事务结束。change 在持有锁时执行
+    private void afterCommit(SQLiteDatabase database, Runnable change) {
+        if (database.inTransaction()) {
+            uncommitted.get().add(change);
+        } else {
+            synchronized (this) {
+                change.run();
+            }
+        }
+    }
+
+    public synchronized void evictAll() {
+        generation++;
+        cache.evictAll();
+    }
+
+    // 系统内存紧张时释放缓存：进入后台或内存严重不足时全部清空，其他情况保留一半
+    public synchronized void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    public int evictionCount() {
+        return cache.evictionCount();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int maxSize() {
+        return cache.maxSize();
+    }
+
+    @Override
+    public String toString() {
+        return "TodoCache{size=" + size() + "/" + maxSize() + ", hits=" + hitCount() +
+                ", misses=" + missCount() + ", evictions=" + evictionCount() + '}';
+    }
+}
@@ -0,0 +1,122 @@
+package com.ivor.todolist.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// categories 表在内存中的字典：分类 ID 与名称双向查找。每个名称只有一个 String 实例，
+// 读取时所有 Todo 共享同一个引用，不再每行分配一个新的字符串。每个数据库一个实例，与连接、缓存一起共享。
+//
+// 分类只会新增，不会修改或删除，已登记的对应关系不会失效。事务中新增的分类在事务提交前可能回滚，
+// 先记在当前线程，最外层事务成功结束后才登记
+final class TodoCategories {
+    private final TodoConnectionManager connectionManager;
+    private final Map<Long, String> namesById = new ConcurrentHashMap<>();
+    private final Map<String, Long> idsByName = new ConcurrentHashMap<>();
+    private final ThreadLocal<Map<String, Long>> uncommitted = new ThreadLocal<Map<String, Long>>() {
+        @Override
+        protected Map<String, Long> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    TodoCategories(TodoConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    // 写入路径：返回名称对应的 ID，不存在时插入；name 为 null 时返回 null
+    Long idFor(SQLiteDatabase database, String name) {
+        if (name == null) {
+            return null;
+        }
+        Long id = idsByName.get(name);
+        if (id != null) {
+            return id;
+        }
+        Map<String, Long> pending = uncommitted.get();
+        id = pending.get(name);
+        if (id != null) {
+            return id;
+        }
+        SQLiteStatement insert = database.compileStatement("INSERT OR IGNORE INTO " +
+                TodoDatabaseHelper.TABLE_CATEGORIES + " (" + TodoDatabaseHelper.COLUMN_NAME + ") VALUES (?)");
+        SQLiteStatement select = database.compileStatement("SELECT " + TodoDatabaseHelper.COLUMN_ID + " FROM " +
+                TodoDatabaseHelper.TABLE_CATEGORIES + " WHERE " + TodoDatabaseHelper.COLUMN_NAME + " = ?");
+        try {
+            insert.bindString(1, name);
+            insert.executeInsert();
+            select.bindString(1, name);
+            id = select.simpleQueryForLong();
+        } finally {
+            insert.close();
+            select.close();
+        }
+        if (database.inTransaction()) {
+            pending.put(name, id);
+        } else {
+            register(id, name);
+        }
+        return id;
+    }
+
+    // 写入事务结束后调用：仍在外层事务中时不处理；成功时登记事务中新增的分类，回滚时丢弃
+    void onTransactionEnd(SQLiteDatabase database, boolean successful) {
+        if (database.inTransaction()) {
+            return;
+        }
+        Map<String, Long> pending = uncommitted.get();
+        if (successful) {
+            for (Map.Entry<String, Long> entry : pending.entrySet()) {
+                register(entry.getValue(), entry.getKey());
+            }
+        }
+        pending.clear();
+    }
+
+    // 读取路径：返回 ID 对应的共享名称实例。未登记时（其他连接刚写入）重新读取整张分类表
+    String nameOf(long id) {
+        String name = namesById.get(id);
+        if (name != null) {
+            return name;
+        }
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            // 当前线程在事务中时可能读到尚未提交的分类，只返回不登记
+            boolean committed = !database.inTransaction();
+            Cursor cursor = database.rawQuery("SELECT " + TodoDatabaseHelper.COLUMN_ID + ", " +
+                    TodoDatabaseHelper.COLUMN_NAME + " FROM " + TodoDatabaseHelper.TABLE_CATEGORIES, null);
+            try {
+                while (cursor.moveToNext()) {
+                    long rowId = cursor.getLong(0);
+                    String rowName = committed ? register(rowId, cursor.getString(1)) : cursor.getString(1);
+                    if (rowId == id) {
+                        name = rowName;
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            return name;
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 已登记时返回已有的实例，保证同一名称只有一个 String
+    String register(long id, String name) {
+        String existing = namesById.putIfAbsent(id, name);
+        if (existing != null) {
+            return existing;
+        }
+        idsByName.putIfAbsent(name, id);
+        return name;
+    }
+
+    int size() {
+        return namesById.size();
+    }
+}
@@ -0,0 +1,29 @@
+package com.ivor.todolist.database;
+
+import com.ivor.todolist.model.Todo;
+
+import java.util.List;
+
+// 一次写入对某个查询结果的影响：changed 为满足查询条件的新增或修改的行，
+// removedIds 为已删除或修改后不再满足条件的行
+public final class TodoChangeSet {
+    private final List<Todo> changed;
+    private final long[] removedIds;
+
+    TodoChangeSet(List<Todo> changed, long[] removedIds) {
+        this.changed = changed;
+        this.removedIds = removedIds;
+    }
+
+    public List<Todo> getChanged() {
+        return changed;
+    }
+
+    public long[] getRemovedIds() {
+        return removedIds;
+    }
+
+    public boolean isEmpty() {
+        return changed.isEmpty() && removedIds.length == 0;
+    }
+}
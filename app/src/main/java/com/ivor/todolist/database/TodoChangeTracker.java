@@ -0,0 +1,80 @@
+package com.ivor.todolist.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// 记录 TodoDAO 写入涉及的行 ID，在写入提交后通知监听者。每个数据库一个实例，与连接、缓存一起共享。
+// 事务中的写入先按线程累积，最外层事务结束后一次性通知；回滚的事务同样通知，
+// 监听者会重新读取这些行，多通知只会多读一次，不会得到错误的结果
+final class TodoChangeTracker {
+    interface Listener {
+        // 在执行写入的线程调用；ids 已去重，包含插入、更新和删除的行
+        void onTodosChanged(long[] ids);
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<PendingIds> pending = new ThreadLocal<PendingIds>() {
+        @Override
+        protected PendingIds initialValue() {
+            return new PendingIds();
+        }
+    };
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // 没有监听者时不记录，批量写入不产生额外开销
+    void record(long id) {
+        if (!listeners.isEmpty()) {
+            pending.get().add(id);
+        }
+    }
+
+    // 写入完成后调用：当前线程仍在事务中时等最外层事务结束再通知
+    void dispatch(SQLiteDatabase database) {
+        if (listeners.isEmpty() || database.inTransaction()) {
+            return;
+        }
+        long[] ids = pending.get().drain();
+        if (ids.length == 0) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onTodosChanged(ids);
+        }
+    }
+
+    private static final class PendingIds {
+        private long[] ids = new long[16];
+        private int size;
+
+        void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        // 取出去重后的 ID 并清空
+        long[] drain() {
+            long[] result = Arrays.copyOf(ids, size);
+            size = 0;
+            Arrays.sort(result);
+            int count = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (i == 0 || result[i] != result[i - 1]) {
+                    result[count++] = result[i];
+                }
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.ivor.todolist.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.VisibleForTesting;
+
+// 共享数据库连接的引用计数管理。
+// 所有 TodoDAO 通过 acquire/release 使用同一个 SQLiteDatabase，最后一个引用释放时才真正关闭，
+// 避免某个 DAO 关闭连接后其他线程仍持有已关闭的句柄
+public class TodoConnectionManager {
+    private static TodoConnectionManager instance;
+
+    private final TodoDatabaseHelper dbHelper;
+    // 与连接一样按数据库共享，所有 DAO 的读写都经过同一个缓存
+    private final TodoCache cache = new TodoCache(TodoCache.DEFAULT_MAX_SIZE);
+    private final TodoChangeTracker changeTracker = new TodoChangeTracker();
+    private final TodoCategories categories = new TodoCategories(this);
+    private SQLiteDatabase database;
+    private int referenceCount;
+
+    public static synchronized TodoConnectionManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new TodoConnectionManager(TodoDatabaseHelper.getInstance(context));
+        }
+        return instance;
+    }
+
+    @VisibleForTesting
+    TodoConnectionManager(TodoDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    // 获取连接并增加引用计数，必须与 release() 成对调用
+    public synchronized SQLiteDatabase acquire() {
+        if (database == null || !database.isOpen()) {
+            database = dbHelper.getWritableDatabase();
+        }
+        referenceCount++;
+        return database;
+    }
+
+    public synchronized void release() {
+        if (referenceCount <= 0) {
+            throw new IllegalStateException("release() called without a matching acquire()");
+        }
+        if (--referenceCount == 0) {
+            dbHelper.close();
+            database = null;
+        }
+    }
+
+    TodoCache getCache() {
+        return cache;
+    }
+
+    TodoChangeTracker getChangeTracker() {
+        return changeTracker;
+    }
+
+    TodoCategories getCategories() {
+        return categories;
+    }
+
+    @VisibleForTesting
+    synchronized int getReferenceCount() {
+        return referenceCount;
+    }
+}
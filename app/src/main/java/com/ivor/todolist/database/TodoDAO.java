@@ -3,218 +3,943 @@ package com.ivor.todolist.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.VisibleForTesting;
 
 import com.ivor.todolist.model.Todo;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TodoDAO {
-    private TodoDatabaseHelper dbHelper;
-    private SQLiteDatabase database;
+    // 批量写入使用的预编译语句
+    private static final String SQL_INSERT = "INSERT INTO " + TodoDatabaseHelper.TABLE_TODOS + " (" +
+            TodoDatabaseHelper.COLUMN_TITLE + ", " +
+            TodoDatabaseHelper.COLUMN_DESCRIPTION + ", " +
+            TodoDatabaseHelper.COLUMN_IS_COMPLETED + ", " +
+            TodoDatabaseHelper.COLUMN_CREATED_AT + ", " +
+            TodoDatabaseHelper.COLUMN_DUE_DATE + ", " +
+            TodoDatabaseHelper.COLUMN_PRIORITY + ", " +
+            TodoDatabaseHelper.COLUMN_CATEGORY_ID +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE " + TodoDatabaseHelper.TABLE_TODOS + " SET " +
+            TodoDatabaseHelper.COLUMN_TITLE + " = ?, " +
+            TodoDatabaseHelper.COLUMN_DESCRIPTION + " = ?, " +
+            TodoDatabaseHelper.COLUMN_IS_COMPLETED + " = ?, " +
+            TodoDatabaseHelper.COLUMN_CREATED_AT + " = ?, " +
+            TodoDatabaseHelper.COLUMN_DUE_DATE + " = ?, " +
+            TodoDatabaseHelper.COLUMN_PRIORITY + " = ?, " +
+            TodoDatabaseHelper.COLUMN_CATEGORY_ID + " = ? " +
+            "WHERE " + TodoDatabaseHelper.COLUMN_ID + " = ?";
+    private static final String SQL_DELETE = "DELETE FROM " + TodoDatabaseHelper.TABLE_TODOS +
+            " WHERE " + TodoDatabaseHelper.COLUMN_ID + " = ?";
+    private static final String SQL_SET_COMPLETED = "UPDATE " + TodoDatabaseHelper.TABLE_TODOS + " SET " +
+            TodoDatabaseHelper.COLUMN_IS_COMPLETED + " = ? WHERE " + TodoDatabaseHelper.COLUMN_ID + " = ?";
+
+    // saveChanges 的 UPDATE 语句按修改的列集合（Todo.FIELD_* 的组合）缓存，下标即列集合。
+    // 并发时最多重复生成一次，字符串本身不可变，无需加锁；相同的 SQL 文本也会命中连接的预编译语句缓存
+    private static final String[] UPDATE_SQL_BY_FIELDS = new String[Todo.ALL_FIELDS + 1];
+    // 与 Todo.FIELD_* 的位一一对应
+    private static final String[] FIELD_COLUMNS = {
+            TodoDatabaseHelper.COLUMN_TITLE,
+            TodoDatabaseHelper.COLUMN_DESCRIPTION,
+            TodoDatabaseHelper.COLUMN_IS_COMPLETED,
+            TodoDatabaseHelper.COLUMN_CREATED_AT,
+            TodoDatabaseHelper.COLUMN_DUE_DATE,
+            TodoDatabaseHelper.COLUMN_PRIORITY,
+            TodoDatabaseHelper.COLUMN_CATEGORY_ID
+    };
+
+    // 分页查询的 SQL 按查询形状缓存。形状相同的查询生成完全相同的 SQL 文本，
+    // 除了省去拼接，还能命中连接内部按 SQL 文本缓存的预编译语句
+    private static final Map<String, String> PAGE_SQL_CACHE = new ConcurrentHashMap<>();
+
+    private static final int MAX_IN_ARGS = 500;
+
+    // 列表只显示描述的预览，列表查询只读出描述的前 DESCRIPTION_PREVIEW_LENGTH 个字符，
+    // 长描述不进入 CursorWindow 和堆。多读一个字符，据此判断是否被截断
+    static final int DESCRIPTION_PREVIEW_LENGTH = 100;
+    // 列表查询的列，带表名前缀，可以直接用于与全文索引表联接的查询
+    static final String LIST_COLUMNS =
+            TodoDatabaseHelper.TABLE_TODOS + "." + TodoDatabaseHelper.COLUMN_ID + ", " +
+            TodoDatabaseHelper.TABLE_TODOS + "." + TodoDatabaseHelper.COLUMN_TITLE + ", " +
+            "substr(" + TodoDatabaseHelper.TABLE_TODOS + "." + TodoDatabaseHelper.COLUMN_DESCRIPTION + ", 1, " +
+            (DESCRIPTION_PREVIEW_LENGTH + 1) + ") AS " + TodoDatabaseHelper.COLUMN_DESCRIPTION + ", " +
+            TodoDatabaseHelper.TABLE_TODOS + "." + TodoDatabaseHelper.COLUMN_IS_COMPLETED + ", " +
+            TodoDatabaseHelper.TABLE_TODOS + "." + TodoDatabaseHelper.COLUMN_CREATED_AT + ", " +
+            TodoDatabaseHelper.TABLE_TODOS + "." + TodoDatabaseHelper.COLUMN_DUE_DATE + ", " +
+            TodoDatabaseHelper.TABLE_TODOS + "." + TodoDatabaseHelper.COLUMN_PRIORITY + ", " +
+            TodoDatabaseHelper.TABLE_TODOS + "." + TodoDatabaseHelper.COLUMN_CATEGORY_ID;
+    // 只有描述预览的 Todo 整行更新时不写回描述列
+    private static final int FIELDS_WITHOUT_DESCRIPTION = Todo.ALL_FIELDS & ~Todo.FIELD_DESCRIPTION;
+
+    // 搜索排序时各列的权重：标题 > 分类 > 描述（顺序与全文索引的列一致）
+    private static final double[] SEARCH_COLUMN_WEIGHTS = {10.0, 1.0, 5.0};
+
+    private final TodoConnectionManager connectionManager;
+    private final TodoCache cache;
+    private final TodoChangeTracker changes;
+    private final TodoCategories categories;
+    // 全文索引的类型在数据库创建后不会改变，首次搜索时检测
+    private volatile Boolean fts5;
+    // open() 持有的连接引用，使连接在两次操作之间保持打开
+    private boolean opened;
 
     public TodoDAO(Context context) {
-        dbHelper = TodoDatabaseHelper.getInstance(context);
+        connectionManager = TodoConnectionManager.getInstance(context);
+        cache = connectionManager.getCache();
+        changes = connectionManager.getChangeTracker();
+        categories = connectionManager.getCategories();
+    }
+
+    @VisibleForTesting
+    TodoDAO(TodoDatabaseHelper dbHelper) {
+        connectionManager = new TodoConnectionManager(dbHelper);
+        cache = connectionManager.getCache();
+        changes = connectionManager.getChangeTracker();
+        categories = connectionManager.getCategories();
     }
 
-    public void open() {
-        database = dbHelper.getWritableDatabase();
+    @VisibleForTesting
+    TodoDAO(TodoConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+        cache = connectionManager.getCache();
+        changes = connectionManager.getChangeTracker();
+        categories = connectionManager.getCategories();
     }
 
-    public void close() {
-        if (database != null && database.isOpen()) {
-            database.close();
+    // open/close 只增减共享连接的引用计数，不会关闭其他 DAO 或其他线程正在使用的连接。
+    // 每个操作自身也会在执行期间持有引用，因此不调用 open() 也可以直接使用
+    public synchronized void open() {
+        if (!opened) {
+            connectionManager.acquire();
+            opened = true;
         }
     }
 
-    // 确保数据库已打开
-    private void ensureDatabaseOpen() {
-        if (database == null || !database.isOpen()) {
-            database = dbHelper.getWritableDatabase();
+    public synchronized void close() {
+        if (opened) {
+            opened = false;
+            connectionManager.release();
         }
     }
 
     // 插入新的Todo
     public long insertTodo(Todo todo) {
-        ensureDatabaseOpen();
-        ContentValues values = new ContentValues();
-        values.put(TodoDatabaseHelper.COLUMN_TITLE, todo.getTitle());
-        values.put(TodoDatabaseHelper.COLUMN_DESCRIPTION, todo.getDescription());
-        values.put(TodoDatabaseHelper.COLUMN_IS_COMPLETED, todo.isCompleted() ? 1 : 0);
-        values.put(TodoDatabaseHelper.COLUMN_CREATED_AT, todo.getCreatedAt().getTime());
-        if (todo.getDueDate() != null) {
-            values.put(TodoDatabaseHelper.COLUMN_DUE_DATE, todo.getDueDate().getTime());
-        }
-        values.put(TodoDatabaseHelper.COLUMN_PRIORITY, todo.getPriority());
-        values.put(TodoDatabaseHelper.COLUMN_CATEGORY, todo.getCategory());
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(TodoDatabaseHelper.COLUMN_TITLE, todo.getTitle());
+            values.put(TodoDatabaseHelper.COLUMN_DESCRIPTION, todo.getDescription());
+            values.put(TodoDatabaseHelper.COLUMN_IS_COMPLETED, todo.isCompleted() ? 1 : 0);
+            values.put(TodoDatabaseHelper.COLUMN_CREATED_AT, todo.getCreatedAtMillis());
+            if (todo.hasDueDate()) {
+                values.put(TodoDatabaseHelper.COLUMN_DUE_DATE, todo.getDueDateMillis());
+            }
+            values.put(TodoDatabaseHelper.COLUMN_PRIORITY, todo.getPriority());
+            values.put(TodoDatabaseHelper.COLUMN_CATEGORY_ID, categories.idFor(database, todo.getCategory()));
 
-        long id = database.insert(TodoDatabaseHelper.TABLE_TODOS, null, values);
-        todo.setId(id);
-        return id;
+            long id = database.insert(TodoDatabaseHelper.TABLE_TODOS, null, values);
+            todo.setId(id);
+            if (id != -1) {
+                todo.clearDirtyFields();
+                cache.put(database, todo);
+                changes.record(id);
+            }
+            changes.dispatch(database);
+            return id;
+        } finally {
+            connectionManager.release();
+        }
     }
 
     // 更新Todo
     public int updateTodo(Todo todo) {
-        ensureDatabaseOpen();
-        ContentValues values = new ContentValues();
-        values.put(TodoDatabaseHelper.COLUMN_TITLE, todo.getTitle());
-        values.put(TodoDatabaseHelper.COLUMN_DESCRIPTION, todo.getDescription());
-        values.put(TodoDatabaseHelper.COLUMN_IS_COMPLETED, todo.isCompleted() ? 1 : 0);
-        values.put(TodoDatabaseHelper.COLUMN_CREATED_AT, todo.getCreatedAt().getTime());
-        if (todo.getDueDate() != null) {
-            values.put(TodoDatabaseHelper.COLUMN_DUE_DATE, todo.getDueDate().getTime());
-        } else {
-            values.putNull(TodoDatabaseHelper.COLUMN_DUE_DATE);
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(TodoDatabaseHelper.COLUMN_TITLE, todo.getTitle());
+            // 只有预览时数据库中的描述才是完整的，保持不变
+            if (todo.isDescriptionLoaded()) {
+                values.put(TodoDatabaseHelper.COLUMN_DESCRIPTION, todo.getDescription());
+            }
+            values.put(TodoDatabaseHelper.COLUMN_IS_COMPLETED, todo.isCompleted() ? 1 : 0);
+            values.put(TodoDatabaseHelper.COLUMN_CREATED_AT, todo.getCreatedAtMillis());
+            if (todo.hasDueDate()) {
+                values.put(TodoDatabaseHelper.COLUMN_DUE_DATE, todo.getDueDateMillis());
+            } else {
+                values.putNull(TodoDatabaseHelper.COLUMN_DUE_DATE);
+            }
+            values.put(TodoDatabaseHelper.COLUMN_PRIORITY, todo.getPriority());
+            values.put(TodoDatabaseHelper.COLUMN_CATEGORY_ID, categories.idFor(database, todo.getCategory()));
+
+            int rows = database.update(TodoDatabaseHelper.TABLE_TODOS, values,
+                    TodoDatabaseHelper.COLUMN_ID + " = ?",
+                    new String[]{String.valueOf(todo.getId())});
+            if (rows > 0) {
+                todo.clearDirtyFields();
+                cache.put(database, todo);
+                changes.record(todo.getId());
+            } else {
+                cache.remove(database, todo.getId());
+            }
+            changes.dispatch(database);
+            return rows;
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 只写回 Todo 上被修改过的列，没有修改时不访问数据库，返回 0。
+    // 未修改的列保持数据库中的值，也不会触发这些列上的索引维护和全文索引触发器
+    public int saveChanges(Todo todo) {
+        int fields = todo.takeDirtyFields();
+        if (fields == 0) {
+            return 0;
         }
-        values.put(TodoDatabaseHelper.COLUMN_PRIORITY, todo.getPriority());
-        values.put(TodoDatabaseHelper.COLUMN_CATEGORY, todo.getCategory());
+        SQLiteDatabase database = connectionManager.acquire();
+        boolean saved = false;
+        try {
+            SQLiteStatement statement = database.compileStatement(getUpdateSql(fields));
+            try {
+                int index = bindDirtyFields(database, statement, todo, fields);
+                statement.bindLong(index, todo.getId());
+                int rows = statement.executeUpdateDelete();
+                saved = true;
+                cache.update(database, todo, fields);
+                if (rows > 0) {
+                    changes.record(todo.getId());
+                }
+                changes.dispatch(database);
+                return rows;
+            } finally {
+                statement.close();
+            }
+        } finally {
+            // 没有写入时缓存中的副本仍与数据库一致，只把修改标记放回
+            if (!saved) {
+                todo.markDirty(fields);
+            }
+            connectionManager.release();
+        }
+    }
 
-        return database.update(TodoDatabaseHelper.TABLE_TODOS, values,
-                TodoDatabaseHelper.COLUMN_ID + " = ?",
-                new String[]{String.valueOf(todo.getId())});
+    // 在一个事务内执行 body 中的多个操作，body 抛出异常时全部回滚
+    public void runInTransaction(Runnable body) {
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            database.beginTransaction();
+            boolean successful = false;
+            try {
+                body.run();
+                database.setTransactionSuccessful();
+                successful = true;
+            } finally {
+                database.endTransaction();
+                categories.onTransactionEnd(database, successful);
+                cache.onTransactionEnd(database, successful);
+                changes.dispatch(database);
+            }
+        } finally {
+            connectionManager.release();
+        }
     }
 
     // 删除Todo
     public int deleteTodo(long id) {
-        ensureDatabaseOpen();
-        return database.delete(TodoDatabaseHelper.TABLE_TODOS,
-                TodoDatabaseHelper.COLUMN_ID + " = ?",
-                new String[]{String.valueOf(id)});
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            int rows = database.delete(TodoDatabaseHelper.TABLE_TODOS,
+                    TodoDatabaseHelper.COLUMN_ID + " = ?",
+                    new String[]{String.valueOf(id)});
+            cache.remove(database, id);
+            if (rows > 0) {
+                changes.record(id);
+            }
+            changes.dispatch(database);
+            return rows;
+        } finally {
+            connectionManager.release();
+        }
     }
 
-    // 根据ID获取Todo
+    // 批量插入Todo：单个事务内复用同一条预编译语句，返回每行的新ID（失败为-1）
+    public long[] insertTodos(List<Todo> todos) {
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            long[] ids = new long[todos.size()];
+            SQLiteStatement statement = database.compileStatement(SQL_INSERT);
+            database.beginTransaction();
+            boolean successful = false;
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    Todo todo = todos.get(i);
+                    statement.clearBindings();
+                    bindTodo(database, statement, todo);
+                    try {
+                        ids[i] = statement.executeInsert();
+                    } catch (SQLException e) {
+                        ids[i] = -1;
+                    }
+                    if (ids[i] != -1) {
+                        todo.setId(ids[i]);
+                        todo.clearDirtyFields();
+                        cache.put(database, todo);
+                        changes.record(ids[i]);
+                    }
+                }
+                database.setTransactionSuccessful();
+                successful = true;
+            } finally {
+                database.endTransaction();
+                statement.close();
+                categories.onTransactionEnd(database, successful);
+                cache.onTransactionEnd(database, successful);
+                changes.dispatch(database);
+            }
+            return ids;
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 批量更新Todo，返回每行受影响的行数
+    public int[] updateTodos(List<Todo> todos) {
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            int[] results = new int[todos.size()];
+            SQLiteStatement statement = database.compileStatement(SQL_UPDATE);
+            // 只有描述预览的行使用不含描述列的语句，遇到时才编译
+            SQLiteStatement withoutDescription = null;
+            database.beginTransaction();
+            boolean successful = false;
+            try {
+                for (int i = 0; i < results.length; i++) {
+                    Todo todo = todos.get(i);
+                    if (todo.isDescriptionLoaded()) {
+                        statement.clearBindings();
+                        bindTodo(database, statement, todo);
+                        statement.bindLong(8, todo.getId());
+                        results[i] = executeUpdateDelete(statement);
+                    } else {
+                        if (withoutDescription == null) {
+                            withoutDescription = database.compileStatement(getUpdateSql(FIELDS_WITHOUT_DESCRIPTION));
+                        }
+                        withoutDescription.clearBindings();
+                        int index = bindDirtyFields(database, withoutDescription, todo, FIELDS_WITHOUT_DESCRIPTION);
+                        withoutDescription.bindLong(index, todo.getId());
+                        results[i] = executeUpdateDelete(withoutDescription);
+                    }
+                    if (results[i] > 0) {
+                        todo.clearDirtyFields();
+                        cache.put(database, todo);
+                        changes.record(todo.getId());
+                    } else {
+                        cache.remove(database, todo.getId());
+                    }
+                }
+                database.setTransactionSuccessful();
+                successful = true;
+            } finally {
+                database.endTransaction();
+                statement.close();
+                if (withoutDescription != null) {
+                    withoutDescription.close();
+                }
+                categories.onTransactionEnd(database, successful);
+                cache.onTransactionEnd(database, successful);
+                changes.dispatch(database);
+            }
+            return results;
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 批量删除Todo，返回每个ID删除的行数
+    public int[] deleteTodos(long[] ids) {
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            int[] results = new int[ids.length];
+            SQLiteStatement statement = database.compileStatement(SQL_DELETE);
+            database.beginTransaction();
+            boolean successful = false;
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    statement.bindLong(1, ids[i]);
+                    results[i] = executeUpdateDelete(statement);
+                    cache.remove(database, ids[i]);
+                    if (results[i] > 0) {
+                        changes.record(ids[i]);
+                    }
+                }
+                database.setTransactionSuccessful();
+                successful = true;
+            } finally {
+                database.endTransaction();
+                statement.close();
+                cache.onTransactionEnd(database, successful);
+                changes.dispatch(database);
+            }
+            return results;
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 批量设置完成状态，返回每个ID更新的行数
+    public int[] setCompleted(long[] ids, boolean completed) {
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            int[] results = new int[ids.length];
+            SQLiteStatement statement = database.compileStatement(SQL_SET_COMPLETED);
+            database.beginTransaction();
+            boolean successful = false;
+            try {
+                statement.bindLong(1, completed ? 1 : 0);
+                for (int i = 0; i < ids.length; i++) {
+                    statement.bindLong(2, ids[i]);
+                    results[i] = executeUpdateDelete(statement);
+                    cache.remove(database, ids[i]);
+                    if (results[i] > 0) {
+                        changes.record(ids[i]);
+                    }
+                }
+                database.setTransactionSuccessful();
+                successful = true;
+            } finally {
+                database.endTransaction();
+                statement.close();
+                cache.onTransactionEnd(database, successful);
+                changes.dispatch(database);
+            }
+            return results;
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 根据ID获取Todo，描述总是完整的：缓存中是列表读出的预览时补全描述
     public Todo getTodoById(long id) {
-        ensureDatabaseOpen();
-        Cursor cursor = database.query(TodoDatabaseHelper.TABLE_TODOS,
-                null,
-                TodoDatabaseHelper.COLUMN_ID + " = ?",
-                new String[]{String.valueOf(id)},
-                null, null, null);
-
-        Todo todo = null;
-        if (cursor != null && cursor.moveToFirst()) {
-            todo = cursorToTodo(cursor);
-            cursor.close();
+        long generation = cache.generation();
+        Todo cached = cache.get(id);
+        if (cached != null) {
+            if (!cached.isDescriptionLoaded()) {
+                loadDescription(cached);
+                // 补全后的描述也放回缓存，下次不再读取
+                cache.putIfUnchanged(cached, generation);
+            }
+            return cached;
+        }
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            Cursor cursor = database.query(TodoDatabaseHelper.TABLE_TODOS,
+                    null,
+                    TodoDatabaseHelper.COLUMN_ID + " = ?",
+                    new String[]{String.valueOf(id)},
+                    null, null, null);
+
+            Todo todo = null;
+            if (cursor != null) {
+                if (cursor.moveToFirst()) {
+                    todo = cursorToTodo(new TodoRowMapper(cursor, categories, false), cursor, generation, false);
+                }
+                cursor.close();
+            }
+            return todo;
+        } finally {
+            connectionManager.release();
         }
-        return todo;
     }
 
-    // 获取所有Todo
-    public List<Todo> getAllTodos() {
-        ensureDatabaseOpen();
-        List<Todo> todos = new ArrayList<>();
-        Cursor cursor = database.query(TodoDatabaseHelper.TABLE_TODOS,
-                null, null, null, null, null,
-                TodoDatabaseHelper.COLUMN_CREATED_AT + " DESC");
+    // 键集分页：按 query 的条件和排序，anchor 为 null 时返回第一页；after 为 true 时返回 anchor 之后的 limit 条，
+    // 否则返回之前的 limit 条。只按排序键定位，不使用 OFFSET，翻到多深都只读取 limit 行
+    public List<Todo> getTodosPage(TodoQuery query, Todo anchor, boolean after, int limit) {
+        String shape = query.getShape() + (anchor == null ? "|first" : after ? "|after" : "|before");
+        String sql = PAGE_SQL_CACHE.get(shape);
+        if (sql == null) {
+            sql = query.toSql(anchor != null, after);
+            PAGE_SQL_CACHE.put(shape, sql);
+        }
+        List<Object> args = new ArrayList<>();
+        query.bindArgs(args, anchor, after, limit, System.currentTimeMillis());
 
-        if (cursor != null) {
-            while (cursor.moveToNext()) {
-                todos.add(cursorToTodo(cursor));
+        long generation = cache.generation();
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            List<Todo> todos = new ArrayList<>(limit);
+            Cursor cursor = rawQueryWithTypedArgs(database, sql, args);
+            if (cursor != null) {
+                readTodos(cursor, generation, true, todos);
+                cursor.close();
             }
-            cursor.close();
+            if (anchor != null && !after) {
+                Collections.reverse(todos);
+            }
+            return todos;
+        } finally {
+            connectionManager.release();
         }
-        return todos;
     }
 
-    // 获取未完成的Todo
-    public List<Todo> getIncompleteTodos() {
-        ensureDatabaseOpen();
-        List<Todo> todos = new ArrayList<>();
-        Cursor cursor = database.query(TodoDatabaseHelper.TABLE_TODOS,
-                null,
-                TodoDatabaseHelper.COLUMN_IS_COMPLETED + " = ?",
-                new String[]{"0"},
-                null, null,
-                TodoDatabaseHelper.COLUMN_PRIORITY + " ASC, " + TodoDatabaseHelper.COLUMN_DUE_DATE + " ASC");
+    // 全文搜索：按标题、描述、分类做前缀匹配，结果按相关度从高到低排列
+    public List<Todo> search(String query, int limit) {
+        String matchQuery = buildMatchQuery(query);
+        if (matchQuery == null) {
+            return new ArrayList<>();
+        }
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            if (fts5 == null) {
+                fts5 = TodoDatabaseHelper.isFts5(database);
+            }
+            return fts5 ? searchFts5(database, matchQuery, limit) : searchFts4(database, matchQuery, limit);
+        } finally {
+            connectionManager.release();
+        }
+    }
 
-        if (cursor != null) {
-            while (cursor.moveToNext()) {
-                todos.add(cursorToTodo(cursor));
+    // 标记Todo为完成
+    public int markTodoAsCompleted(long id) {
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(TodoDatabaseHelper.COLUMN_IS_COMPLETED, 1);
+            int rows = database.update(TodoDatabaseHelper.TABLE_TODOS, values,
+                    TodoDatabaseHelper.COLUMN_ID + " = ?",
+                    new String[]{String.valueOf(id)});
+            cache.remove(database, id);
+            if (rows > 0) {
+                changes.record(id);
             }
-            cursor.close();
+            changes.dispatch(database);
+            return rows;
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 标记Todo为未完成
+    public int markTodoAsIncomplete(long id) {
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(TodoDatabaseHelper.COLUMN_IS_COMPLETED, 0);
+            int rows = database.update(TodoDatabaseHelper.TABLE_TODOS, values,
+                    TodoDatabaseHelper.COLUMN_ID + " = ?",
+                    new String[]{String.valueOf(id)});
+            cache.remove(database, id);
+            if (rows > 0) {
+                changes.record(id);
+            }
+            changes.dispatch(database);
+            return rows;
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 按 ID 批量读取列表行（描述为预览），不存在的 ID 不出现在结果中，结果顺序不确定
+    public List<Todo> getTodosByIds(long[] ids) {
+        long generation = cache.generation();
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            List<Todo> todos = new ArrayList<>(ids.length);
+            // 每条语句的参数个数不超过 SQLite 默认上限 999
+            for (int start = 0; start < ids.length; start += MAX_IN_ARGS) {
+                int count = Math.min(MAX_IN_ARGS, ids.length - start);
+                StringBuilder selection = new StringBuilder(TodoDatabaseHelper.COLUMN_ID).append(" IN (");
+                String[] args = new String[count];
+                for (int i = 0; i < count; i++) {
+                    selection.append(i == 0 ? "?" : ", ?");
+                    args[i] = String.valueOf(ids[start + i]);
+                }
+                selection.append(')');
+                Cursor cursor = database.rawQuery("SELECT " + LIST_COLUMNS + " FROM " + TodoDatabaseHelper.TABLE_TODOS +
+                        " WHERE " + selection, args);
+                if (cursor != null) {
+                    readTodos(cursor, generation, true, todos);
+                    cursor.close();
+                }
+            }
+            return todos;
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 未完成且截止时间在 [from, to) 内的 Todo（完整描述），按截止时间排列。条件与排序都落在
+    // INDEX_STATUS_DUE_SORT 上，只读取范围内的行；参数按整数绑定，否则与表达式比较时按文本比较
+    public List<Todo> getOpenTodosDueBetween(long from, long to) {
+        long generation = cache.generation();
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            List<Todo> todos = new ArrayList<>();
+            List<Object> args = new ArrayList<>(2);
+            args.add(from);
+            args.add(to);
+            Cursor cursor = rawQueryWithTypedArgs(database, "SELECT * FROM " + TodoDatabaseHelper.TABLE_TODOS +
+                    " WHERE " + TodoDatabaseHelper.COLUMN_IS_COMPLETED + " = 0 AND " +
+                    TodoDatabaseHelper.EXPR_DUE_DATE_SORT + " >= ? AND " +
+                    TodoDatabaseHelper.EXPR_DUE_DATE_SORT + " < ? ORDER BY " +
+                    TodoDatabaseHelper.EXPR_DUE_DATE_SORT, args);
+            if (cursor != null) {
+                readTodos(cursor, generation, false, todos);
+                cursor.close();
+            }
+            return todos;
+        } finally {
+            connectionManager.release();
         }
-        return todos;
     }
 
-    // 获取已完成的Todo
-    public List<Todo> getCompletedTodos() {
-        ensureDatabaseOpen();
+    // 未完成的 Todo 中不早于 from 的最早截止时间，没有时返回 Todo.NO_DUE_DATE。
+    // 在 INDEX_STATUS_DUE_SORT 上定位后只读一个索引项
+    public long getNextOpenDueDate(long from) {
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            SQLiteStatement statement = database.compileStatement("SELECT IFNULL(MIN(" +
+                    TodoDatabaseHelper.EXPR_DUE_DATE_SORT + "), " + Todo.NO_DUE_DATE + ") FROM " +
+                    TodoDatabaseHelper.TABLE_TODOS + " WHERE " + TodoDatabaseHelper.COLUMN_IS_COMPLETED + " = 0 AND " +
+                    TodoDatabaseHelper.EXPR_DUE_DATE_SORT + " >= ?");
+            try {
+                statement.bindLong(1, from);
+                return statement.simpleQueryForLong();
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 读取统计：只扫描 todo_stats（行数为优先级数 × 分类数），与待办总数无关。
+    // 分类名称来自字典，可以直接与 Todo.getCategory() 比较
+    public TodoStats getStats() {
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            TodoStats stats = new TodoStats();
+            Cursor cursor = database.rawQuery("SELECT " + TodoDatabaseHelper.COLUMN_PRIORITY + ", " +
+                    TodoDatabaseHelper.COLUMN_CATEGORY_ID + ", " +
+                    TodoDatabaseHelper.COLUMN_OPEN_COUNT + ", " +
+                    TodoDatabaseHelper.COLUMN_COMPLETED_COUNT + ", " +
+                    TodoDatabaseHelper.COLUMN_EARLIEST_OPEN_DUE +
+                    " FROM " + TodoDatabaseHelper.TABLE_TODO_STATS, null);
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    long categoryId = cursor.getLong(1);
+                    stats.add(cursor.getInt(0), categoryId == 0 ? null : categories.nameOf(categoryId),
+                            cursor.getInt(2), cursor.getInt(3), cursor.isNull(4) ? null : cursor.getLong(4));
+                }
+                cursor.close();
+            }
+            return stats;
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 列表读出的 Todo 只有描述预览，需要完整描述（如打开编辑界面）时按 ID 读取描述列补全；已完整时不访问数据库
+    public void loadDescription(Todo todo) {
+        if (todo.isDescriptionLoaded()) {
+            return;
+        }
+        SQLiteDatabase database = connectionManager.acquire();
+        try {
+            Cursor cursor = database.rawQuery("SELECT " + TodoDatabaseHelper.COLUMN_DESCRIPTION + " FROM " +
+                    TodoDatabaseHelper.TABLE_TODOS + " WHERE " + TodoDatabaseHelper.COLUMN_ID + " = ?",
+                    new String[]{String.valueOf(todo.getId())});
+            if (cursor != null) {
+                // 行已删除时保留预览
+                if (cursor.moveToFirst()) {
+                    todo.completeDescription(cursor.getString(0));
+                }
+                cursor.close();
+            }
+        } finally {
+            connectionManager.release();
+        }
+    }
+
+    // 写入提交后收到涉及的行 ID，见 TodoChangeTracker
+    void addChangeListener(TodoChangeTracker.Listener listener) {
+        changes.addListener(listener);
+    }
+
+    void removeChangeListener(TodoChangeTracker.Listener listener) {
+        changes.removeListener(listener);
+    }
+
+    // 缓存的命中/未命中次数等统计，用于调整缓存大小
+    public TodoCache getCache() {
+        return cache;
+    }
+
+    // 把用户输入转换为 MATCH 表达式：每个词只保留字母数字并加前缀通配，词之间为 AND。
+    // 去掉引号、括号等语法字符，避免用户输入被解析成 FTS 查询语法而报错
+    static String buildMatchQuery(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : query.toLowerCase(Locale.ROOT).split("\\s+")) {
+            StringBuilder token = new StringBuilder();
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    token.append(c);
+                }
+            }
+            if (token.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(token).append('*');
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    private List<Todo> searchFts5(SQLiteDatabase database, String matchQuery, int limit) {
+        long generation = cache.generation();
+        String sql = "SELECT " + LIST_COLUMNS + " FROM " + TodoDatabaseHelper.TABLE_TODOS_FTS +
+                " JOIN " + TodoDatabaseHelper.TABLE_TODOS + " ON " + TodoDatabaseHelper.TABLE_TODOS + "." +
+                TodoDatabaseHelper.COLUMN_ID + " = " + TodoDatabaseHelper.TABLE_TODOS_FTS + ".rowid" +
+                " WHERE " + TodoDatabaseHelper.TABLE_TODOS_FTS + " MATCH ?" +
+                " ORDER BY bm25(" + TodoDatabaseHelper.TABLE_TODOS_FTS + ", " + SEARCH_COLUMN_WEIGHTS[0] + ", " +
+                SEARCH_COLUMN_WEIGHTS[1] + ", " + SEARCH_COLUMN_WEIGHTS[2] + ")" +
+                " LIMIT " + limit;
         List<Todo> todos = new ArrayList<>();
-        Cursor cursor = database.query(TodoDatabaseHelper.TABLE_TODOS,
-                null,
-                TodoDatabaseHelper.COLUMN_IS_COMPLETED + " = ?",
-                new String[]{"1"},
-                null, null,
-                TodoDatabaseHelper.COLUMN_CREATED_AT + " DESC");
+        Cursor cursor = database.rawQuery(sql, new String[]{matchQuery});
+        if (cursor != null) {
+            readTodos(cursor, generation, true, todos);
+            cursor.close();
+        }
+        return todos;
+    }
 
+    // FTS4 没有内置排序函数：读取 matchinfo 在内存中打分，只保留前 limit 个 id，再按 id 取出完整行
+    private List<Todo> searchFts4(SQLiteDatabase database, String matchQuery, int limit) {
+        long generation = cache.generation();
+        PriorityQueue<double[]> top = new PriorityQueue<>(limit + 1, (a, b) -> Double.compare(a[0], b[0]));
+        Cursor cursor = database.rawQuery("SELECT docid, matchinfo(" + TodoDatabaseHelper.TABLE_TODOS_FTS + ", 'pcx')" +
+                " FROM " + TodoDatabaseHelper.TABLE_TODOS_FTS +
+                " WHERE " + TodoDatabaseHelper.TABLE_TODOS_FTS + " MATCH ?", new String[]{matchQuery});
         if (cursor != null) {
             while (cursor.moveToNext()) {
-                todos.add(cursorToTodo(cursor));
+                top.add(new double[]{scoreMatchInfo(cursor.getBlob(1)), cursor.getLong(0)});
+                if (top.size() > limit) {
+                    top.poll();
+                }
             }
             cursor.close();
         }
-        return todos;
-    }
+        if (top.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-    // 根据优先级获取Todo
-    public List<Todo> getTodosByPriority(int priority) {
-        ensureDatabaseOpen();
-        List<Todo> todos = new ArrayList<>();
-        Cursor cursor = database.query(TodoDatabaseHelper.TABLE_TODOS,
-                null,
-                TodoDatabaseHelper.COLUMN_PRIORITY + " = ?",
-                new String[]{String.valueOf(priority)},
-                null, null,
-                TodoDatabaseHelper.COLUMN_DUE_DATE + " ASC");
+        // 按得分从高到低排列
+        int count = top.size();
+        long[] rankedIds = new long[count];
+        for (int i = count - 1; i >= 0; i--) {
+            rankedIds[i] = (long) top.poll()[1];
+        }
+
+        StringBuilder selection = new StringBuilder(TodoDatabaseHelper.COLUMN_ID).append(" IN (");
+        String[] args = new String[count];
+        Map<Long, Integer> rankById = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            selection.append(i == 0 ? "?" : ", ?");
+            args[i] = String.valueOf(rankedIds[i]);
+            rankById.put(rankedIds[i], i);
+        }
+        selection.append(')');
 
+        Todo[] ranked = new Todo[count];
+        cursor = database.rawQuery("SELECT " + LIST_COLUMNS + " FROM " + TodoDatabaseHelper.TABLE_TODOS +
+                " WHERE " + selection, args);
         if (cursor != null) {
+            TodoRowMapper mapper = new TodoRowMapper(cursor, categories, true);
             while (cursor.moveToNext()) {
-                todos.add(cursorToTodo(cursor));
+                Todo todo = cursorToTodo(mapper, cursor, generation, true);
+                ranked[rankById.get(todo.getId())] = todo;
             }
             cursor.close();
         }
+        List<Todo> todos = new ArrayList<>(count);
+        for (Todo todo : ranked) {
+            if (todo != null) {
+                todos.add(todo);
+            }
+        }
         return todos;
     }
 
-    // 标记Todo为完成
-    public int markTodoAsCompleted(long id) {
-        ensureDatabaseOpen();
-        ContentValues values = new ContentValues();
-        values.put(TodoDatabaseHelper.COLUMN_IS_COMPLETED, 1);
-        return database.update(TodoDatabaseHelper.TABLE_TODOS, values,
-                TodoDatabaseHelper.COLUMN_ID + " = ?",
-                new String[]{String.valueOf(id)});
+    // matchinfo 'pcx'：短语数 p、列数 c，随后每个 (短语, 列) 三个整数：本行命中数、所有行命中总数、命中的行数。
+    // 得分为各列加权的「本行命中数 / 总命中数」之和，越稀有的词命中越有分量
+    private static double scoreMatchInfo(byte[] matchInfo) {
+        IntBuffer values = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phraseCount = values.get(0);
+        int columnCount = values.get(1);
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int offset = 2 + 3 * (phrase * columnCount + column);
+                int hitsThisRow = values.get(offset);
+                int hitsAllRows = values.get(offset + 1);
+                if (hitsThisRow > 0) {
+                    score += SEARCH_COLUMN_WEIGHTS[column] * hitsThisRow / hitsAllRows;
+                }
+            }
+        }
+        return score;
     }
 
-    // 标记Todo为未完成
-    public int markTodoAsIncomplete(long id) {
-        ensureDatabaseOpen();
-        ContentValues values = new ContentValues();
-        values.put(TodoDatabaseHelper.COLUMN_IS_COMPLETED, 0);
-        return database.update(TodoDatabaseHelper.TABLE_TODOS, values,
-                TodoDatabaseHelper.COLUMN_ID + " = ?",
-                new String[]{String.valueOf(id)});
-    }
-
-    // 将Cursor转换为Todo对象
-    private Todo cursorToTodo(Cursor cursor) {
-        Todo todo = new Todo();
-        todo.setId(cursor.getLong(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_ID)));
-        todo.setTitle(cursor.getString(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_TITLE)));
-        todo.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_DESCRIPTION)));
-        todo.setCompleted(cursor.getInt(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_IS_COMPLETED)) == 1);
-        todo.setCreatedAt(new Date(cursor.getLong(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_CREATED_AT))));
-        
-        long dueDateLong = cursor.getLong(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_DUE_DATE));
-        if (dueDateLong > 0) {
-            todo.setDueDate(new Date(dueDateLong));
-        }
-        
-        todo.setPriority(cursor.getInt(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_PRIORITY)));
-        todo.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_CATEGORY)));
-        
+    // rawQuery 只能以字符串绑定参数；通过 CursorFactory 拿到 SQLiteQuery，按实际类型绑定
+    @VisibleForTesting
+    static Cursor rawQueryWithTypedArgs(SQLiteDatabase database, String sql, List<Object> args) {
+        return database.rawQueryWithFactory((db, driver, editTable, query) -> {
+            for (int i = 0; i < args.size(); i++) {
+                Object arg = args.get(i);
+                if (arg == null) {
+                    query.bindNull(i + 1);
+                } else if (arg instanceof Long) {
+                    query.bindLong(i + 1, (Long) arg);
+                } else {
+                    query.bindString(i + 1, arg.toString());
+                }
+            }
+            return new SQLiteCursor(driver, editTable, query);
+        }, sql, null, null);
+    }
+
+    // 只更新 fields 中各列的 UPDATE 语句，列顺序与 FIELD_COLUMNS 一致，最后一个参数为 ID
+    @VisibleForTesting
+    static String getUpdateSql(int fields) {
+        String sql = UPDATE_SQL_BY_FIELDS[fields];
+        if (sql == null) {
+            StringBuilder builder = new StringBuilder("UPDATE ").append(TodoDatabaseHelper.TABLE_TODOS).append(" SET ");
+            boolean first = true;
+            for (int i = 0; i < FIELD_COLUMNS.length; i++) {
+                if ((fields & (1 << i)) != 0) {
+                    builder.append(first ? "" : ", ").append(FIELD_COLUMNS[i]).append(" = ?");
+                    first = false;
+                }
+            }
+            sql = builder.append(" WHERE ").append(TodoDatabaseHelper.COLUMN_ID).append(" = ?").toString();
+            UPDATE_SQL_BY_FIELDS[fields] = sql;
+        }
+        return sql;
+    }
+
+    // 按 getUpdateSql 的列顺序绑定 fields 中的各列，返回下一个参数的下标
+    private int bindDirtyFields(SQLiteDatabase database, SQLiteStatement statement, Todo todo, int fields) {
+        int index = 1;
+        if ((fields & Todo.FIELD_TITLE) != 0) {
+            bindStringOrNull(statement, index++, todo.getTitle());
+        }
+        if ((fields & Todo.FIELD_DESCRIPTION) != 0) {
+            bindStringOrNull(statement, index++, todo.getDescription());
+        }
+        if ((fields & Todo.FIELD_COMPLETED) != 0) {
+            statement.bindLong(index++, todo.isCompleted() ? 1 : 0);
+        }
+        if ((fields & Todo.FIELD_CREATED_AT) != 0) {
+            statement.bindLong(index++, todo.getCreatedAtMillis());
+        }
+        if ((fields & Todo.FIELD_DUE_DATE) != 0) {
+            if (todo.hasDueDate()) {
+                statement.bindLong(index++, todo.getDueDateMillis());
+            } else {
+                statement.bindNull(index++);
+            }
+        }
+        if ((fields & Todo.FIELD_PRIORITY) != 0) {
+            statement.bindLong(index++, todo.getPriority());
+        }
+        if ((fields & Todo.FIELD_CATEGORY) != 0) {
+            bindLongOrNull(statement, index++, categories.idFor(database, todo.getCategory()));
+        }
+        return index;
+    }
+
+    // 按 SQL_INSERT/SQL_UPDATE 的列顺序绑定参数 1~7
+    private void bindTodo(SQLiteDatabase database, SQLiteStatement statement, Todo todo) {
+        bindStringOrNull(statement, 1, todo.getTitle());
+        bindStringOrNull(statement, 2, todo.getDescription());
+        statement.bindLong(3, todo.isCompleted() ? 1 : 0);
+        statement.bindLong(4, todo.getCreatedAtMillis());
+        if (todo.hasDueDate()) {
+            statement.bindLong(5, todo.getDueDateMillis());
+        } else {
+            statement.bindNull(5);
+        }
+        statement.bindLong(6, todo.getPriority());
+        bindLongOrNull(statement, 7, categories.idFor(database, todo.getCategory()));
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    private static void bindLongOrNull(SQLiteStatement statement, int index, Long value) {
+        if (value != null) {
+            statement.bindLong(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    // 单行失败（如违反约束）只影响该行的结果，不中断整个批次
+    private static int executeUpdateDelete(SQLiteStatement statement) {
+        try {
+            return statement.executeUpdateDelete();
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    // 读取 cursor 的全部行加入 todos，列下标只解析一次；preview 含义见 TodoRowMapper
+    private void readTodos(Cursor cursor, long generation, boolean preview, List<Todo> todos) {
+        TodoRowMapper mapper = new TodoRowMapper(cursor, categories, preview);
+        while (cursor.moveToNext()) {
+            todos.add(cursorToTodo(mapper, cursor, generation, true));
+        }
+    }
+
+    // 将Cursor的当前行转换为Todo对象；缓存中已有该 ID 时返回缓存内容的副本，不再读取其他列。
+    // generation 为查询开始前 cache.generation() 的值；checkCache 为 false 表示调用方已查过缓存
+    private Todo cursorToTodo(TodoRowMapper mapper, Cursor cursor, long generation, boolean checkCache) {
+        if (checkCache) {
+            Todo cached = cache.get(mapper.getId(cursor));
+            if (cached != null) {
+                // 缓存中只有预览而这次读出了完整描述时补全，并更新缓存
+                if (!mapper.isPreview() && !cached.isDescriptionLoaded()) {
+                    cached.completeDescription(mapper.getDescription(cursor));
+                    cache.putIfUnchanged(cached, generation);
+                }
+                return cached;
+            }
+        }
+        Todo todo = mapper.map(cursor);
+        cache.putIfUnchanged(todo, generation);
         return todo;
     }
-}
\ No newline at end of file
+}
@@ -1,15 +1,29 @@
 package com.ivor.todolist.database;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Locale;
+
 public class TodoDatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "todo_database.db";
-    private static final int DATABASE_VERSION = 1;
+    static final int DATABASE_VERSION = 9;
 
     // 表名
     public static final String TABLE_TODOS = "todos";
+    // 全文索引（外部内容表，文本只存一份在 todos 中）
+    public static final String TABLE_TODOS_FTS = "todos_fts";
+    // 按优先级和分类分组的计数，由触发器与 todos 保持同步
+    public static final String TABLE_TODO_STATS = "todo_stats";
+    // 分类字典，名称只存一份
+    public static final String TABLE_CATEGORIES = "categories";
+    // 全文索引的外部内容：todos 连接分类名称
+    public static final String VIEW_TODOS_CONTENT = "todos_content";
 
     // 列名
     public static final String COLUMN_ID = "id";
@@ -19,7 +33,17 @@ public class TodoDatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_CREATED_AT = "created_at";
     public static final String COLUMN_DUE_DATE = "due_date";
     public static final String COLUMN_PRIORITY = "priority";
+    // 版本7之前 todos 直接保存分类名称；之后只在视图和全文索引中使用这个列名
     public static final String COLUMN_CATEGORY = "category";
+    public static final String COLUMN_CATEGORY_ID = "category_id";
+
+    // categories 的列（id 与 todos 同名）
+    public static final String COLUMN_NAME = "name";
+
+    // todo_stats 的列（priority、category_id 与 todos 同名；没有分类时 category_id 为 0）
+    public static final String COLUMN_OPEN_COUNT = "open_count";
+    public static final String COLUMN_COMPLETED_COUNT = "completed_count";
+    public static final String COLUMN_EARLIEST_OPEN_DUE = "earliest_open_due";
 
     // 创建表的SQL语句
     private static final String CREATE_TABLE_TODOS = "CREATE TABLE " + TABLE_TODOS + " (" +
@@ -33,6 +57,25 @@ public class TodoDatabaseHelper extends SQLiteOpenHelper {
             COLUMN_CATEGORY + " TEXT" +
             ")";
 
+    // 索引名
+    // INDEX_STATUS_PRIORITY_DUE、INDEX_PRIORITY_DUE 只在版本2到4中存在，之后由对应的 *_DUE_SORT 表达式索引取代
+    public static final String INDEX_STATUS_PRIORITY_DUE = "idx_todos_status_priority_due";
+    public static final String INDEX_STATUS_CREATED = "idx_todos_status_created";
+    public static final String INDEX_PRIORITY_DUE = "idx_todos_priority_due";
+    public static final String INDEX_CREATED = "idx_todos_created";
+    public static final String INDEX_DUE_SORT = "idx_todos_due_sort";
+    public static final String INDEX_PRIORITY_DUE_SORT = "idx_todos_priority_due_sort";
+    public static final String INDEX_TITLE = "idx_todos_title";
+    public static final String INDEX_STATUS_DUE_SORT = "idx_todos_status_due_sort";
+    public static final String INDEX_STATUS_PRIORITY_DUE_SORT = "idx_todos_status_priority_due_sort";
+    public static final String INDEX_STATUS_TITLE = "idx_todos_status_title";
+    public static final String INDEX_CATEGORY = "idx_todos_category";
+    public static final String INDEX_STATUS_PRIORITY_CATEGORY_DUE = "idx_todos_status_priority_category_due";
+
+    // 排序表达式：无截止时间的排在最后；标题不区分大小写。必须与索引中的表达式完全一致才能走索引
+    public static final String EXPR_DUE_DATE_SORT = "IFNULL(" + COLUMN_DUE_DATE + ", " + Long.MAX_VALUE + ")";
+    public static final String EXPR_TITLE_SORT = COLUMN_TITLE + " COLLATE NOCASE";
+
     private static TodoDatabaseHelper instance;
 
     public static synchronized TodoDatabaseHelper getInstance(Context context) {
@@ -43,23 +86,374 @@ public class TodoDatabaseHelper extends SQLiteOpenHelper {
     }
 
     private TodoDatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    @VisibleForTesting
+    TodoDatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // WAL 模式下读写可以并发进行，读取不会被写事务阻塞
+        db.enableWriteAheadLogging();
+        // WAL 下 NORMAL 不会损坏数据库，只在断电时可能丢失最后提交的事务，换来每次提交少一次 fsync
+        db.execSQL("PRAGMA synchronous = NORMAL");
+        // 约 2MB 页缓存（负数表示 KiB）；排序、临时索引放在内存中。
+        // 这两项按连接生效，WAL 连接池中额外的只读连接使用 SQLite 默认值
+        db.execSQL("PRAGMA cache_size = -2048");
+        db.execSQL("PRAGMA temp_store = MEMORY");
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
+        // 先建出版本1的表，再走与升级相同的迁移，保证新安装和升级得到一致的结构
         db.execSQL(CREATE_TABLE_TODOS);
+        onUpgrade(db, 1, DATABASE_VERSION);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // 简单的升级策略：删除旧表，创建新表
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TODOS);
-        onCreate(db);
+        // 逐个版本增量迁移，保留已有数据（SQLiteOpenHelper 已在事务中调用）
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrateTo(db, version);
+        }
     }
 
     @Override
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        onUpgrade(db, oldVersion, newVersion);
+        // 无法回退迁移，只能重建（todos 上的触发器随表一起删除）
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TODOS_FTS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TODO_STATS);
+        db.execSQL("DROP VIEW IF EXISTS " + VIEW_TODOS_CONTENT);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TODOS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CATEGORIES);
+        onCreate(db);
+    }
+
+    private void migrateTo(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 2:
+                migrateToV2(db);
+                break;
+            case 3:
+                migrateToV3(db);
+                break;
+            case 4:
+                migrateToV4(db);
+                break;
+            case 5:
+                migrateToV5(db);
+                break;
+            case 6:
+                migrateToV6(db);
+                break;
+            case 7:
+                migrateToV7(db);
+                break;
+            case 8:
+                dropReplacedIndexes(db);
+                break;
+            case 9:
+                migrateToV9(db);
+                break;
+            default:
+                throw new IllegalStateException("Missing migration to version " + version);
+        }
+    }
+
+    // 版本2：为 TodoDAO 当时的各个查询添加与 WHERE/ORDER BY 对应的索引
+    private void migrateToV2(SQLiteDatabase db) {
+        // WHERE is_completed = ? ORDER BY priority, due_date（版本5删除）
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_STATUS_PRIORITY_DUE + " ON " + TABLE_TODOS +
+                " (" + COLUMN_IS_COMPLETED + ", " + COLUMN_PRIORITY + ", " + COLUMN_DUE_DATE + ")");
+        // WHERE is_completed = ? ORDER BY created_at DESC
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_STATUS_CREATED + " ON " + TABLE_TODOS +
+                " (" + COLUMN_IS_COMPLETED + ", " + COLUMN_CREATED_AT + " DESC)");
+        // WHERE priority = ? ORDER BY due_date（版本5删除）
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_PRIORITY_DUE + " ON " + TABLE_TODOS +
+                " (" + COLUMN_PRIORITY + ", " + COLUMN_DUE_DATE + ")");
+        // ORDER BY created_at DESC：TodoQuery 不按状态筛选时使用，INDEX_STATUS_CREATED 以状态开头，不能代替它
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_CREATED + " ON " + TABLE_TODOS +
+                " (" + COLUMN_CREATED_AT + " DESC)");
+    }
+
+    // 版本3：为分页查询的排序键添加索引（结尾隐含的 rowid 即 id，用作分页的唯一键）
+    private void migrateToV3(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_DUE_SORT + " ON " + TABLE_TODOS +
+                " (" + EXPR_DUE_DATE_SORT + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_PRIORITY_DUE_SORT + " ON " + TABLE_TODOS +
+                " (" + COLUMN_PRIORITY + ", " + EXPR_DUE_DATE_SORT + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TITLE + " ON " + TABLE_TODOS +
+                " (" + EXPR_TITLE_SORT + ")");
+    }
+
+    // 版本4：标题、描述、分类的全文索引，由触发器与 todos 保持同步
+    private void migrateToV4(SQLiteDatabase db) {
+        createFullTextIndex(db, false);
+    }
+
+    // 版本5：按完成状态筛选后再按截止时间、优先级或标题排序（TodoQuery），按创建时间排序已有 INDEX_STATUS_CREATED。
+    // TodoQuery 按截止时间排序都使用 EXPR_DUE_DATE_SORT，版本2中直接按 due_date 的两个索引不再被任何查询使用
+    private void migrateToV5(SQLiteDatabase db) {
+        dropReplacedIndexes(db);
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_STATUS_DUE_SORT + " ON " + TABLE_TODOS +
+                " (" + COLUMN_IS_COMPLETED + ", " + EXPR_DUE_DATE_SORT + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_STATUS_PRIORITY_DUE_SORT + " ON " + TABLE_TODOS +
+                " (" + COLUMN_IS_COMPLETED + ", " + COLUMN_PRIORITY + ", " + EXPR_DUE_DATE_SORT + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_STATUS_TITLE + " ON " + TABLE_TODOS +
+                " (" + COLUMN_IS_COMPLETED + ", " + EXPR_TITLE_SORT + ")");
+    }
+
+    // 版本6：统计表。每个（优先级, 分类）一行，记录未完成数、已完成数和最早的未完成截止时间，
+    // 读取统计只需扫描这张很小的表，不随待办数量增长
+    private void migrateToV6(SQLiteDatabase db) {
+        createStats(db, false);
+    }
+
+    // 版本7：分类名称只在 categories 中存一份，todos 改存整数 category_id。
+    // 最低支持的 SQLite 不能删除列，需要重建 todos；todos 上的索引和触发器随旧表删除，全文索引和统计表一并重建
+    private void migrateToV7(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_CATEGORIES + " (" +
+                COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COLUMN_NAME + " TEXT NOT NULL UNIQUE)");
+        db.execSQL("INSERT INTO " + TABLE_CATEGORIES + " (" + COLUMN_NAME + ") SELECT DISTINCT " + COLUMN_CATEGORY +
+                " FROM " + TABLE_TODOS + " WHERE " + COLUMN_CATEGORY + " IS NOT NULL ORDER BY " + COLUMN_CATEGORY);
+
+        // 保留自增序列，已删除的 ID 不会被重新使用
+        Long sequence = null;
+        Cursor cursor = db.rawQuery("SELECT seq FROM sqlite_sequence WHERE name = ?", new String[]{TABLE_TODOS});
+        try {
+            if (cursor.moveToFirst()) {
+                sequence = cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TODOS_FTS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TODO_STATS);
+        String rebuilt = TABLE_TODOS + "_new";
+        db.execSQL("CREATE TABLE " + rebuilt + " (" +
+                COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COLUMN_TITLE + " TEXT NOT NULL, " +
+                COLUMN_DESCRIPTION + " TEXT, " +
+                COLUMN_IS_COMPLETED + " INTEGER DEFAULT 0, " +
+                COLUMN_CREATED_AT + " INTEGER NOT NULL, " +
+                COLUMN_DUE_DATE + " INTEGER, " +
+                COLUMN_PRIORITY + " INTEGER DEFAULT 2, " +
+                COLUMN_CATEGORY_ID + " INTEGER REFERENCES " + TABLE_CATEGORIES + " (" + COLUMN_ID + ")" +
+                ")");
+        String columns = COLUMN_ID + ", " + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_IS_COMPLETED +
+                ", " + COLUMN_CREATED_AT + ", " + COLUMN_DUE_DATE + ", " + COLUMN_PRIORITY;
+        db.execSQL("INSERT INTO " + rebuilt + " (" + columns + ", " + COLUMN_CATEGORY_ID + ") " +
+                "SELECT t." + columns.replace(", ", ", t.") + ", c." + COLUMN_ID +
+                " FROM " + TABLE_TODOS + " t LEFT JOIN " + TABLE_CATEGORIES + " c ON c." + COLUMN_NAME +
+                " = t." + COLUMN_CATEGORY);
+        db.execSQL("DROP TABLE " + TABLE_TODOS);
+        db.execSQL("ALTER TABLE " + rebuilt + " RENAME TO " + TABLE_TODOS);
+        if (sequence != null) {
+            db.execSQL("UPDATE sqlite_sequence SET seq = MAX(seq, ?) WHERE name = ?",
+                    new Object[]{sequence, TABLE_TODOS});
+            db.execSQL("INSERT INTO sqlite_sequence (name, seq) SELECT ?, ? " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = ?)",
+                    new Object[]{TABLE_TODOS, sequence, TABLE_TODOS});
+        }
+
+        // 版本2、3、5 的索引只涉及未改变的列
+        migrateToV2(db);
+        migrateToV3(db);
+        migrateToV5(db);
+        // 按分类筛选（TodoQuery.category）
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_CATEGORY + " ON " + TABLE_TODOS +
+                " (" + COLUMN_CATEGORY_ID + ")");
+
+        // 全文索引的外部内容改为视图，分类列取自 categories.name，搜索仍能匹配分类名称。
+        // FTS4 按 rowid 读取外部内容，视图没有 rowid，因此单独输出一列名为 rowid
+        db.execSQL("CREATE VIEW " + VIEW_TODOS_CONTENT + " AS SELECT " +
+                "t." + COLUMN_ID + " AS rowid, t." + COLUMN_ID + " AS " + COLUMN_ID + ", " +
+                "t." + COLUMN_TITLE + " AS " + COLUMN_TITLE + ", t." + COLUMN_DESCRIPTION + " AS " + COLUMN_DESCRIPTION +
+                ", c." + COLUMN_NAME + " AS " + COLUMN_CATEGORY +
+                " FROM " + TABLE_TODOS + " t LEFT JOIN " + TABLE_CATEGORIES + " c ON c." + COLUMN_ID +
+                " = t." + COLUMN_CATEGORY_ID);
+        createFullTextIndex(db, true);
+        createStats(db, true);
+    }
+
+    // 版本9：统计触发器重新计算最早截止时间的子查询改为按分组定位到 INDEX_STATUS_PRIORITY_CATEGORY_DUE。
+    // 触发器的 SQL 保存在数据库中，删除后与统计表一起重建
+    private void migrateToV9(SQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS todo_stats_after_insert");
+        db.execSQL("DROP TRIGGER IF EXISTS todo_stats_after_delete");
+        db.execSQL("DROP TRIGGER IF EXISTS todo_stats_after_update");
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TODO_STATS);
+        createStats(db, true);
+    }
+
+    // 已被取代、不被任何查询使用的索引，每次写入仍要维护。版本5和版本7（重建表时重放了版本2）之后删除；
+    // 版本8为此前已升级到版本7的数据库删除，已删除时没有影响
+    private static void dropReplacedIndexes(SQLiteDatabase db) {
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_STATUS_PRIORITY_DUE);
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_PRIORITY_DUE);
+    }
+
+    // 分类列：版本7之前为 todos.category（名称），之后为 todos.category_id
+    private static String categoryColumn(boolean categoryIds) {
+        return categoryIds ? COLUMN_CATEGORY_ID : COLUMN_CATEGORY;
+    }
+
+    // 触发器中 row（new 或 old）的分类名称
+    private static String categoryName(String row, boolean categoryIds) {
+        return categoryIds
+                ? "(SELECT " + COLUMN_NAME + " FROM " + TABLE_CATEGORIES + " WHERE " + COLUMN_ID + " = " +
+                row + "." + COLUMN_CATEGORY_ID + ")"
+                : row + "." + COLUMN_CATEGORY;
+    }
+
+    // 建立全文索引及同步触发器，并为已有数据建立索引。categoryIds 为 true 时外部内容为 VIEW_TODOS_CONTENT
+    private static void createFullTextIndex(SQLiteDatabase db, boolean categoryIds) {
+        String content = categoryIds ? VIEW_TODOS_CONTENT : TABLE_TODOS;
+        String columns = COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_CATEGORY;
+        String newValues = "new." + COLUMN_TITLE + ", new." + COLUMN_DESCRIPTION + ", " + categoryName("new", categoryIds);
+        String oldValues = "old." + COLUMN_TITLE + ", old." + COLUMN_DESCRIPTION + ", " + categoryName("old", categoryIds);
+        // 触发器监视的 todos 列
+        String sourceColumns = COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + categoryColumn(categoryIds);
+        // 只有被索引的列确实变化时才需要重建该行的索引
+        String textChanged = "old." + COLUMN_TITLE + " IS NOT new." + COLUMN_TITLE +
+                " OR old." + COLUMN_DESCRIPTION + " IS NOT new." + COLUMN_DESCRIPTION +
+                " OR old." + categoryColumn(categoryIds) + " IS NOT new." + categoryColumn(categoryIds);
+        String insertNew = "INSERT INTO " + TABLE_TODOS_FTS + " (rowid, " + columns + ") " +
+                "VALUES (new." + COLUMN_ID + ", " + newValues + ");";
+
+        boolean fts5;
+        try {
+            db.execSQL("CREATE VIRTUAL TABLE " + TABLE_TODOS_FTS + " USING fts5(" + columns +
+                    ", content='" + content + "', content_rowid='" + COLUMN_ID + "', tokenize='unicode61')");
+            fts5 = true;
+        } catch (SQLiteException e) {
+            // 系统 SQLite 未编译 FTS5 时退回 FTS4
+            db.execSQL("CREATE VIRTUAL TABLE " + TABLE_TODOS_FTS + " USING fts4(" + columns +
+                    ", content='" + content + "', tokenize=unicode61)");
+            fts5 = false;
+        }
+
+        db.execSQL("CREATE TRIGGER todos_fts_after_insert AFTER INSERT ON " + TABLE_TODOS + " BEGIN " +
+                insertNew + " END");
+        if (fts5) {
+            // FTS5 外部内容表删除时需要提供旧值
+            String deleteOld = "INSERT INTO " + TABLE_TODOS_FTS + " (" + TABLE_TODOS_FTS + ", rowid, " + columns + ") " +
+                    "VALUES ('delete', old." + COLUMN_ID + ", " + oldValues + ");";
+            db.execSQL("CREATE TRIGGER todos_fts_after_delete AFTER DELETE ON " + TABLE_TODOS + " BEGIN " +
+                    deleteOld + " END");
+            db.execSQL("CREATE TRIGGER todos_fts_after_update AFTER UPDATE OF " + sourceColumns + " ON " + TABLE_TODOS +
+                    " WHEN " + textChanged + " BEGIN " + deleteOld + " " + insertNew + " END");
+        } else {
+            // FTS4 外部内容表删除时从外部内容读取旧值，所以必须在行变化之前执行
+            String deleteOld = "DELETE FROM " + TABLE_TODOS_FTS + " WHERE docid = old." + COLUMN_ID + ";";
+            db.execSQL("CREATE TRIGGER todos_fts_before_delete BEFORE DELETE ON " + TABLE_TODOS + " BEGIN " +
+                    deleteOld + " END");
+            db.execSQL("CREATE TRIGGER todos_fts_before_update BEFORE UPDATE OF " + sourceColumns + " ON " + TABLE_TODOS +
+                    " WHEN " + textChanged + " BEGIN " + deleteOld + " END");
+            db.execSQL("CREATE TRIGGER todos_fts_after_update AFTER UPDATE OF " + sourceColumns + " ON " + TABLE_TODOS +
+                    " WHEN " + textChanged + " BEGIN " + insertNew + " END");
+        }
+
+        // 为已有数据建立索引
+        db.execSQL("INSERT INTO " + TABLE_TODOS_FTS + " (" + TABLE_TODOS_FTS + ") VALUES ('rebuild')");
+    }
+
+    // 建立统计表及维护触发器，并统计已有数据。
+    // 分组列与 todos 的分类列同名；没有分类时版本7之前记为空字符串，之后记为 0
+    private static void createStats(SQLiteDatabase db, boolean categoryIds) {
+        String category = categoryColumn(categoryIds);
+        String none = categoryIds ? "0" : "''";
+        if (categoryIds) {
+            // removeFromStats 中按分组取最早截止时间：前三列等值定位，MIN 只读一个索引项
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_STATUS_PRIORITY_CATEGORY_DUE + " ON " + TABLE_TODOS +
+                    " (" + COLUMN_IS_COMPLETED + ", " + COLUMN_PRIORITY + ", " + COLUMN_CATEGORY_ID + ", " +
+                    COLUMN_DUE_DATE + ")");
+        }
+        db.execSQL("CREATE TABLE " + TABLE_TODO_STATS + " (" +
+                COLUMN_PRIORITY + " INTEGER NOT NULL, " +
+                category + (categoryIds ? " INTEGER" : " TEXT") + " NOT NULL, " +
+                COLUMN_OPEN_COUNT + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_COMPLETED_COUNT + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_EARLIEST_OPEN_DUE + " INTEGER, " +
+                "PRIMARY KEY (" + COLUMN_PRIORITY + ", " + category + ")) WITHOUT ROWID");
+
+        db.execSQL("CREATE TRIGGER todo_stats_after_insert AFTER INSERT ON " + TABLE_TODOS + " BEGIN " +
+                addToStats("new", category, none) + " END");
+        db.execSQL("CREATE TRIGGER todo_stats_after_delete AFTER DELETE ON " + TABLE_TODOS + " BEGIN " +
+                removeFromStats("old", category, none) + " END");
+        // 只修改标题、描述等不影响统计的列时不触发
+        db.execSQL("CREATE TRIGGER todo_stats_after_update AFTER UPDATE OF " + COLUMN_IS_COMPLETED + ", " +
+                COLUMN_DUE_DATE + ", " + COLUMN_PRIORITY + ", " + category + " ON " + TABLE_TODOS +
+                " WHEN old." + COLUMN_IS_COMPLETED + " IS NOT new." + COLUMN_IS_COMPLETED +
+                " OR old." + COLUMN_DUE_DATE + " IS NOT new." + COLUMN_DUE_DATE +
+                " OR old." + COLUMN_PRIORITY + " IS NOT new." + COLUMN_PRIORITY +
+                " OR old." + category + " IS NOT new." + category +
+                " BEGIN " + removeFromStats("old", category, none) + " " + addToStats("new", category, none) + " END");
+
+        // 统计已有数据
+        db.execSQL("INSERT INTO " + TABLE_TODO_STATS + " SELECT " + COLUMN_PRIORITY + ", " +
+                "IFNULL(" + category + ", " + none + "), " +
+                "SUM(" + COLUMN_IS_COMPLETED + " = 0), SUM(" + COLUMN_IS_COMPLETED + " <> 0), " +
+                "MIN(CASE WHEN " + COLUMN_IS_COMPLETED + " = 0 THEN " + COLUMN_DUE_DATE + " END) " +
+                "FROM " + TABLE_TODOS + " GROUP BY 1, 2");
+    }
+
+    // 统计表中 row（触发器中的 new 或 old）所在分组的条件
+    private static String statsGroup(String row, String category, String none) {
+        return COLUMN_PRIORITY + " = " + row + "." + COLUMN_PRIORITY +
+                " AND " + category + " = IFNULL(" + row + "." + category + ", " + none + ")";
+    }
+
+    // 把一行计入统计：分组不存在时先插入（最低支持的 SQLite 没有 UPSERT），再累加计数、更新最早截止时间
+    private static String addToStats(String row, String category, String none) {
+        String open = row + "." + COLUMN_IS_COMPLETED + " = 0";
+        String completed = row + "." + COLUMN_IS_COMPLETED + " <> 0";
+        String due = row + "." + COLUMN_DUE_DATE;
+        return "INSERT OR IGNORE INTO " + TABLE_TODO_STATS + " (" + COLUMN_PRIORITY + ", " + category + ") " +
+                "VALUES (" + row + "." + COLUMN_PRIORITY + ", IFNULL(" + row + "." + category + ", " + none + "));" +
+                " UPDATE " + TABLE_TODO_STATS + " SET " +
+                COLUMN_OPEN_COUNT + " = " + COLUMN_OPEN_COUNT + " + (" + open + "), " +
+                COLUMN_COMPLETED_COUNT + " = " + COLUMN_COMPLETED_COUNT + " + (" + completed + "), " +
+                COLUMN_EARLIEST_OPEN_DUE + " = CASE WHEN " + open + " AND " + due + " IS NOT NULL AND (" +
+                COLUMN_EARLIEST_OPEN_DUE + " IS NULL OR " + due + " < " + COLUMN_EARLIEST_OPEN_DUE + ") " +
+                "THEN " + due + " ELSE " + COLUMN_EARLIEST_OPEN_DUE + " END" +
+                " WHERE " + statsGroup(row, category, none) + ";";
+    }
+
+    // 从统计中减去一行。只有移除的正是最早截止的未完成项时才重新计算最早截止时间，
+    // 这个 MIN 的条件都是对列本身的等值比较（分类用 IS，可以匹配空值），按 INDEX_STATUS_PRIORITY_CATEGORY_DUE
+    // 定位，不扫描全表；写成 IFNULL(category_id, 0) 就用不上索引。计数归零的分组删除
+    private static String removeFromStats(String row, String category, String none) {
+        String open = row + "." + COLUMN_IS_COMPLETED + " = 0";
+        String completed = row + "." + COLUMN_IS_COMPLETED + " <> 0";
+        return "UPDATE " + TABLE_TODO_STATS + " SET " +
+                COLUMN_OPEN_COUNT + " = " + COLUMN_OPEN_COUNT + " - (" + open + "), " +
+                COLUMN_COMPLETED_COUNT + " = " + COLUMN_COMPLETED_COUNT + " - (" + completed + ")" +
+                " WHERE " + statsGroup(row, category, none) + ";" +
+                " UPDATE " + TABLE_TODO_STATS + " SET " + COLUMN_EARLIEST_OPEN_DUE + " = (" +
+                "SELECT MIN(" + COLUMN_DUE_DATE + ") FROM " + TABLE_TODOS + " WHERE " + COLUMN_IS_COMPLETED + " = 0" +
+                " AND " + COLUMN_PRIORITY + " = " + row + "." + COLUMN_PRIORITY +
+                " AND " + COLUMN_DUE_DATE + " IS NOT NULL" +
+                " AND " + category + " IS " + row + "." + category + ")" +
+                " WHERE " + statsGroup(row, category, none) + " AND " + open +
+                " AND " + COLUMN_EARLIEST_OPEN_DUE + " = " + row + "." + COLUMN_DUE_DATE + ";" +
+                " DELETE FROM " + TABLE_TODO_STATS + " WHERE " + statsGroup(row, category, none) +
+                " AND " + COLUMN_OPEN_COUNT + " = 0 AND " + COLUMN_COMPLETED_COUNT + " = 0;";
+    }
+
+    // 全文索引是否为 FTS5（否则为 FTS4），两者的删除方式和排序函数不同
+    static boolean isFts5(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("SELECT sql FROM sqlite_master WHERE name = ?", new String[]{TABLE_TODOS_FTS});
+        try {
+            return cursor.moveToFirst() && cursor.getString(0).toLowerCase(Locale.ROOT).contains("fts5");
+        } finally {
+            cursor.close();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,418 @@
+package com.ivor.todolist.database;
+
+import com.ivor.todolist.model.Todo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// 列表查询条件：完成状态、优先级集合、分类、截止时间范围、只看逾期，以及多列排序。
+// 创建后不可修改，可以安全地交给后台线程；由 TodoDAO 编译为带参数的 SQL，按查询形状缓存
+public final class TodoQuery {
+    public enum Status {
+        ALL, INCOMPLETE, COMPLETED
+    }
+
+    // 可排序的字段，括号中为实际排序的列或表达式
+    public enum SortKey {
+        // created_at，索引按降序建立
+        CREATED_AT(TodoDatabaseHelper.COLUMN_CREATED_AT, true),
+        // IFNULL(due_date, Long.MAX_VALUE)，没有截止时间的排在最后
+        DUE_DATE(TodoDatabaseHelper.EXPR_DUE_DATE_SORT, false),
+        // priority
+        PRIORITY(TodoDatabaseHelper.COLUMN_PRIORITY, false),
+        // title COLLATE NOCASE
+        TITLE(TodoDatabaseHelper.EXPR_TITLE_SORT, false);
+
+        private final String expression;
+        private final boolean indexDescending;
+
+        SortKey(String expression, boolean indexDescending) {
+            this.expression = expression;
+            this.indexDescending = indexDescending;
+        }
+    }
+
+    private final Status status;
+    // 升序排列、无重复；为空表示不按优先级过滤
+    private final int[] priorities;
+    private final String category;
+    private final Long dueFrom;
+    private final Long dueTo;
+    private final boolean overdueOnly;
+    private final List<SortKey> sortKeys;
+    private final List<Boolean> sortDescending;
+
+    // 实际的排序列：用户指定的列之后总是加上 id，保证排序键唯一，可以做键集分页
+    private final String[] orderKeys;
+    private final boolean[] orderDescending;
+    private final String shape;
+    private final Comparator<Todo> comparator = this::compare;
+
+    private TodoQuery(Builder builder) {
+        status = builder.status;
+        priorities = normalize(builder.priorities);
+        category = builder.category;
+        dueFrom = builder.dueFrom;
+        dueTo = builder.dueTo;
+        overdueOnly = builder.overdueOnly;
+        if (builder.sortKeys.isEmpty()) {
+            sortKeys = Collections.singletonList(SortKey.CREATED_AT);
+            sortDescending = Collections.singletonList(true);
+        } else {
+            sortKeys = Collections.unmodifiableList(new ArrayList<>(builder.sortKeys));
+            sortDescending = Collections.unmodifiableList(new ArrayList<>(builder.sortDescending));
+        }
+
+        orderKeys = new String[sortKeys.size() + 1];
+        orderDescending = new boolean[sortKeys.size() + 1];
+        for (int i = 0; i < sortKeys.size(); i++) {
+            orderKeys[i] = sortKeys.get(i).expression;
+            orderDescending[i] = sortDescending.get(i);
+        }
+        // id 即 rowid，在索引中按升序排列；方向与第一个排序列的索引扫描方向一致，避免额外排序
+        orderKeys[sortKeys.size()] = TodoDatabaseHelper.COLUMN_ID;
+        orderDescending[sortKeys.size()] = sortDescending.get(0) != sortKeys.get(0).indexDescending;
+        shape = buildShape();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // 以当前条件为基础修改部分条件
+    public Builder buildUpon() {
+        Builder builder = new Builder()
+                .status(status)
+                .category(category)
+                .dueBetween(dueFrom, dueTo)
+                .overdueOnly(overdueOnly);
+        builder.priorities = priorities.clone();
+        builder.sortKeys.addAll(sortKeys);
+        builder.sortDescending.addAll(sortDescending);
+        return builder;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int[] getPriorities() {
+        return priorities.clone();
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Long getDueFrom() {
+        return dueFrom;
+    }
+
+    public Long getDueTo() {
+        return dueTo;
+    }
+
+    public boolean isOverdueOnly() {
+        return overdueOnly;
+    }
+
+    public List<SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    public boolean isSortDescending(int index) {
+        return sortDescending.get(index);
+    }
+
+    // 在内存中判断 todo 是否满足查询条件，与 SQL 中的条件一致；now 用于逾期判断
+    public boolean matches(Todo todo, long now) {
+        if (status != Status.ALL || overdueOnly) {
+            boolean completed = status == Status.COMPLETED && !overdueOnly;
+            if (todo.isCompleted() != completed) {
+                return false;
+            }
+        }
+        if (priorities.length > 0 && Arrays.binarySearch(priorities, todo.getPriority()) < 0) {
+            return false;
+        }
+        if (category != null && !category.equals(todo.getCategory())) {
+            return false;
+        }
+        long due = todo.getDueDateMillis();
+        if ((dueFrom != null || dueTo != null) &&
+                (due < (dueFrom != null ? dueFrom : Long.MIN_VALUE) || due >= (dueTo != null ? dueTo : Long.MAX_VALUE))) {
+            return false;
+        }
+        return !overdueOnly || due < now;
+    }
+
+    // 与 SQL 中 ORDER BY 一致的顺序（包括最后的 id），用于把变化的行放到列表中的正确位置
+    public Comparator<Todo> comparator() {
+        return comparator;
+    }
+
+    private int compare(Todo a, Todo b) {
+        for (int i = 0; i < orderKeys.length; i++) {
+            int result = compareKey(orderKeys[i], a, b);
+            if (result != 0) {
+                return orderDescending[i] ? -result : result;
+            }
+        }
+        return 0;
+    }
+
+    private static int compareKey(String key, Todo a, Todo b) {
+        switch (key) {
+            case TodoDatabaseHelper.COLUMN_ID:
+                return Long.compare(a.getId(), b.getId());
+            case TodoDatabaseHelper.COLUMN_CREATED_AT:
+                return Long.compare(a.getCreatedAtMillis(), b.getCreatedAtMillis());
+            case TodoDatabaseHelper.COLUMN_PRIORITY:
+                return Integer.compare(a.getPriority(), b.getPriority());
+            case TodoDatabaseHelper.EXPR_DUE_DATE_SORT:
+                // 没有截止时间为 Todo.NO_DUE_DATE，与排序表达式中空值的取值相同
+                return Long.compare(a.getDueDateMillis(), b.getDueDateMillis());
+            case TodoDatabaseHelper.EXPR_TITLE_SORT:
+                return compareNoCase(a.getTitle(), b.getTitle());
+            default:
+                throw new IllegalArgumentException("Unknown sort key: " + key);
+        }
+    }
+
+    // 与 SQLite 的 NOCASE 一致：只忽略 ASCII 字母的大小写；NULL 排在最前
+    private static int compareNoCase(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                x = x >= 'A' && x <= 'Z' ? (char) (x + ('a' - 'A')) : x;
+                y = y >= 'A' && y <= 'Z' ? (char) (y + ('a' - 'A')) : y;
+                if (x != y) {
+                    return x - y;
+                }
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    // 查询的形状：只包含决定 SQL 文本的部分（有哪些条件、几个优先级、排序列和方向），不包含参数值
+    String getShape() {
+        return shape;
+    }
+
+    // 生成分页查询的 SQL。hasAnchor 为 true 时附加键集条件，after 表示取 anchor 之后还是之前的数据；
+    // 参数顺序与 bindArgs 一致，最后一个参数是 LIMIT。
+    // 参数需要按类型绑定：表达式（如 IFNULL）没有列亲和性，整数按文本绑定时会按文本比较；
+    // 也不能写成 CAST(? AS INTEGER)，那样表达式索引只能用于排序，不能用于定位
+    String toSql(boolean hasAnchor, boolean after) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(TodoDAO.LIST_COLUMNS)
+                .append(" FROM ").append(TodoDatabaseHelper.TABLE_TODOS);
+        List<String> conditions = new ArrayList<>();
+        if (status != Status.ALL || overdueOnly) {
+            conditions.add(TodoDatabaseHelper.COLUMN_IS_COMPLETED + " = ?");
+        }
+        if (priorities.length > 0) {
+            StringBuilder in = new StringBuilder(TodoDatabaseHelper.COLUMN_PRIORITY).append(" IN (");
+            for (int i = 0; i < priorities.length; i++) {
+                in.append(i == 0 ? "?" : ", ?");
+            }
+            conditions.add(in.append(')').toString());
+        }
+        if (category != null) {
+            // 按名称查出分类 ID 后走 INDEX_CATEGORY；子查询与外层行无关，只执行一次
+            conditions.add(TodoDatabaseHelper.COLUMN_CATEGORY_ID + " = (SELECT " + TodoDatabaseHelper.COLUMN_ID +
+                    " FROM " + TodoDatabaseHelper.TABLE_CATEGORIES + " WHERE " + TodoDatabaseHelper.COLUMN_NAME + " = ?)");
+        }
+        // 截止时间条件都写在排序表达式上，可以使用同一个表达式索引；没有截止时间的行值为 Long.MAX_VALUE，
+        // 上界为开区间，因此不会被包含
+        if (dueFrom != null || dueTo != null) {
+            conditions.add(TodoDatabaseHelper.EXPR_DUE_DATE_SORT + " >= ? AND " +
+                    TodoDatabaseHelper.EXPR_DUE_DATE_SORT + " < ?");
+        }
+        if (overdueOnly) {
+            conditions.add(TodoDatabaseHelper.EXPR_DUE_DATE_SORT + " < ?");
+        }
+        if (hasAnchor) {
+            StringBuilder keyset = new StringBuilder();
+            appendKeysetPredicate(keyset, 0, after);
+            conditions.add(keyset.toString());
+        }
+        for (int i = 0; i < conditions.size(); i++) {
+            sql.append(i == 0 ? " WHERE " : " AND ").append(conditions.get(i));
+        }
+
+        sql.append(" ORDER BY ");
+        for (int i = 0; i < orderKeys.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            // 向前翻页时反向扫描索引，取回后再倒序
+            boolean descending = orderDescending[i] == after;
+            sql.append(orderKeys[i]).append(descending ? " DESC" : " ASC");
+        }
+        return sql.append(" LIMIT ?").toString();
+    }
+
+    // 按 toSql 中占位符的顺序填入参数（Long 或 String）；now 用于逾期判断
+    void bindArgs(List<Object> args, Todo anchor, boolean after, int limit, long now) {
+        if (status != Status.ALL || overdueOnly) {
+            args.add(status == Status.COMPLETED && !overdueOnly ? 1L : 0L);
+        }
+        for (int priority : priorities) {
+            args.add((long) priority);
+        }
+        if (category != null) {
+            args.add(category);
+        }
+        if (dueFrom != null || dueTo != null) {
+            args.add(dueFrom != null ? dueFrom : Long.MIN_VALUE);
+            args.add(dueTo != null ? dueTo : Long.MAX_VALUE);
+        }
+        if (overdueOnly) {
+            args.add(now);
+        }
+        if (anchor != null) {
+            appendKeysetArgs(args, anchor, 0);
+        }
+        args.add((long) limit);
+    }
+
+    // 生成 (k0, k1, ...) 严格位于 anchor 之后（或之前）的条件。
+    // 写成 k0 >= ? AND (k0 > ? OR (...)) 的嵌套形式，最外层的范围条件可以直接在索引上定位
+    private void appendKeysetPredicate(StringBuilder selection, int keyIndex, boolean after) {
+        String key = orderKeys[keyIndex];
+        boolean greater = orderDescending[keyIndex] != after;
+        String strict = greater ? " > " : " < ";
+
+        if (keyIndex == orderKeys.length - 1) {
+            selection.append(key).append(strict).append('?');
+            return;
+        }
+        selection.append(key).append(greater ? " >= ?" : " <= ?")
+                .append(" AND (").append(key).append(strict).append("? OR (");
+        appendKeysetPredicate(selection, keyIndex + 1, after);
+        selection.append("))");
+    }
+
+    private void appendKeysetArgs(List<Object> args, Todo anchor, int keyIndex) {
+        Object value = keyValue(orderKeys[keyIndex], anchor);
+        args.add(value);
+        if (keyIndex < orderKeys.length - 1) {
+            args.add(value);
+            appendKeysetArgs(args, anchor, keyIndex + 1);
+        }
+    }
+
+    private static Object keyValue(String key, Todo todo) {
+        switch (key) {
+            case TodoDatabaseHelper.COLUMN_ID:
+                return todo.getId();
+            case TodoDatabaseHelper.COLUMN_CREATED_AT:
+                return todo.getCreatedAtMillis();
+            case TodoDatabaseHelper.COLUMN_PRIORITY:
+                return (long) todo.getPriority();
+            case TodoDatabaseHelper.EXPR_DUE_DATE_SORT:
+                return todo.getDueDateMillis();
+            case TodoDatabaseHelper.EXPR_TITLE_SORT:
+                return todo.getTitle();
+            default:
+                throw new IllegalArgumentException("Unknown sort key: " + key);
+        }
+    }
+
+    private String buildShape() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(status != Status.ALL || overdueOnly ? 's' : '-')
+                .append(priorities.length)
+                .append(category != null ? 'c' : '-')
+                .append(dueFrom != null || dueTo != null ? 'd' : '-')
+                .append(overdueOnly ? 'o' : '-');
+        for (int i = 0; i < orderKeys.length; i++) {
+            builder.append('|').append(orderKeys[i]).append(orderDescending[i] ? 'D' : 'A');
+        }
+        return builder.toString();
+    }
+
+    private static int[] normalize(int[] values) {
+        if (values == null) {
+            return new int[0];
+        }
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    public static final class Builder {
+        private Status status = Status.ALL;
+        private int[] priorities;
+        private String category;
+        private Long dueFrom;
+        private Long dueTo;
+        private boolean overdueOnly;
+        private final List<SortKey> sortKeys = new ArrayList<>();
+        private final List<Boolean> sortDescending = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder status(Status status) {
+            this.status = status;
+            return this;
+        }
+
+        // 只保留这些优先级的 Todo；不传或为空表示不过滤
+        public Builder priorities(int... priorities) {
+            this.priorities = priorities;
+            return this;
+        }
+
+        // 只保留该分类的 Todo；null 表示不过滤
+        public Builder category(String category) {
+            this.category = category;
+            return this;
+        }
+
+        // 截止时间位于 [from, to) 之间，任一端为 null 表示不限；没有截止时间的 Todo 不会被包含
+        public Builder dueBetween(Long from, Long to) {
+            this.dueFrom = from;
+            this.dueTo = to;
+            return this;
+        }
+
+        // 只保留未完成且已过截止时间的 Todo
+        public Builder overdueOnly(boolean overdueOnly) {
+            this.overdueOnly = overdueOnly;
+            return this;
+        }
+
+        // 追加一个排序列，先追加的优先；不指定时按创建时间倒序
+        public Builder orderBy(SortKey key, boolean descending) {
+            sortKeys.add(key);
+            sortDescending.add(descending);
+            return this;
+        }
+
+        public Builder clearOrder() {
+            sortKeys.clear();
+            sortDescending.clear();
+            return this;
+        }
+
+        public TodoQuery build() {
+            return new TodoQuery(this);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.ivor.todolist.database;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.ivor.todolist.model.Todo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 在后台线程访问 TodoDAO，结果回调到主线程。
+// 每个 Activity 持有自己的实例，在 onDestroy 中调用 close() 取消未完成的读取并丢弃所有回调；
+// 线程池和 DAO 在进程内共享
+public class TodoRepository {
+    private static final int READER_THREAD_COUNT = 2;
+
+    // 单个写线程保证写入按提交顺序执行，少量读线程并发查询
+    private static ScheduledExecutorService writeExecutor;
+    private static ExecutorService readExecutor;
+    // 计算查询变化的单独线程：按写入提交的顺序依次处理，变化按顺序送达
+    private static ExecutorService observeExecutor;
+    private static final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private static TodoDAO todoDAO;
+    private static TodoWriteQueue writeQueue;
+    private static Handler mainHandler;
+    private static volatile TodoWriteQueue.OnFlushedListener onChangesWrittenListener;
+    private static final TodoChangeTracker.Listener CHANGE_LISTENER = TodoRepository::onTodosChanged;
+    // 提交过的读取次数，用于测试确认某个操作没有访问数据库
+    private static final AtomicInteger readCount = new AtomicInteger();
+
+    // 仅在主线程访问
+    private final Set<Task<?>> pendingReads = new HashSet<>();
+    private final List<Subscription> ownSubscriptions = new ArrayList<>();
+    private volatile boolean closed;
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public TodoRepository(Context context) {
+        initialize(context);
+    }
+
+    private static synchronized void initialize(Context context) {
+        if (todoDAO == null) {
+            bind(new TodoDAO(context.getApplicationContext()));
+        }
+    }
+
+    // 测试用：之后的所有操作改用名为 name 的数据库，name 为 null 时恢复为应用的数据库。
+    // 必须在没有进行中的读写时调用，已有的订阅也随之失效
+    @VisibleForTesting
+    public static synchronized void useDatabaseForTesting(Context context, String name) {
+        Context appContext = context.getApplicationContext();
+        bind(name != null ? new TodoDAO(new TodoDatabaseHelper(appContext, name)) : new TodoDAO(appContext));
+    }
+
+    @VisibleForTesting
+    public static int getReadCount() {
+        return readCount.get();
+    }
+
+    private static void bind(TodoDAO dao) {
+        if (writeExecutor == null) {
+            writeExecutor = Executors.newSingleThreadScheduledExecutor();
+            readExecutor = Executors.newFixedThreadPool(READER_THREAD_COUNT);
+            observeExecutor = Executors.newSingleThreadExecutor();
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        if (todoDAO != null) {
+            TodoDAO previous = todoDAO;
+            previous.removeChangeListener(CHANGE_LISTENER);
+            writeExecutor.execute(previous::close);
+        }
+        todoDAO = dao;
+        dao.addChangeListener(CHANGE_LISTENER);
+        writeQueue = new TodoWriteQueue(dao, writeExecutor, TodoWriteQueue.DEFAULT_COALESCE_WINDOW_MS,
+                TodoRepository::notifyWritten);
+        // 在进程存活期间一直持有连接，避免每次操作后关闭、重新打开数据库；打开（及迁移）放在写线程执行
+        writeExecutor.execute(dao::open);
+    }
+
+    // 写入提交后在写线程回调：延迟写入队列的每次写入，以及 insertTodo、updateTodo、saveChanges、deleteTodo。
+    // 插入、整行更新和删除的 fields 为 Todo.ALL_FIELDS。不经过发起写入的实例，close() 之后的写入同样回调；
+    // 进程内只需设置一次
+    public static void setOnChangesWrittenListener(TodoWriteQueue.OnFlushedListener listener) {
+        onChangesWrittenListener = listener;
+    }
+
+    private static void notifyWritten(List<TodoWriteQueue.Change> changes) {
+        TodoWriteQueue.OnFlushedListener listener = onChangesWrittenListener;
+        if (listener != null) {
+            listener.onFlushed(changes);
+        }
+    }
+
+    private static void notifyWritten(Todo todo, int fields) {
+        notifyWritten(Collections.singletonList(new TodoWriteQueue.Change(todo, fields)));
+    }
+
+    // 系统内存紧张时释放 Todo 缓存，由 Application.onTrimMemory 调用
+    public static synchronized void trimMemory(int level) {
+        if (todoDAO != null) {
+            todoDAO.getCache().trimMemory(level);
+        }
+    }
+
+    // 取消尚未执行的读取和所有订阅；已提交的写入仍会完成，但不再回调
+    public void close() {
+        closed = true;
+        for (Subscription subscription : ownSubscriptions) {
+            subscription.cancel();
+        }
+        ownSubscriptions.clear();
+        for (Task<?> task : pendingReads) {
+            task.cancel(false);
+        }
+        pendingReads.clear();
+    }
+
+    // 根据ID获取Todo
+    public Future<Todo> getTodoById(long id, Callback<Todo> callback) {
+        return read(() -> todoDAO.getTodoById(id), callback);
+    }
+
+    // 分页获取Todo，参数含义同 TodoDAO.getTodosPage
+    public Future<List<Todo>> getTodosPage(TodoQuery query, Todo anchor, boolean after, int limit,
+                                           Callback<List<Todo>> callback) {
+        return read(() -> todoDAO.getTodosPage(query, anchor, after, limit), callback);
+    }
+
+    // 全文搜索，结果按相关度排序
+    public Future<List<Todo>> search(String query, int limit, Callback<List<Todo>> callback) {
+        return read(() -> todoDAO.search(query, limit), callback);
+    }
+
+    // 各状态、优先级、分类的数量，见 TodoDAO.getStats
+    public Future<TodoStats> getStats(Callback<TodoStats> callback) {
+        return read(todoDAO::getStats, callback);
+    }
+
+    // 订阅查询结果的变化：之后任何写入涉及的行，按 query 的条件分为变化的行和移除的行，在主线程回调。
+    // 只报告变化本身，不包含未受影响的行；调用 Subscription.cancel() 或 close() 后不再回调
+    public Subscription observe(TodoQuery query, Callback<TodoChangeSet> callback) {
+        Subscription subscription = new Subscription(query, callback);
+        if (!closed) {
+            ownSubscriptions.add(subscription);
+            subscriptions.add(subscription);
+        }
+        return subscription;
+    }
+
+    // 在写入线程调用，读取变化的行放到单独的线程进行
+    private static void onTodosChanged(long[] ids) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        observeExecutor.execute(() -> {
+            List<Todo> rows = todoDAO.getTodosByIds(ids);
+            long now = System.currentTimeMillis();
+            for (Subscription subscription : subscriptions) {
+                TodoChangeSet changes = subscription.computeChanges(ids, rows, now);
+                if (!changes.isEmpty()) {
+                    mainHandler.post(() -> subscription.deliver(changes));
+                }
+            }
+        });
+    }
+
+    // 插入新的Todo，回调新ID（失败为-1）
+    public Future<Long> insertTodo(Todo todo, Callback<Long> callback) {
+        return write(() -> {
+            long id = todoDAO.insertTodo(todo);
+            if (id != -1) {
+                notifyWritten(todo, Todo.ALL_FIELDS);
+            }
+            return id;
+        }, callback);
+    }
+
+    // 更新Todo，回调受影响的行数
+    public Future<Integer> updateTodo(Todo todo, Callback<Integer> callback) {
+        return write(() -> {
+            int rows = todoDAO.updateTodo(todo);
+            if (rows > 0) {
+                notifyWritten(todo, Todo.ALL_FIELDS);
+            }
+            return rows;
+        }, callback);
+    }
+
+    // 只写回修改过的列，见 TodoDAO.saveChanges
+    public Future<Integer> saveChanges(Todo todo, Callback<Integer> callback) {
+        return write(() -> {
+            // saveChanges 会取走修改标记，先记下要写入的列
+            int fields = todo.getDirtyFields();
+            int rows = todoDAO.saveChanges(todo);
+            if (rows > 0) {
+                notifyWritten(todo, fields);
+            }
+            return rows;
+        }, callback);
+    }
+
+    // 把 todo 上的修改放入延迟写入队列，短时间内的多次修改合并写入，见 TodoWriteQueue
+    public void queueChanges(Todo todo) {
+        writeQueue.enqueue(todo);
+    }
+
+    // 立即写入队列中的全部修改，在 onPause/onStop 中调用，避免进程被回收时丢失修改
+    public Future<?> flushQueuedChanges() {
+        return writeQueue.flush();
+    }
+
+    // 删除Todo，回调受影响的行数；该行尚未写入的延迟修改一并丢弃
+    public Future<Integer> deleteTodo(long id, Callback<Integer> callback) {
+        writeQueue.discard(id);
+        return write(() -> {
+            int rows = todoDAO.deleteTodo(id);
+            if (rows > 0) {
+                Todo deleted = new Todo();
+                deleted.setId(id);
+                notifyWritten(deleted, Todo.ALL_FIELDS);
+            }
+            return rows;
+        }, callback);
+    }
+
+    private <T> Future<T> read(Callable<T> callable, Callback<T> callback) {
+        Task<T> task = new Task<>(callable, callback, true);
+        if (!closed) {
+            readCount.incrementAndGet();
+            pendingReads.add(task);
+            if (writeQueue.isEmpty()) {
+                readExecutor.execute(task);
+            } else {
+                // 还有未写入的修改时先在写线程写入，保证读到自己的修改
+                writeExecutor.execute(() -> {
+                    try {
+                        writeQueue.flushNow();
+                    } finally {
+                        readExecutor.execute(task);
+                    }
+                });
+            }
+        }
+        return task;
+    }
+
+    private <T> Future<T> write(Callable<T> callable, Callback<T> callback) {
+        Task<T> task = new Task<>(callable, callback, false);
+        writeExecutor.execute(task);
+        return task;
+    }
+
+    public final class Subscription {
+        private final TodoQuery query;
+        private final Callback<TodoChangeSet> callback;
+        private volatile boolean cancelled;
+
+        private Subscription(TodoQuery query, Callback<TodoChangeSet> callback) {
+            this.query = query;
+            this.callback = callback;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        // ids 已排序；不在 rows 中（已删除）或不满足条件的 ID 都算作移除
+        private TodoChangeSet computeChanges(long[] ids, List<Todo> rows, long now) {
+            List<Todo> changed = new ArrayList<>();
+            long[] matchedIds = new long[rows.size()];
+            int matchedCount = 0;
+            for (Todo todo : rows) {
+                if (query.matches(todo, now)) {
+                    changed.add(todo);
+                    matchedIds[matchedCount++] = todo.getId();
+                }
+            }
+            Arrays.sort(matchedIds, 0, matchedCount);
+            long[] removedIds = new long[ids.length - matchedCount];
+            int removedCount = 0;
+            for (long id : ids) {
+                if (Arrays.binarySearch(matchedIds, 0, matchedCount, id) < 0) {
+                    removedIds[removedCount++] = id;
+                }
+            }
+            return new TodoChangeSet(changed, removedIds);
+        }
+
+        private void deliver(TodoChangeSet changes) {
+            if (!cancelled && !closed) {
+                callback.onResult(changes);
+            }
+        }
+    }
+
+    private final class Task<T> extends FutureTask<T> {
+        private final Callback<T> callback;
+        private final boolean isRead;
+
+        Task(Callable<T> callable, Callback<T> callback, boolean isRead) {
+            super(callable);
+            this.callback = callback;
+            this.isRead = isRead;
+        }
+
+        // 取消时也要回到主线程，把读取从 pendingReads 中移除；deliver 不会回调已取消的任务
+        @Override
+        protected void done() {
+            mainHandler.post(this::deliver);
+        }
+
+        private void deliver() {
+            if (isRead) {
+                pendingReads.remove(this);
+            }
+            if (closed || isCancelled()) {
+                return;
+            }
+            T result;
+            try {
+                result = get();
+            } catch (ExecutionException e) {
+                // 数据库异常不吞掉，与原先在主线程直接调用时的表现一致
+                throw new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (callback != null) {
+                callback.onResult(result);
+            }
+        }
+    }
+}
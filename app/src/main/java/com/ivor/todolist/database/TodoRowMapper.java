@@ -0,0 +1,96 @@
+package com.ivor.todolist.database;
+
+import android.database.Cursor;
+
+import com.ivor.todolist.model.Todo;
+
+// 把 Cursor 的行转换为 Todo。列下标在创建时按列名解析一次，之后每行只按下标读取，
+// 同一个 Cursor 的所有行共用一个实例。不经过缓存，缓存的处理见 TodoDAO
+final class TodoRowMapper {
+    private final TodoCategories categories;
+    // 为 true 表示 Cursor 按 TodoDAO.LIST_COLUMNS 读取，描述最多多出一个字符
+    private final boolean preview;
+    private final int idIndex;
+    private final int titleIndex;
+    private final int descriptionIndex;
+    private final int completedIndex;
+    private final int createdAtIndex;
+    private final int dueDateIndex;
+    private final int priorityIndex;
+    private final int categoryIndex;
+
+    TodoRowMapper(Cursor cursor, TodoCategories categories, boolean preview) {
+        this.categories = categories;
+        this.preview = preview;
+        idIndex = cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_ID);
+        titleIndex = cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_TITLE);
+        descriptionIndex = cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_DESCRIPTION);
+        completedIndex = cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_IS_COMPLETED);
+        createdAtIndex = cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_CREATED_AT);
+        dueDateIndex = cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_DUE_DATE);
+        priorityIndex = cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_PRIORITY);
+        categoryIndex = cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_CATEGORY_ID);
+    }
+
+    boolean isPreview() {
+        return preview;
+    }
+
+    // 当前行的 ID，用于在创建对象前查缓存
+    long getId(Cursor cursor) {
+        return cursor.getLong(idIndex);
+    }
+
+    // 当前行的描述列；preview 为 true 时可能是截断的
+    String getDescription(Cursor cursor) {
+        return cursor.getString(descriptionIndex);
+    }
+
+    // 读取当前行，返回新的 Todo，没有修改标记
+    Todo map(Cursor cursor) {
+        Todo todo = new Todo();
+        fill(cursor, todo);
+        return todo;
+    }
+
+    // 从下一行开始读取最多 buffer.length 行，复用 buffer 中的 Todo（为 null 的位置才创建），返回读取的行数，
+    // 为 0 时已读完。适合逐批处理、不保留结果的调用方：下一次读取会覆盖这些对象，因此不能放入缓存或交给界面
+    int readInto(Cursor cursor, Todo[] buffer) {
+        int count = 0;
+        while (count < buffer.length && cursor.moveToNext()) {
+            Todo todo = buffer[count];
+            if (todo == null) {
+                todo = new Todo();
+                buffer[count] = todo;
+            }
+            fill(cursor, todo);
+            count++;
+        }
+        return count;
+    }
+
+    // 覆盖 todo 的全部字段
+    private void fill(Cursor cursor, Todo todo) {
+        todo.setId(cursor.getLong(idIndex));
+        todo.setTitle(cursor.getString(titleIndex));
+        String description = cursor.getString(descriptionIndex);
+        // substr 按字符截取，这里按码点比较，不会把代理对拆开
+        if (preview && description != null &&
+                description.codePointCount(0, description.length()) > TodoDAO.DESCRIPTION_PREVIEW_LENGTH) {
+            todo.setDescriptionPreview(description.substring(0,
+                    description.offsetByCodePoints(0, TodoDAO.DESCRIPTION_PREVIEW_LENGTH)));
+        } else {
+            todo.setDescription(description);
+        }
+        todo.setCompleted(cursor.getInt(completedIndex) == 1);
+        todo.setCreatedAtMillis(cursor.getLong(createdAtIndex));
+        // 列为 NULL 时 getLong 返回 0
+        long dueDate = cursor.getLong(dueDateIndex);
+        todo.setDueDateMillis(dueDate > 0 ? dueDate : Todo.NO_DUE_DATE);
+        todo.setPriority(cursor.getInt(priorityIndex));
+        // 只读出整数 ID，名称取字典中共享的实例，不为每行分配字符串
+        todo.setCategory(cursor.isNull(categoryIndex) ? null : categories.nameOf(cursor.getLong(categoryIndex)));
+        // 刚从数据库读出，与数据库一致
+        todo.clearDirtyFields();
+    }
+}
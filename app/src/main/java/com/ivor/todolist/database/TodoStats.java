@@ -0,0 +1,86 @@
+package com.ivor.todolist.database;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+// 待办数量统计，由 TodoDAO.getStats 从触发器维护的 todo_stats 表读取。
+// 逾期与否取决于读取时间，不在统计表中维护，用最早的未完成截止时间判断是否有逾期项
+public final class TodoStats {
+    private int openCount;
+    private int completedCount;
+    // 下标为优先级（1-3），其他优先级只计入总数
+    private final int[] openByPriority = new int[4];
+    // 键为分类名称，按名称排序；值为 {未完成数, 已完成数}
+    private final Map<String, int[]> countsByCategory = new TreeMap<>();
+    private Long earliestOpenDueDate;
+
+    TodoStats() {
+    }
+
+    // 读取时逐行累加，没有分类的行 category 为 null
+    void add(int priority, String category, int open, int completed, Long earliestDue) {
+        openCount += open;
+        completedCount += completed;
+        if (priority >= 1 && priority < openByPriority.length) {
+            openByPriority[priority] += open;
+        }
+        if (category != null) {
+            int[] counts = countsByCategory.get(category);
+            if (counts == null) {
+                counts = new int[2];
+                countsByCategory.put(category, counts);
+            }
+            counts[0] += open;
+            counts[1] += completed;
+        }
+        if (earliestDue != null && (earliestOpenDueDate == null || earliestDue < earliestOpenDueDate)) {
+            earliestOpenDueDate = earliestDue;
+        }
+    }
+
+    public int getTotalCount() {
+        return openCount + completedCount;
+    }
+
+    public int getOpenCount() {
+        return openCount;
+    }
+
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    public int getOpenCount(int priority) {
+        return priority >= 1 && priority < openByPriority.length ? openByPriority[priority] : 0;
+    }
+
+    // 有待办的分类名称，按名称排序
+    public Iterable<String> getCategories() {
+        return Collections.unmodifiableSet(countsByCategory.keySet());
+    }
+
+    public int getOpenCount(String category) {
+        int[] counts = countsByCategory.get(category);
+        return counts != null ? counts[0] : 0;
+    }
+
+    public int getCount(String category) {
+        int[] counts = countsByCategory.get(category);
+        return counts != null ? counts[0] + counts[1] : 0;
+    }
+
+    // 未完成待办中最早的截止时间，没有设置截止时间的未完成待办时为 null
+    public Date getEarliestOpenDueDate() {
+        return earliestOpenDueDate != null ? new Date(earliestOpenDueDate) : null;
+    }
+
+    public boolean hasOverdue(long now) {
+        return earliestOpenDueDate != null && earliestOpenDueDate < now;
+    }
+
+    public boolean isEmpty() {
+        return getTotalCount() == 0;
+    }
+}
@@ -0,0 +1,144 @@
+package com.ivor.todolist.database;
+
+import com.ivor.todolist.model.Todo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// 延迟写入队列：连续勾选等高频修改先放入队列，界面立即更新；同一 ID 在合并窗口内的多次修改
+// 合并为一次只写修改列的 UPDATE，窗口结束时在写线程中用一个事务写入全部修改。
+// 写入失败时事务整体回滚，修改放回队列，与之后的修改合并，等下一次写入时重试
+public class TodoWriteQueue {
+    static final long DEFAULT_COALESCE_WINDOW_MS = 500;
+
+    // 一次写入的结果，fields 为写入的列（Todo.FIELD_* 的组合）
+    public static final class Change {
+        public final Todo todo;
+        public final int fields;
+
+        Change(Todo todo, int fields) {
+            this.todo = todo;
+            this.fields = fields;
+        }
+    }
+
+    public interface OnFlushedListener {
+        // 事务提交后在写线程调用一次，只包含实际更新到行的修改（已被删除的行不包含在内）
+        void onFlushed(List<Change> changes);
+    }
+
+    private final TodoDAO todoDAO;
+    private final ScheduledExecutorService executor;
+    private final long coalesceWindowMs;
+    private final OnFlushedListener listener;
+
+    // 按 ID 首次加入的顺序写入；值为加入时的快照，同一 ID 之后的修改覆盖快照并合并修改的列
+    private final Map<Long, Change> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    // executor 必须是单线程的，与其他写操作共用，保证写入顺序
+    TodoWriteQueue(TodoDAO todoDAO, ScheduledExecutorService executor, long coalesceWindowMs,
+                   OnFlushedListener listener) {
+        this.todoDAO = todoDAO;
+        this.executor = executor;
+        this.coalesceWindowMs = coalesceWindowMs;
+        this.listener = listener;
+    }
+
+    // 取走 todo 上的修改标记并保存当前值的快照，之后对 todo 的修改不影响已加入的内容
+    public void enqueue(Todo todo) {
+        int fields = todo.takeDirtyFields();
+        if (fields == 0) {
+            return;
+        }
+        Todo snapshot = todo.copy();
+        synchronized (pending) {
+            Change previous = pending.get(todo.getId());
+            if (previous != null) {
+                fields |= previous.fields;
+            }
+            pending.put(todo.getId(), new Change(snapshot, fields));
+            if (scheduledFlush == null) {
+                scheduledFlush = executor.schedule(this::flushNow, coalesceWindowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // 丢弃该 ID 尚未写入的修改，在删除该行之前调用
+    public void discard(long id) {
+        synchronized (pending) {
+            pending.remove(id);
+        }
+    }
+
+    public boolean isEmpty() {
+        synchronized (pending) {
+            return pending.isEmpty();
+        }
+    }
+
+    // 不等合并窗口结束，立即在写线程写入；返回的 Future 完成时，调用前加入的修改都已写入或已放回队列
+    public Future<?> flush() {
+        return executor.submit(this::flushNow);
+    }
+
+    // 在写线程中调用
+    void flushNow() {
+        List<Change> batch;
+        synchronized (pending) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+
+        List<Change> applied = new ArrayList<>(batch.size());
+        try {
+            todoDAO.runInTransaction(() -> {
+                applied.clear();
+                for (Change change : batch) {
+                    change.todo.clearDirtyFields();
+                    change.todo.markDirty(change.fields);
+                    if (todoDAO.saveChanges(change.todo) > 0) {
+                        applied.add(change);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            restore(batch);
+            throw e;
+        }
+        if (listener != null && !applied.isEmpty()) {
+            listener.onFlushed(Collections.unmodifiableList(applied));
+        }
+    }
+
+    // 把写入失败的修改放回队列开头；写入期间同一 ID 又有新的修改时，以新快照的值为准，合并修改的列。
+    // 不重新安排定时写入，避免持续失败时反复重试，下一次 enqueue 或 flush 时再写入
+    private void restore(List<Change> batch) {
+        synchronized (pending) {
+            Map<Long, Change> newer = new LinkedHashMap<>(pending);
+            pending.clear();
+            for (Change change : batch) {
+                long id = change.todo.getId();
+                Change latest = newer.remove(id);
+                pending.put(id, latest != null
+                        ? new Change(latest.todo, latest.fields | change.fields)
+                        : change);
+            }
+            pending.putAll(newer);
+        }
+    }
+}
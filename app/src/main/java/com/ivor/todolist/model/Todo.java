@@ -1,20 +1,40 @@
 package com.ivor.todolist.model;
 
 import java.util.Date;
+import java.util.Objects;
 
 public class Todo {
+    // 各字段对应的修改标记，TodoDAO.saveChanges 只写回被标记的列
+    public static final int FIELD_TITLE = 1;
+    public static final int FIELD_DESCRIPTION = 1 << 1;
+    public static final int FIELD_COMPLETED = 1 << 2;
+    public static final int FIELD_CREATED_AT = 1 << 3;
+    public static final int FIELD_DUE_DATE = 1 << 4;
+    public static final int FIELD_PRIORITY = 1 << 5;
+    public static final int FIELD_CATEGORY = 1 << 6;
+    public static final int ALL_FIELDS = (1 << 7) - 1;
+
+    // 没有截止时间时 dueDate 的值。取最大值，按截止时间排序时排在最后，也不会被判为逾期；
+    // 与 TodoDatabaseHelper.EXPR_DUE_DATE_SORT 中空值的排序值一致
+    public static final long NO_DUE_DATE = Long.MAX_VALUE;
+
     private long id;
     private String title;
     private String description;
     private boolean isCompleted;
-    private Date createdAt;
-    private Date dueDate;
+    // 时间都以毫秒时间戳保存，不为每行分配 Date 对象
+    private long createdAt;
+    private long dueDate = NO_DUE_DATE;
     private int priority; // 1: 高优先级, 2: 中优先级, 3: 低优先级
     private String category;
+    // 列表查询只读出描述的开头部分；为 false 时 description 是截断的预览，完整内容由 TodoDAO.getTodoById 补全
+    private volatile boolean descriptionLoaded = true;
+    // 自上次读取或保存以来修改过的字段；setter 传入相同的值时不标记
+    private int dirtyFields;
 
     // 构造函数
     public Todo() {
-        this.createdAt = new Date();
+        this.createdAt = System.currentTimeMillis();
         this.isCompleted = false;
         this.priority = 2; // 默认中优先级
     }
@@ -25,12 +45,16 @@ public class Todo {
         this.description = description;
     }
 
-    public Todo(String title, String description, Date dueDate, int priority) {
+    public Todo(String title, String description, long dueDate, int priority) {
         this(title, description);
         this.dueDate = dueDate;
         this.priority = priority;
     }
 
+    public Todo(String title, String description, Date dueDate, int priority) {
+        this(title, description, dueDate != null ? dueDate.getTime() : NO_DUE_DATE, priority);
+    }
+
     // Getter 和 Setter 方法
     public long getId() {
         return id;
@@ -45,6 +69,9 @@ public class Todo {
     }
 
     public void setTitle(String title) {
+        if (!Objects.equals(this.title, title)) {
+            markDirty(FIELD_TITLE);
+        }
         this.title = title;
     }
 
@@ -52,8 +79,30 @@ public class Todo {
         return description;
     }
 
-    public void setDescription(String description) {
+    public synchronized void setDescription(String description) {
+        if (!descriptionLoaded || !Objects.equals(this.description, description)) {
+            markDirty(FIELD_DESCRIPTION);
+        }
         this.description = description;
+        descriptionLoaded = true;
+    }
+
+    public boolean isDescriptionLoaded() {
+        return descriptionLoaded;
+    }
+
+    // 读取路径：设置截断的描述预览，不标记修改
+    public synchronized void setDescriptionPreview(String preview) {
+        description = preview;
+        descriptionLoaded = false;
+    }
+
+    // 读取路径：补全完整描述，不标记修改；期间已被 setDescription 修改时保留修改后的值
+    public synchronized void completeDescription(String description) {
+        if (!descriptionLoaded) {
+            this.description = description;
+            descriptionLoaded = true;
+        }
     }
 
     public boolean isCompleted() {
@@ -61,30 +110,65 @@ public class Todo {
     }
 
     public void setCompleted(boolean completed) {
+        if (isCompleted != completed) {
+            markDirty(FIELD_COMPLETED);
+        }
         isCompleted = completed;
     }
 
-    public Date getCreatedAt() {
+    public long getCreatedAtMillis() {
         return createdAt;
     }
 
-    public void setCreatedAt(Date createdAt) {
+    public void setCreatedAtMillis(long createdAt) {
+        if (this.createdAt != createdAt) {
+            markDirty(FIELD_CREATED_AT);
+        }
         this.createdAt = createdAt;
     }
 
-    public Date getDueDate() {
+    // 没有截止时间时返回 NO_DUE_DATE
+    public long getDueDateMillis() {
         return dueDate;
     }
 
-    public void setDueDate(Date dueDate) {
+    public void setDueDateMillis(long dueDate) {
+        if (this.dueDate != dueDate) {
+            markDirty(FIELD_DUE_DATE);
+        }
         this.dueDate = dueDate;
     }
 
+    public boolean hasDueDate() {
+        return dueDate != NO_DUE_DATE;
+    }
+
+    // 以下 Date 访问方法供界面与旧代码使用，每次调用都会创建新的 Date，修改返回的对象不影响 Todo
+    public Date getCreatedAt() {
+        return new Date(createdAt);
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        setCreatedAtMillis(createdAt.getTime());
+    }
+
+    // 没有截止时间时返回 null
+    public Date getDueDate() {
+        return hasDueDate() ? new Date(dueDate) : null;
+    }
+
+    public void setDueDate(Date dueDate) {
+        setDueDateMillis(dueDate != null ? dueDate.getTime() : NO_DUE_DATE);
+    }
+
     public int getPriority() {
         return priority;
     }
 
     public void setPriority(int priority) {
+        if (this.priority != priority) {
+            markDirty(FIELD_PRIORITY);
+        }
         this.priority = priority;
     }
 
@@ -93,15 +177,60 @@ public class Todo {
     }
 
     public void setCategory(String category) {
+        if (!Objects.equals(this.category, category)) {
+            markDirty(FIELD_CATEGORY);
+        }
         this.category = category;
     }
 
+    // 修改标记：UI 线程修改字段，写线程保存时取走标记，两边可能同时访问，因此加锁
+    public synchronized boolean hasChanges() {
+        return dirtyFields != 0;
+    }
+
+    public synchronized int getDirtyFields() {
+        return dirtyFields;
+    }
+
+    public synchronized void markDirty(int fields) {
+        dirtyFields |= fields;
+    }
+
+    // 返回当前的修改标记并清空；保存失败时调用 markDirty 放回
+    public synchronized int takeDirtyFields() {
+        int fields = dirtyFields;
+        dirtyFields = 0;
+        return fields;
+    }
+
+    public synchronized void clearDirtyFields() {
+        dirtyFields = 0;
+    }
+
+    // 返回字段相同的新对象，不带修改标记；描述是预览时副本也是预览。
+    // 缓存和写入队列各自保存副本，界面修改自己持有的对象不会影响它们
+    public synchronized Todo copy() {
+        Todo copy = new Todo();
+        copy.id = id;
+        copy.title = title;
+        copy.description = description;
+        copy.descriptionLoaded = descriptionLoaded;
+        copy.isCompleted = isCompleted;
+        copy.createdAt = createdAt;
+        copy.dueDate = dueDate;
+        copy.priority = priority;
+        copy.category = category;
+        return copy;
+    }
+
     // 工具方法
     public boolean isOverdue() {
-        if (dueDate == null || isCompleted) {
-            return false;
-        }
-        return new Date().after(dueDate);
+        return isOverdue(System.currentTimeMillis());
+    }
+
+    // 没有截止时间时 dueDate 为最大值，不会小于 now
+    public boolean isOverdue(long now) {
+        return !isCompleted && now > dueDate;
     }
 
     public String getPriorityText() {
@@ -124,8 +253,8 @@ public class Todo {
                 ", title='" + title + '\'' +
                 ", description='" + description + '\'' +
                 ", isCompleted=" + isCompleted +
-                ", createdAt=" + createdAt +
-                ", dueDate=" + dueDate +
+                ", createdAt=" + getCreatedAt() +
+                ", dueDate=" + getDueDate() +
                 ", priority=" + priority +
                 ", category='" + category + '\'' +
                 '}';
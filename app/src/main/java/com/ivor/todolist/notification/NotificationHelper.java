@@ -1,12 +1,13 @@
 package com.ivor.todolist.notification;
 
-import android.app.AlarmManager;
+import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.service.notification.StatusBarNotification;
 
 import androidx.core.app.NotificationCompat;
 
@@ -14,22 +15,47 @@ import com.ivor.todolist.MainActivity;
 import com.ivor.todolist.R;
 import com.ivor.todolist.model.Todo;
 
-import java.util.Date;
+import java.util.Collections;
+import java.util.List;
 
+// 提醒通知的显示；何时提醒由 ReminderScheduler 决定。
+// 每个进程一个实例，通知渠道只在创建实例时注册一次，点击通知打开主界面的 PendingIntent 也只创建一次
 public class NotificationHelper {
     private static final String CHANNEL_ID = "todo_reminder_channel";
     private static final String CHANNEL_NAME = "Todo提醒";
     private static final String CHANNEL_DESCRIPTION = "Todo任务截止时间提醒";
+    private static final String GROUP_KEY = "com.ivor.todolist.REMINDERS";
+    // 单独的提醒以 Todo ID 为通知 ID，摘要使用另一个标签，二者不会冲突
+    private static final String TAG_REMINDER = "reminder";
+    private static final String TAG_SUMMARY = "reminder_summary";
     
-    private Context context;
-    private NotificationManager notificationManager;
-    private AlarmManager alarmManager;
+    private static NotificationHelper instance;
     
-    public NotificationHelper(Context context) {
+    private final Context context;
+    private final NotificationManager notificationManager;
+    private final PendingIntent contentIntent;
+    private final ReminderNotificationPlanner planner = new ReminderNotificationPlanner();
+    
+    public static synchronized NotificationHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new NotificationHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+    
+    private NotificationHelper(Context context) {
         this.context = context;
         this.notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         createNotificationChannel();
+        
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        contentIntent = PendingIntent.getActivity(
+            context,
+            0,
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
     }
     
     private void createNotificationChannel() {
@@ -44,81 +70,76 @@ public class NotificationHelper {
         }
     }
     
-    public void scheduleNotification(Todo todo) {
-        if (todo.getDueDate() == null) {
-            return;
+    // 送达一批到期提醒。单独的提醒归入同一组，数量超出限制的并入摘要（见 ReminderNotificationPlanner）；
+    // 同一批只查询一次当前显示的通知。返回本秒内发布次数已用完、没有显示的提醒（保持传入的顺序），
+    // 调用方应在 ReminderNotificationPlanner.RATE_WINDOW_MS 之后重新送达
+    public List<Todo> showReminders(List<Todo> todos) {
+        if (todos.isEmpty()) {
+            return Collections.emptyList();
         }
-        
-        // 提前15分钟提醒
-        long reminderTime = todo.getDueDate().getTime() - (15 * 60 * 1000);
-        
-        // 如果提醒时间已经过了，就不设置提醒
-        if (reminderTime <= System.currentTimeMillis()) {
-            return;
+        int liveCount = 0;
+        boolean summaryShown = false;
+        for (StatusBarNotification notification : notificationManager.getActiveNotifications()) {
+            if (TAG_REMINDER.equals(notification.getTag())) {
+                liveCount++;
+            } else if (TAG_SUMMARY.equals(notification.getTag())) {
+                summaryShown = true;
+            }
         }
         
-        Intent intent = new Intent(context, NotificationReceiver.class);
-        intent.putExtra("todo_id", todo.getId());
-        intent.putExtra("todo_title", todo.getTitle());
-        intent.putExtra("todo_description", todo.getDescription());
-        
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-            context,
-            (int) todo.getId(),
-            intent,
-            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-        
-        if (alarmManager != null) {
-            alarmManager.setExact(AlarmManager.RTC_WAKEUP, reminderTime, pendingIntent);
+        ReminderNotificationPlanner.Plan plan;
+        synchronized (planner) {
+            plan = planner.plan(todos, liveCount, summaryShown, System.currentTimeMillis());
         }
-    }
-    
-    public void cancelNotification(long todoId) {
-        Intent intent = new Intent(context, NotificationReceiver.class);
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-            context,
-            (int) todoId,
-            intent,
-            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-        
-        if (alarmManager != null) {
-            alarmManager.cancel(pendingIntent);
+        for (Todo todo : plan.individual) {
+            notificationManager.notify(TAG_REMINDER, (int) todo.getId(), buildReminder(todo));
+        }
+        if (plan.postSummary) {
+            notificationManager.notify(TAG_SUMMARY, 0, buildSummary(plan));
         }
+        return plan.deferred;
     }
     
-    public void showNotification(long todoId, String title, String description) {
-        Intent intent = new Intent(context, MainActivity.class);
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        
-        PendingIntent pendingIntent = PendingIntent.getActivity(
-            context,
-            0,
-            intent,
-            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-        
+    private Notification buildReminder(Todo todo) {
+        String description = todo.getDescription();
+        boolean hasDescription = description != null && !description.isEmpty();
         NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
             .setSmallIcon(R.drawable.ic_schedule)
-            .setContentTitle("Todo提醒: " + title)
-            .setContentText(description != null && !description.isEmpty() ? description : "任务即将到期")
+            .setContentTitle("Todo提醒: " + todo.getTitle())
+            .setContentText(hasDescription ? description : "任务即将到期")
             .setPriority(NotificationCompat.PRIORITY_DEFAULT)
-            .setContentIntent(pendingIntent)
+            .setContentIntent(contentIntent)
             .setAutoCancel(true)
+            .setGroup(GROUP_KEY)
             .setStyle(new NotificationCompat.BigTextStyle()
-                .bigText(description != null && !description.isEmpty() ? description : "任务即将到期，请及时处理。"));
-        
-        notificationManager.notify((int) todoId, builder.build());
+                .bigText(hasDescription ? description : "任务即将到期，请及时处理。"));
+        return builder.build();
     }
     
-    public void updateNotification(Todo todo) {
-        // 先取消旧的通知
-        cancelNotification(todo.getId());
-        
-        // 如果任务未完成且有截止时间，重新设置通知
-        if (!todo.isCompleted() && todo.getDueDate() != null) {
-            scheduleNotification(todo);
+    private Notification buildSummary(ReminderNotificationPlanner.Plan plan) {
+        String title = plan.totalCount + " 个任务即将到期";
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle()
+            .setBigContentTitle(title);
+        for (String line : plan.summaryLines) {
+            style.addLine(line);
+        }
+        int unlisted = plan.overflowCount - plan.summaryLines.size();
+        if (unlisted > 0) {
+            style.setSummaryText("还有 " + unlisted + " 个");
         }
+        
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+            .setSmallIcon(R.drawable.ic_schedule)
+            .setContentTitle("Todo提醒")
+            .setContentText(title)
+            .setPriority(NotificationCompat.PRIORITY_DEFAULT)
+            .setContentIntent(contentIntent)
+            .setAutoCancel(true)
+            .setGroup(GROUP_KEY)
+            .setGroupSummary(true)
+            // 更新摘要时不再重复提示音
+            .setOnlyAlertOnce(true)
+            .setStyle(style);
+        return builder.build();
     }
-}
\ No newline at end of file
+}
@@ -4,17 +4,13 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 
+// 提醒闹钟的接收者：送达所有到期的提醒并设置下一个闹钟。数据库查询在调度线程上进行，
+// 通过 goAsync 让广播在处理完成前保持活动
 public class NotificationReceiver extends BroadcastReceiver {
-    
+
     @Override
     public void onReceive(Context context, Intent intent) {
-        long todoId = intent.getLongExtra("todo_id", -1);
-        String todoTitle = intent.getStringExtra("todo_title");
-        String todoDescription = intent.getStringExtra("todo_description");
-        
-        if (todoId != -1 && todoTitle != null) {
-            NotificationHelper notificationHelper = new NotificationHelper(context);
-            notificationHelper.showNotification(todoId, todoTitle, todoDescription);
-        }
+        PendingResult pendingResult = goAsync();
+        ReminderScheduler.getInstance(context).onAlarm(pendingResult::finish);
     }
-}
\ No newline at end of file
+}
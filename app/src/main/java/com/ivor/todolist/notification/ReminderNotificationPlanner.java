@@ -0,0 +1,93 @@
+package com.ivor.todolist.notification;
+
+import com.ivor.todolist.model.Todo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// 决定一批到期提醒如何显示：哪些单独发通知，哪些只并入同组的摘要通知。
+// 单独的提醒通知同时最多 MAX_LIVE 条，超出的部分并入摘要；每秒最多发布 MAX_POSTS_PER_SECOND 次
+// （系统会丢弃超出频率的通知），本秒内已不能发布的提醒交还调用方，在下一个窗口重新送达。
+// 不依赖 Android 类，由 NotificationHelper 加锁调用
+final class ReminderNotificationPlanner {
+    static final int MAX_LIVE = 8;
+    static final int MAX_POSTS_PER_SECOND = 5;
+    // 摘要的 InboxStyle 最多列出的标题数，其余只计入数量
+    static final int MAX_SUMMARY_LINES = 5;
+    static final long RATE_WINDOW_MS = 1000;
+
+    // 已显示在摘要中的提醒标题，最新的在前；只保留能显示的行数
+    private final ArrayDeque<String> overflowTitles = new ArrayDeque<>();
+    private int overflowCount;
+    // 摘要发布后才能根据它是否还在判断用户已清除
+    private boolean summaryPosted;
+    private long windowStart;
+    private int postsInWindow;
+
+    static final class Plan {
+        // 单独发布的提醒
+        final List<Todo> individual = new ArrayList<>();
+        // 本秒内已不能发布、没有显示的提醒，保持 due 中的顺序；不记入摘要，由调用方在下一个窗口重新送达
+        final List<Todo> deferred = new ArrayList<>();
+        // 是否发布（或更新）摘要
+        boolean postSummary;
+        // 摘要列出的标题，最新的在前
+        final List<String> summaryLines = new ArrayList<>();
+        // 只在摘要中的提醒数，包括未列出标题的
+        int overflowCount;
+        // 摘要代表的提醒总数：仍显示的单独提醒加上并入摘要的
+        int totalCount;
+    }
+
+    // liveCount：当前仍显示的单独提醒数；summaryShown：摘要是否仍显示
+    Plan plan(List<Todo> due, int liveCount, boolean summaryShown, long now) {
+        // 时钟被调回时也重新开始计数
+        if (now < windowStart || now - windowStart >= RATE_WINDOW_MS) {
+            windowStart = now;
+            postsInWindow = 0;
+        }
+        // 用户清除了摘要，摘要中显示过的提醒视为已读
+        if (summaryPosted && !summaryShown) {
+            overflowTitles.clear();
+            overflowCount = 0;
+            summaryPosted = false;
+        }
+
+        Plan plan = new Plan();
+        int budget = MAX_POSTS_PER_SECOND - postsInWindow;
+        boolean needsSummary = overflowCount > 0 || liveCount + due.size() >= 2;
+        // 需要摘要时为它预留一次发布
+        int individual = Math.min(due.size(), Math.min(MAX_LIVE - liveCount, budget - (needsSummary ? 1 : 0)));
+        individual = Math.max(individual, 0);
+        // 发布次数用完时摘要也不能发布，剩下的提醒一条都不会显示，不能只记在内存里
+        plan.postSummary = needsSummary && individual < budget;
+        for (int i = 0; i < due.size(); i++) {
+            Todo todo = due.get(i);
+            if (i < individual) {
+                plan.individual.add(todo);
+            } else if (plan.postSummary) {
+                overflowTitles.addFirst(todo.getTitle());
+                overflowCount++;
+            } else {
+                plan.deferred.add(todo);
+            }
+        }
+        while (overflowTitles.size() > MAX_SUMMARY_LINES) {
+            overflowTitles.removeLast();
+        }
+        postsInWindow += individual;
+        if (plan.postSummary) {
+            postsInWindow++;
+            summaryPosted = true;
+        }
+        Iterator<String> titles = overflowTitles.iterator();
+        while (titles.hasNext()) {
+            plan.summaryLines.add(titles.next());
+        }
+        plan.overflowCount = overflowCount;
+        plan.totalCount = liveCount + individual + overflowCount;
+        return plan;
+    }
+}
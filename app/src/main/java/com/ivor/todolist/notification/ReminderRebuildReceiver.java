@@ -0,0 +1,25 @@
+package com.ivor.todolist.notification;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+// 重启、系统时间或时区改变、应用更新后重新设置提醒闹钟。这些广播只能由系统发送。
+// 重新设置只做一次索引查询，通过 goAsync 放到调度线程上，不阻塞主线程
+public class ReminderRebuildReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (!Intent.ACTION_BOOT_COMPLETED.equals(action) &&
+                !Intent.ACTION_TIME_CHANGED.equals(action) &&
+                !Intent.ACTION_TIMEZONE_CHANGED.equals(action) &&
+                !Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
+            return;
+        }
+        PendingResult pendingResult = goAsync();
+        // 时区改变不影响毫秒时间戳，只有手动修改时间可能把时钟调回
+        ReminderScheduler.getInstance(context).rebuild(Intent.ACTION_TIME_CHANGED.equals(action),
+                pendingResult::finish);
+    }
+}
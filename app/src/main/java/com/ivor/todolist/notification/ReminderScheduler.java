@@ -0,0 +1,164 @@
+package com.ivor.todolist.notification;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+
+import com.ivor.todolist.database.TodoDAO;
+import com.ivor.todolist.model.Todo;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 截止提醒的调度。任何时候只设置一个闹钟，对应下一个待送达的提醒；闹钟触发后送达所有已到时间的提醒
+// （同一分钟内的合并为一次唤醒），再设置下一个。待提醒的 Todo 按截止时间从索引上范围查询，
+// 不再为每个 Todo 注册一个以 ID 为请求码的闹钟。
+// 已处理到的提醒时间保存在 SharedPreferences 中，之前的提醒不会重复送达；截止时间已过的任务不再提醒
+public class ReminderScheduler {
+    // 提前15分钟提醒
+    public static final long REMINDER_LEAD_MS = 15 * 60 * 1000;
+    private static final long MINUTE_MS = 60 * 1000;
+    private static final String PREFS_NAME = "reminders";
+    // 提醒时间早于该值的提醒都已送达或跳过
+    private static final String KEY_HANDLED_UNTIL = "handled_until";
+
+    private static ReminderScheduler instance;
+
+    private final Context context;
+    // 重新计算和送达都在这个线程上依次执行，不会互相交错
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // 创建时要读取 SharedPreferences、注册通知渠道，放在调度线程的第一个任务中完成，
+    // getInstance 和 reschedule 可以在主线程（如 Application.onCreate）调用。只在调度线程上访问
+    private TodoDAO todoDAO;
+    private NotificationHelper notificationHelper;
+    private AlarmManager alarmManager;
+    private SharedPreferences preferences;
+    // 已提交、尚未开始执行的重新计算，期间的其他请求直接合并
+    private final AtomicBoolean reschedulePending = new AtomicBoolean();
+
+    public static synchronized ReminderScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReminderScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ReminderScheduler(Context context) {
+        this.context = context;
+        executor.execute(() -> {
+            todoDAO = new TodoDAO(context);
+            notificationHelper = NotificationHelper.getInstance(context);
+            alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        });
+    }
+
+    // Todo 增删、截止时间或完成状态变化后调用，按数据库中的当前状态重新设置闹钟。
+    // 可在任意线程调用，查询在调度线程上执行
+    public void reschedule() {
+        if (reschedulePending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                reschedulePending.set(false);
+                long now = System.currentTimeMillis();
+                armNext(now, now);
+            });
+        }
+    }
+
+    // 闹钟触发时调用：送达到当前这一分钟结束为止的所有提醒，再设置下一个闹钟。完成后在调度线程上调用 onDone
+    void onAlarm(Runnable onDone) {
+        executor.execute(() -> {
+            try {
+                long now = System.currentTimeMillis();
+                armNext(now, deliverDue(now));
+            } finally {
+                onDone.run();
+            }
+        });
+    }
+
+    // 重启后闹钟全部丢失，需要重新设置；系统时间被修改后已设置的触发时间也不再可靠。只查询下一个截止时间，
+    // 不需要遍历所有 Todo，与任务数量无关。clockMovedBack 为 true 时，晚于当前时间的已处理时间回退到当前时间，
+    // 否则时钟调回的这段时间内的提醒都会被跳过。完成后在调度线程上调用 onDone
+    void rebuild(boolean clockMovedBack, Runnable onDone) {
+        executor.execute(() -> {
+            try {
+                long now = System.currentTimeMillis();
+                if (clockMovedBack && preferences.getLong(KEY_HANDLED_UNTIL, -1) > now) {
+                    preferences.edit().putLong(KEY_HANDLED_UNTIL, now).apply();
+                }
+                armNext(now, now);
+            } finally {
+                onDone.run();
+            }
+        });
+    }
+
+    // 返回下一个闹钟最早的触发时间：有提醒因通知发布频率受限没有显示时，为频率窗口结束之后，否则为 now
+    private long deliverDue(long now) {
+        long from = handledUntil(now);
+        // 同一分钟内稍后的提醒一起送达，不再为它们单独唤醒
+        long until = (now / MINUTE_MS + 1) * MINUTE_MS;
+        if (until <= from) {
+            return now;
+        }
+        List<Todo> due = todoDAO.getOpenTodosDueBetween(from + REMINDER_LEAD_MS, until + REMINDER_LEAD_MS);
+        // 查询结果就是送达时数据库中的内容：已完成或已删除的不在其中，标题和描述是最新的
+        List<Todo> deferred = notificationHelper.showReminders(due);
+        long handled;
+        if (!deferred.isEmpty()) {
+            // 没有显示的提醒只停在已处理时间之后，由下一个闹钟重新查询送达；进程在此之前被结束也不会丢失
+            handled = deferred.get(0).getDueDateMillis() - REMINDER_LEAD_MS;
+        } else {
+            // 只推进到实际送达的范围：当前时间，或提前送达的最后一个提醒之后。不直接推进到 until，
+            // 否则这一分钟内稍后新增、提醒时间也在这一分钟内的任务不会再被查询到
+            handled = Math.max(from, now);
+            if (!due.isEmpty()) {
+                handled = Math.max(handled, due.get(due.size() - 1).getDueDateMillis() - REMINDER_LEAD_MS + 1);
+            }
+        }
+        preferences.edit().putLong(KEY_HANDLED_UNTIL, handled).apply();
+        return deferred.isEmpty() ? now : now + ReminderNotificationPlanner.RATE_WINDOW_MS;
+    }
+
+    // notBefore：闹钟最早的触发时间，不早于 now
+    private void armNext(long now, long notBefore) {
+        PendingIntent pendingIntent = getAlarmIntent();
+        if (alarmManager == null) {
+            return;
+        }
+        long nextDueDate = todoDAO.getNextOpenDueDate(handledUntil(now) + REMINDER_LEAD_MS);
+        if (nextDueDate == Todo.NO_DUE_DATE) {
+            alarmManager.cancel(pendingIntent);
+            return;
+        }
+        // 提醒时间已到但尚未送达（如刚添加的任务）时立即触发。同一个 PendingIntent 会替换之前的闹钟
+        long triggerAt = Math.max(nextDueDate - REMINDER_LEAD_MS, notBefore);
+        alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+    }
+
+    // 尚未处理的最早提醒时间。首次使用时从当前时间开始；不早于 now - REMINDER_LEAD_MS，即截止时间已过的不再提醒
+    private long handledUntil(long now) {
+        long handledUntil = preferences.getLong(KEY_HANDLED_UNTIL, -1);
+        if (handledUntil < 0) {
+            preferences.edit().putLong(KEY_HANDLED_UNTIL, now).apply();
+            return now;
+        }
+        return Math.max(handledUntil, now - REMINDER_LEAD_MS);
+    }
+
+    // 唯一的提醒闹钟，固定请求码，不携带 Todo 的数据，触发时从数据库读取
+    private PendingIntent getAlarmIntent() {
+        Intent intent = new Intent(context, NotificationReceiver.class);
+        return PendingIntent.getBroadcast(
+            context,
+            0,
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+    }
+}
@@ -0,0 +1,95 @@
+package com.ivor.todolist.adapter;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * LongIntMap 与 HashMap 在随机的插入、覆盖、删除序列下结果一致。
+ */
+public class LongIntMapTest {
+
+    @Test
+    public void basicOperations() {
+        LongIntMap map = new LongIntMap();
+        assertEquals(LongIntMap.NOT_FOUND, map.get(1));
+
+        map.put(1, 10);
+        map.put(0, 0);
+        map.put(-5, 7);
+        assertEquals(3, map.size());
+        assertEquals(10, map.get(1));
+        assertEquals(0, map.get(0));
+        assertEquals(7, map.get(-5));
+
+        map.put(1, 11);
+        assertEquals(3, map.size());
+        assertEquals(11, map.get(1));
+
+        assertEquals(11, map.remove(1));
+        assertEquals(LongIntMap.NOT_FOUND, map.remove(1));
+        assertFalse(map.containsKey(1));
+        assertEquals(2, map.size());
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(LongIntMap.NOT_FOUND, map.get(0));
+    }
+
+    @Test
+    public void randomOperations_matchHashMap() {
+        Random random = new Random(42);
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<>();
+
+        for (int step = 0; step < 200_000; step++) {
+            // 键的范围较小，制造大量冲突以及删除后再插入的情况
+            long key = random.nextInt(2_000) - 100;
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                int value = random.nextInt(Integer.MAX_VALUE);
+                map.put(key, value);
+                expected.put(key, value);
+            } else if (operation < 9) {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? LongIntMap.NOT_FOUND : removed, map.remove(key));
+            } else if (random.nextInt(1_000) == 0) {
+                map.clear();
+                expected.clear();
+            }
+
+            if (step % 1_000 == 0) {
+                assertSameContents(expected, map);
+            }
+        }
+        assertSameContents(expected, map);
+    }
+
+    @Test
+    public void sequentialIds_growAndShrink() {
+        LongIntMap map = new LongIntMap();
+        for (int i = 1; i <= 100_000; i++) {
+            map.put(i, i - 1);
+        }
+        assertEquals(100_000, map.size());
+        for (int i = 1; i <= 100_000; i += 2) {
+            assertEquals(i - 1, map.remove(i));
+        }
+        assertEquals(50_000, map.size());
+        for (int i = 1; i <= 100_000; i++) {
+            assertEquals(i % 2 == 0 ? i - 1 : LongIntMap.NOT_FOUND, map.get(i));
+        }
+    }
+
+    private static void assertSameContents(Map<Long, Integer> expected, LongIntMap map) {
+        assertEquals(expected.size(), map.size());
+        for (long key = -100; key < 1_900; key++) {
+            Integer value = expected.get(key);
+            assertEquals("key " + key, value == null ? LongIntMap.NOT_FOUND : value, map.get(key));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.ivor.todolist.adapter;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 随机执行追加、前插、插入、替换（筛选/排序后重新加载）、修改和删除，TodoWindow 的 ID 索引始终与线性查找一致。
+ */
+public class TodoWindowTest {
+    private long nextId = 1;
+
+    @Test
+    public void indexOfId_tracksPositions() {
+        TodoWindow window = new TodoWindow();
+        TodoRow a = newRow();
+        TodoRow b = newRow();
+        TodoRow c = newRow();
+        window.addAll(Arrays.asList(a, b));
+        window.prependAll(Arrays.asList(c));
+
+        assertEquals(0, window.indexOfId(c.id));
+        assertEquals(1, window.indexOfId(a.id));
+        assertEquals(2, window.indexOfId(b.id));
+
+        window.remove(1);
+        assertEquals(-1, window.indexOfId(a.id));
+        assertEquals(1, window.indexOfId(b.id));
+    }
+
+    @Test
+    public void randomOperations_keepIndexConsistent() {
+        Random random = new Random(7);
+        TodoWindow window = new TodoWindow();
+        List<TodoRow> expected = new ArrayList<>();
+        List<TodoRow> removed = new ArrayList<>();
+
+        for (int step = 0; step < 20_000; step++) {
+            int operation = random.nextInt(8);
+            switch (operation) {
+                case 0: {
+                    List<TodoRow> page = page(random.nextInt(20));
+                    window.addAll(page);
+                    expected.addAll(page);
+                    break;
+                }
+                case 1: {
+                    List<TodoRow> page = page(random.nextInt(20));
+                    window.prependAll(page);
+                    expected.addAll(0, page);
+                    break;
+                }
+                case 2: {
+                    // 筛选或排序后重新加载：部分旧条目以新的顺序出现，并混入新条目
+                    List<TodoRow> reloaded = new ArrayList<>();
+                    for (TodoRow row : expected) {
+                        if (random.nextBoolean()) {
+                            reloaded.add(row);
+                        }
+                    }
+                    reloaded.addAll(page(random.nextInt(10)));
+                    Collections.shuffle(reloaded, random);
+                    for (TodoRow row : expected) {
+                        if (!reloaded.contains(row)) {
+                            removed.add(row);
+                        }
+                    }
+                    window.replaceAll(reloaded);
+                    expected.clear();
+                    expected.addAll(reloaded);
+                    break;
+                }
+                case 3: {
+                    if (!expected.isEmpty()) {
+                        int index = random.nextInt(expected.size());
+                        // 更新为同一 ID 的新对象
+                        TodoRow updated = copyOf(expected.get(index));
+                        window.set(index, updated);
+                        expected.set(index, updated);
+                    }
+                    break;
+                }
+                case 4: {
+                    if (!expected.isEmpty()) {
+                        int index = random.nextInt(expected.size());
+                        assertSame(expected.get(index), window.remove(index));
+                        removed.add(expected.remove(index));
+                    }
+                    break;
+                }
+                case 5: {
+                    // 观察到的新行插入到排序位置
+                    int index = random.nextInt(expected.size() + 1);
+                    TodoRow row = newRow();
+                    window.add(index, row);
+                    expected.add(index, row);
+                    break;
+                }
+                default: {
+                    if (!expected.isEmpty()) {
+                        int from = random.nextInt(expected.size());
+                        int to = from + random.nextInt(expected.size() - from + 1);
+                        window.removeRange(from, to);
+                        List<TodoRow> range = expected.subList(from, to);
+                        removed.addAll(range);
+                        range.clear();
+                    }
+                    break;
+                }
+            }
+            // 控制规模，避免窗口无限增长
+            if (expected.size() > 300) {
+                window.removeRange(0, 100);
+                List<TodoRow> range = expected.subList(0, 100);
+                removed.addAll(range);
+                range.clear();
+            }
+            assertConsistent(expected, removed, window);
+        }
+    }
+
+    private static void assertConsistent(List<TodoRow> expected, List<TodoRow> removed, TodoWindow window) {
+        assertEquals(expected.size(), window.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), window.get(i));
+            assertEquals(i, window.indexOfId(expected.get(i).id));
+        }
+        // 只检查最近删除的条目，保持测试耗时可控
+        for (int i = Math.max(0, removed.size() - 50); i < removed.size(); i++) {
+            assertEquals(-1, window.indexOfId(removed.get(i).id));
+        }
+    }
+
+    private List<TodoRow> page(int size) {
+        List<TodoRow> page = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            page.add(newRow());
+        }
+        return page;
+    }
+
+    private TodoRow newRow() {
+        Todo todo = new Todo("Todo " + nextId, null);
+        todo.setId(nextId++);
+        return row(todo);
+    }
+
+    private static TodoRow copyOf(TodoRow row) {
+        Todo copy = new Todo(row.title, row.description);
+        copy.setId(row.id);
+        copy.setCompleted(!row.completed);
+        return row(copy);
+    }
+
+    private static TodoRow row(Todo todo) {
+        return new TodoRow(todo, null, false, null, null, null);
+    }
+}
@@ -0,0 +1,433 @@
+package com.ivor.todolist.database;
+
+import android.content.ContentResolver;
+import android.database.CharArrayBuffer;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在 100k 行的内存 Cursor 上对比逐行按列名查找下标（原 cursorToTodo 的做法）与 TodoRowMapper 的转换吞吐量（行/秒），
+ * 每种方式取各轮中最快的一次，由 ThroughputReport 写入 build/reports/benchmarks；同时检查两种方式转换出的字段一致。
+ */
+public class TodoRowMapperBenchmarkTest {
+    private static final int ROW_COUNT = 100_000;
+    private static final int BUFFER_SIZE = 256;
+    private static final int ROUNDS = 5;
+    private static final String[] COLUMNS = {
+            TodoDatabaseHelper.COLUMN_ID,
+            TodoDatabaseHelper.COLUMN_TITLE,
+            TodoDatabaseHelper.COLUMN_DESCRIPTION,
+            TodoDatabaseHelper.COLUMN_IS_COMPLETED,
+            TodoDatabaseHelper.COLUMN_CREATED_AT,
+            TodoDatabaseHelper.COLUMN_DUE_DATE,
+            TodoDatabaseHelper.COLUMN_PRIORITY,
+            TodoDatabaseHelper.COLUMN_CATEGORY_ID
+    };
+
+    @Rule
+    public final ThroughputReport report = new ThroughputReport(new File("build/reports/benchmarks"));
+
+    private final TodoCategories categories = newCategories();
+    private final ArrayCursor cursor = newCursor();
+
+    @Test
+    public void mapper_matchesPerRowLookup() {
+        TodoRowMapper mapper = new TodoRowMapper(cursor, categories, false);
+        Todo[] buffer = new Todo[BUFFER_SIZE];
+        cursor.moveToPosition(-1);
+        int read;
+        int position = 0;
+        while ((read = mapper.readInto(cursor, buffer)) > 0) {
+            for (int i = 0; i < read; i++, position++) {
+                ArrayCursor single = cursor.at(position);
+                assertSameFields(mapRowByName(single), buffer[i]);
+                assertSameFields(mapRowByName(single), mapper.map(single));
+                assertFalse(buffer[i].hasChanges());
+            }
+        }
+        assertEquals(ROW_COUNT, position);
+    }
+
+    @Test
+    public void throughput_perRowLookupVersusMapper() {
+        for (int round = 0; round < ROUNDS; round++) {
+            long checksum = 0;
+            long start = System.nanoTime();
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                checksum += mapRowByName(cursor).getPriority();
+            }
+            report.record("per-row lookup", ROW_COUNT, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            cursor.moveToPosition(-1);
+            TodoRowMapper mapper = new TodoRowMapper(cursor, categories, false);
+            while (cursor.moveToNext()) {
+                checksum -= mapper.map(cursor).getPriority();
+            }
+            report.record("TodoRowMapper.map", ROW_COUNT, System.nanoTime() - start);
+            assertEquals(0, checksum);
+
+            start = System.nanoTime();
+            cursor.moveToPosition(-1);
+            mapper = new TodoRowMapper(cursor, categories, false);
+            Todo[] buffer = new Todo[BUFFER_SIZE];
+            int total = 0;
+            int read;
+            while ((read = mapper.readInto(cursor, buffer)) > 0) {
+                total += read;
+            }
+            report.record("TodoRowMapper.readInto", ROW_COUNT, System.nanoTime() - start);
+            assertEquals(ROW_COUNT, total);
+        }
+    }
+
+    // 原 TodoDAO.cursorToTodo 的转换方式：每行每列按列名查找下标，每行新建 Date
+    private Todo mapRowByName(Cursor cursor) {
+        Todo todo = new Todo();
+        todo.setId(cursor.getLong(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_ID)));
+        todo.setTitle(cursor.getString(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_TITLE)));
+        todo.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_DESCRIPTION)));
+        todo.setCompleted(cursor.getInt(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_IS_COMPLETED)) == 1);
+        todo.setCreatedAt(new Date(cursor.getLong(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_CREATED_AT))));
+        long dueDateLong = cursor.getLong(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_DUE_DATE));
+        if (dueDateLong > 0) {
+            todo.setDueDate(new Date(dueDateLong));
+        }
+        todo.setPriority(cursor.getInt(cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_PRIORITY)));
+        int categoryIndex = cursor.getColumnIndexOrThrow(TodoDatabaseHelper.COLUMN_CATEGORY_ID);
+        if (!cursor.isNull(categoryIndex)) {
+            todo.setCategory(categories.nameOf(cursor.getLong(categoryIndex)));
+        }
+        todo.clearDirtyFields();
+        return todo;
+    }
+
+    private static void assertSameFields(Todo expected, Todo actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.isCompleted(), actual.isCompleted());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getDueDate(), actual.getDueDate());
+        assertEquals(expected.getPriority(), actual.getPriority());
+        assertEquals(expected.getCategory(), actual.getCategory());
+    }
+
+    // 分类字典预先登记，nameOf 不访问数据库
+    private static TodoCategories newCategories() {
+        TodoCategories categories = new TodoCategories(null);
+        for (int i = 1; i <= 10; i++) {
+            categories.register(i, "category " + i);
+        }
+        return categories;
+    }
+
+    private static ArrayCursor newCursor() {
+        long now = 1_700_000_000_000L;
+        Object[][] rows = new Object[ROW_COUNT][];
+        for (int i = 0; i < ROW_COUNT; i++) {
+            rows[i] = new Object[]{
+                    (long) i + 1,
+                    "Task " + i,
+                    i % 4 == 0 ? null : "Description " + i,
+                    (long) (i % 3 == 0 ? 1 : 0),
+                    now - i * 1000L,
+                    i % 5 == 0 ? null : now + i * 60_000L,
+                    (long) (i % 3 + 1),
+                    i % 7 == 0 ? null : (long) (i % 10 + 1)
+            };
+        }
+        return new ArrayCursor(COLUMNS, rows, 0, rows.length);
+    }
+
+    // 收集各方式的吞吐量（同名的多次测量保留最快的一次），测试通过后写入 directory 下以测试类命名的文件
+    public static final class ThroughputReport extends TestWatcher {
+        private final File directory;
+        private final Map<String, Double> bestRowsPerSecond = new LinkedHashMap<>();
+
+        public ThroughputReport(File directory) {
+            this.directory = directory;
+        }
+
+        public void record(String name, int rows, long elapsedNanos) {
+            double rowsPerSecond = rows / (Math.max(elapsedNanos, 1) / 1_000_000_000.0);
+            Double best = bestRowsPerSecond.get(name);
+            bestRowsPerSecond.put(name, best != null ? Math.max(best, rowsPerSecond) : rowsPerSecond);
+        }
+
+        @Override
+        protected void succeeded(Description description) {
+            if (bestRowsPerSecond.isEmpty()) {
+                return;
+            }
+            directory.mkdirs();
+            File file = new File(directory, description.getClassName() + "." + description.getMethodName() + ".txt");
+            try (Writer writer = new FileWriter(file)) {
+                for (Map.Entry<String, Double> entry : bestRowsPerSecond.entrySet()) {
+                    writer.write(String.format("%s: %.0f rows/s%n", entry.getKey(), entry.getValue()));
+                }
+            } catch (IOException e) {
+                throw new AssertionError("Cannot write " + file, e);
+            }
+        }
+    }
+
+    // 只读的内存 Cursor：按行保存 Long/String/null，按列名查找下标时与 AbstractCursor 一样查 HashMap
+    private static final class ArrayCursor implements Cursor {
+        private final String[] columns;
+        private final Map<String, Integer> columnIndices = new HashMap<>();
+        private final Object[][] rows;
+        private final int from;
+        private final int count;
+        private int position = -1;
+
+        ArrayCursor(String[] columns, Object[][] rows, int from, int count) {
+            this.columns = columns;
+            for (int i = 0; i < columns.length; i++) {
+                columnIndices.put(columns[i], i);
+            }
+            this.rows = rows;
+            this.from = from;
+            this.count = count;
+        }
+
+        // 只含第 position 行的 Cursor，已位于该行
+        ArrayCursor at(int position) {
+            ArrayCursor single = new ArrayCursor(columns, rows, from + position, 1);
+            single.moveToFirst();
+            return single;
+        }
+
+        private Object value(int column) {
+            return rows[from + position][column];
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public int getPosition() {
+            return position;
+        }
+
+        @Override
+        public boolean move(int offset) {
+            return moveToPosition(position + offset);
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            this.position = Math.max(-1, Math.min(count, position));
+            return this.position >= 0 && this.position < count;
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            return moveToPosition(0);
+        }
+
+        @Override
+        public boolean moveToLast() {
+            return moveToPosition(count - 1);
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return moveToPosition(position + 1);
+        }
+
+        @Override
+        public boolean moveToPrevious() {
+            return moveToPosition(position - 1);
+        }
+
+        @Override
+        public boolean isFirst() {
+            return position == 0 && count > 0;
+        }
+
+        @Override
+        public boolean isLast() {
+            return position == count - 1 && count > 0;
+        }
+
+        @Override
+        public boolean isBeforeFirst() {
+            return position < 0;
+        }
+
+        @Override
+        public boolean isAfterLast() {
+            return position >= count;
+        }
+
+        @Override
+        public int getColumnIndex(String columnName) {
+            Integer index = columnIndices.get(columnName);
+            return index != null ? index : -1;
+        }
+
+        @Override
+        public int getColumnIndexOrThrow(String columnName) {
+            int index = getColumnIndex(columnName);
+            if (index < 0) {
+                throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+            }
+            return index;
+        }
+
+        @Override
+        public String getColumnName(int columnIndex) {
+            return columns[columnIndex];
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return columns.clone();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public byte[] getBlob(int columnIndex) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getString(int columnIndex) {
+            Object value = value(columnIndex);
+            return value != null ? value.toString() : null;
+        }
+
+        @Override
+        public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public short getShort(int columnIndex) {
+            return (short) getLong(columnIndex);
+        }
+
+        @Override
+        public int getInt(int columnIndex) {
+            return (int) getLong(columnIndex);
+        }
+
+        @Override
+        public long getLong(int columnIndex) {
+            Object value = value(columnIndex);
+            return value != null ? (Long) value : 0;
+        }
+
+        @Override
+        public float getFloat(int columnIndex) {
+            return getLong(columnIndex);
+        }
+
+        @Override
+        public double getDouble(int columnIndex) {
+            return getLong(columnIndex);
+        }
+
+        @Override
+        public int getType(int columnIndex) {
+            Object value = value(columnIndex);
+            return value == null ? FIELD_TYPE_NULL : value instanceof Long ? FIELD_TYPE_INTEGER : FIELD_TYPE_STRING;
+        }
+
+        @Override
+        public boolean isNull(int columnIndex) {
+            return value(columnIndex) == null;
+        }
+
+        @Override
+        public void deactivate() {
+        }
+
+        @Override
+        public boolean requery() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public void registerContentObserver(ContentObserver observer) {
+        }
+
+        @Override
+        public void unregisterContentObserver(ContentObserver observer) {
+        }
+
+        @Override
+        public void registerDataSetObserver(DataSetObserver observer) {
+        }
+
+        @Override
+        public void unregisterDataSetObserver(DataSetObserver observer) {
+        }
+
+        @Override
+        public void setNotificationUri(ContentResolver cr, Uri uri) {
+        }
+
+        @Override
+        public Uri getNotificationUri() {
+            return null;
+        }
+
+        @Override
+        public boolean getWantsAllOnMoveCalls() {
+            return false;
+        }
+
+        @Override
+        public void setExtras(Bundle extras) {
+        }
+
+        @Override
+        public Bundle getExtras() {
+            return null;
+        }
+
+        @Override
+        public Bundle respond(Bundle extras) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.ivor.todolist.database;
+
+import android.content.ContentResolver;
+import android.database.CharArrayBuffer;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * TodoRowMapper 的转换：列下标只在创建时按列名解析、每行按下标读取的列，以及转换出的字段值（空值、描述预览）。
+ */
+public class TodoRowMapperTest {
+    private static final String[] COLUMNS = {
+            TodoDatabaseHelper.COLUMN_ID,
+            TodoDatabaseHelper.COLUMN_TITLE,
+            TodoDatabaseHelper.COLUMN_DESCRIPTION,
+            TodoDatabaseHelper.COLUMN_IS_COMPLETED,
+            TodoDatabaseHelper.COLUMN_CREATED_AT,
+            TodoDatabaseHelper.COLUMN_DUE_DATE,
+            TodoDatabaseHelper.COLUMN_PRIORITY,
+            TodoDatabaseHelper.COLUMN_CATEGORY_ID
+    };
+
+    private final TodoCategories categories = new TodoCategories(null);
+    // 按列名查找下标的次数和每次读取的列名
+    private int lookups;
+    private final List<String> reads = new ArrayList<>();
+
+    @Test
+    public void map_resolvesColumnsOnceAndFillsFields() {
+        categories.register(3, "Work");
+        Cursor cursor = cursor(new Object[]{7L, "Task", "Details", 1L, 1_000L, 5_000L, 1L, 3L});
+        TodoRowMapper mapper = new TodoRowMapper(cursor, categories, false);
+        assertEquals(COLUMNS.length, lookups);
+
+        cursor.moveToNext();
+        Todo todo = mapper.map(cursor);
+        assertEquals(COLUMNS.length, lookups);
+        assertEquals(new HashSet<>(Arrays.asList(COLUMNS)), new HashSet<>(reads));
+
+        assertEquals(7, todo.getId());
+        assertEquals("Task", todo.getTitle());
+        assertEquals("Details", todo.getDescription());
+        assertTrue(todo.isDescriptionLoaded());
+        assertTrue(todo.isCompleted());
+        assertEquals(1_000L, todo.getCreatedAtMillis());
+        assertEquals(5_000L, todo.getDueDateMillis());
+        assertEquals(1, todo.getPriority());
+        assertEquals("Work", todo.getCategory());
+        assertFalse(todo.hasChanges());
+    }
+
+    @Test
+    public void getId_readsOnlyIdColumn() {
+        Cursor cursor = cursor(new Object[]{7L, "Task", null, 0L, 1_000L, null, 2L, null});
+        TodoRowMapper mapper = new TodoRowMapper(cursor, categories, false);
+        cursor.moveToNext();
+        assertEquals(7, mapper.getId(cursor));
+        assertEquals(Arrays.asList(TodoDatabaseHelper.COLUMN_ID), reads);
+    }
+
+    @Test
+    public void map_nullColumns() {
+        Cursor cursor = cursor(new Object[]{7L, "Task", null, 0L, 1_000L, null, 2L, null});
+        TodoRowMapper mapper = new TodoRowMapper(cursor, categories, false);
+        cursor.moveToNext();
+        Todo todo = mapper.map(cursor);
+
+        assertNull(todo.getDescription());
+        assertFalse(todo.isCompleted());
+        assertFalse(todo.hasDueDate());
+        assertEquals(Todo.NO_DUE_DATE, todo.getDueDateMillis());
+        assertNull(todo.getCategory());
+    }
+
+    @Test
+    public void preview_truncatesOnlyLongDescriptions() {
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i <= TodoDAO.DESCRIPTION_PREVIEW_LENGTH; i++) {
+            longText.append('x');
+        }
+        Cursor cursor = cursor(
+                new Object[]{1L, "Long", longText.toString(), 0L, 1_000L, null, 2L, null},
+                new Object[]{2L, "Short", "short", 0L, 1_000L, null, 2L, null});
+        TodoRowMapper mapper = new TodoRowMapper(cursor, categories, true);
+        Todo[] buffer = new Todo[4];
+        assertEquals(2, mapper.readInto(cursor, buffer));
+
+        assertFalse(buffer[0].isDescriptionLoaded());
+        assertEquals(TodoDAO.DESCRIPTION_PREVIEW_LENGTH, buffer[0].getDescription().length());
+        assertFalse(buffer[0].hasChanges());
+        assertTrue(buffer[1].isDescriptionLoaded());
+        assertEquals("short", buffer[1].getDescription());
+        assertEquals(0, mapper.readInto(cursor, buffer));
+    }
+
+    private Cursor cursor(Object[]... rows) {
+        return new RowCursor(rows);
+    }
+
+    // 只实现 TodoRowMapper 用到的方法，记录按列名查找和按下标读取；其他方法被调用时测试失败
+    private final class RowCursor implements Cursor {
+        private final Object[][] rows;
+        private int position = -1;
+
+        RowCursor(Object[][] rows) {
+            this.rows = rows;
+        }
+
+        private Object read(int column) {
+            reads.add(COLUMNS[column]);
+            return rows[position][column];
+        }
+
+        @Override
+        public int getColumnIndexOrThrow(String columnName) {
+            lookups++;
+            int index = Arrays.asList(COLUMNS).indexOf(columnName);
+            if (index < 0) {
+                throw new IllegalArgumentException(columnName);
+            }
+            return index;
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return ++position < rows.length;
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return rows[position][column] == null;
+        }
+
+        @Override
+        public String getString(int column) {
+            return (String) read(column);
+        }
+
+        @Override
+        public long getLong(int column) {
+            Object value = read(column);
+            return value != null ? (Long) value : 0L;
+        }
+
+        @Override
+        public int getInt(int column) {
+            Object value = read(column);
+            return value != null ? (int) (long) (Long) value : 0;
+        }
+
+        @Override public int getCount() { throw unsupported(); }
+        @Override public int getPosition() { throw unsupported(); }
+        @Override public boolean move(int offset) { throw unsupported(); }
+        @Override public boolean moveToPosition(int position) { throw unsupported(); }
+        @Override public boolean moveToFirst() { throw unsupported(); }
+        @Override public boolean moveToLast() { throw unsupported(); }
+        @Override public boolean moveToPrevious() { throw unsupported(); }
+        @Override public boolean isFirst() { throw unsupported(); }
+        @Override public boolean isLast() { throw unsupported(); }
+        @Override public boolean isBeforeFirst() { throw unsupported(); }
+        @Override public boolean isAfterLast() { throw unsupported(); }
+        @Override public int getColumnIndex(String columnName) { throw unsupported(); }
+        @Override public String getColumnName(int column) { throw unsupported(); }
+        @Override public String[] getColumnNames() { throw unsupported(); }
+        @Override public int getColumnCount() { throw unsupported(); }
+        @Override public byte[] getBlob(int column) { throw unsupported(); }
+        @Override public void copyStringToBuffer(int column, CharArrayBuffer buffer) { throw unsupported(); }
+        @Override public short getShort(int column) { throw unsupported(); }
+        @Override public float getFloat(int column) { throw unsupported(); }
+        @Override public double getDouble(int column) { throw unsupported(); }
+        @Override public int getType(int column) { throw unsupported(); }
+        @Override public void deactivate() { throw unsupported(); }
+        @Override public boolean requery() { throw unsupported(); }
+        @Override public void close() { throw unsupported(); }
+        @Override public boolean isClosed() { throw unsupported(); }
+        @Override public void registerContentObserver(ContentObserver observer) { throw unsupported(); }
+        @Override public void unregisterContentObserver(ContentObserver observer) { throw unsupported(); }
+        @Override public void registerDataSetObserver(DataSetObserver observer) { throw unsupported(); }
+        @Override public void unregisterDataSetObserver(DataSetObserver observer) { throw unsupported(); }
+        @Override public void setNotificationUri(ContentResolver resolver, Uri uri) { throw unsupported(); }
+        @Override public Uri getNotificationUri() { throw unsupported(); }
+        @Override public boolean getWantsAllOnMoveCalls() { throw unsupported(); }
+        @Override public void setExtras(Bundle extras) { throw unsupported(); }
+        @Override public Bundle getExtras() { throw unsupported(); }
+        @Override public Bundle respond(Bundle extras) { throw unsupported(); }
+
+        private UnsupportedOperationException unsupported() {
+            return new UnsupportedOperationException();
+        }
+    }
+}
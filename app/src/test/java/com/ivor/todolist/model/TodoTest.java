@@ -0,0 +1,84 @@
+package com.ivor.todolist.model;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * 时间戳字段测试：没有截止时间用 NO_DUE_DATE 表示，Date 访问方法与毫秒值互相转换，修改标记只在值变化时设置。
+ */
+public class TodoTest {
+
+    @Test
+    public void noDueDate_isSentinel() {
+        Todo todo = new Todo("Task", null);
+        assertFalse(todo.hasDueDate());
+        assertEquals(Todo.NO_DUE_DATE, todo.getDueDateMillis());
+        assertNull(todo.getDueDate());
+        assertFalse(todo.isOverdue(Long.MAX_VALUE - 1));
+
+        todo = new Todo("Task", null, (Date) null, 1);
+        assertFalse(todo.hasDueDate());
+    }
+
+    @Test
+    public void dateAccessors_convertMillis() {
+        Todo todo = new Todo("Task", null, 5_000L, 1);
+        assertEquals(new Date(5_000L), todo.getDueDate());
+        // 返回的是副本，修改它不影响 Todo
+        todo.getDueDate().setTime(0);
+        assertEquals(5_000L, todo.getDueDateMillis());
+
+        todo.setDueDate(null);
+        assertFalse(todo.hasDueDate());
+        todo.setCreatedAt(new Date(42L));
+        assertEquals(42L, todo.getCreatedAtMillis());
+        assertEquals(new Date(42L), todo.getCreatedAt());
+    }
+
+    @Test
+    public void isOverdue_comparesWithNow() {
+        Todo todo = new Todo("Task", null, 1_000L, 1);
+        assertFalse(todo.isOverdue(1_000L));
+        assertTrue(todo.isOverdue(1_001L));
+        todo.setCompleted(true);
+        assertFalse(todo.isOverdue(1_001L));
+    }
+
+    @Test
+    public void setters_markDirtyOnlyOnChange() {
+        Todo todo = new Todo("Task", null, 1_000L, 1);
+        todo.clearDirtyFields();
+        todo.setDueDate(new Date(1_000L));
+        todo.setCreatedAtMillis(todo.getCreatedAtMillis());
+        assertFalse(todo.hasChanges());
+
+        todo.setDueDateMillis(Todo.NO_DUE_DATE);
+        assertEquals(Todo.FIELD_DUE_DATE, todo.getDirtyFields());
+        todo.setCreatedAt(new Date(7L));
+        assertEquals(Todo.FIELD_DUE_DATE | Todo.FIELD_CREATED_AT, todo.takeDirtyFields());
+    }
+
+    @Test
+    public void copy_isIndependentAndClean() {
+        Todo todo = new Todo("Task", null, 1_000L, 1);
+        todo.setId(3);
+        todo.setDescriptionPreview("Prev");
+        todo.setCategory("Work");
+
+        Todo copy = todo.copy();
+        assertEquals(3, copy.getId());
+        assertEquals("Task", copy.getTitle());
+        assertEquals("Prev", copy.getDescription());
+        assertFalse(copy.isDescriptionLoaded());
+        assertEquals(1_000L, copy.getDueDateMillis());
+        assertEquals(todo.getCreatedAtMillis(), copy.getCreatedAtMillis());
+        assertEquals("Work", copy.getCategory());
+        assertFalse(copy.hasChanges());
+
+        copy.setTitle("Changed");
+        assertEquals("Task", todo.getTitle());
+    }
+}
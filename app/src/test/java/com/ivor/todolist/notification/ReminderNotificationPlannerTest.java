@@ -0,0 +1,135 @@
+package com.ivor.todolist.notification;
+
+import com.ivor.todolist.model.Todo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 成批送达提醒的通知安排：单独通知数量受限，超出的并入摘要；发布频率用完时交还调用方的提醒，以及摘要被清除时的处理。
+ */
+public class ReminderNotificationPlannerTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final ReminderNotificationPlanner planner = new ReminderNotificationPlanner();
+
+    @Test
+    public void singleReminder_postedAloneWithoutSummary() {
+        ReminderNotificationPlanner.Plan plan = planner.plan(todos(1, 1), 0, false, NOW);
+        assertEquals(1, plan.individual.size());
+        assertFalse(plan.postSummary);
+        assertEquals(0, plan.overflowCount);
+    }
+
+    @Test
+    public void burst_overflowRollsIntoSummary() {
+        List<Todo> due = todos(1, 20);
+        ReminderNotificationPlanner.Plan plan = planner.plan(due, 0, false, NOW);
+
+        // 摘要占用一次发布
+        int individual = ReminderNotificationPlanner.MAX_POSTS_PER_SECOND - 1;
+        assertEquals(due.subList(0, individual), plan.individual);
+        assertTrue(plan.postSummary);
+        assertEquals(20 - individual, plan.overflowCount);
+        assertEquals(20, plan.totalCount);
+        // 最新并入的在前，只列出 MAX_SUMMARY_LINES 个
+        assertEquals(ReminderNotificationPlanner.MAX_SUMMARY_LINES, plan.summaryLines.size());
+        assertEquals("Task 20", plan.summaryLines.get(0));
+    }
+
+    @Test
+    public void liveCap_sendsEverythingToSummary() {
+        ReminderNotificationPlanner.Plan plan = planner.plan(todos(1, 3), ReminderNotificationPlanner.MAX_LIVE,
+                true, NOW);
+        assertTrue(plan.individual.isEmpty());
+        assertTrue(plan.postSummary);
+        assertEquals(3, plan.overflowCount);
+        assertEquals(ReminderNotificationPlanner.MAX_LIVE + 3, plan.totalCount);
+    }
+
+    @Test
+    public void rateLimit_returnsUnshownRemindersToCaller() {
+        ReminderNotificationPlanner.Plan first = planner.plan(todos(1, 10), 0, false, NOW);
+        int live = first.individual.size();
+        assertTrue(first.postSummary);
+        assertTrue(first.deferred.isEmpty());
+
+        // 同一秒内发布次数已用完：不发布任何通知，新的提醒交还调用方，不记入摘要
+        List<Todo> due = todos(11, 2);
+        ReminderNotificationPlanner.Plan second = planner.plan(due, live, true, NOW + 500);
+        assertTrue(second.individual.isEmpty());
+        assertFalse(second.postSummary);
+        assertEquals(due, second.deferred);
+
+        // 下一秒重新送达时正常发布，摘要中仍只有第一批并入的提醒
+        ReminderNotificationPlanner.Plan third = planner.plan(due, live, true, NOW + 1_000);
+        assertEquals(due, third.individual);
+        assertTrue(third.postSummary);
+        assertTrue(third.deferred.isEmpty());
+        assertEquals(first.overflowCount, third.overflowCount);
+        assertEquals("Task 10", third.summaryLines.get(0));
+    }
+
+    @Test
+    public void exhaustedBudget_defersSingleReminderWithoutSummary() {
+        // 第一批用完了本秒的发布次数（4 条单独提醒和摘要）
+        ReminderNotificationPlanner.Plan first = planner.plan(todos(1, 4), 0, false, NOW);
+        assertEquals(4, first.individual.size());
+        assertTrue(first.postSummary);
+
+        // 通知都已被清除，只来了一个提醒，不需要摘要，但也不能发布
+        List<Todo> due = todos(5, 1);
+        ReminderNotificationPlanner.Plan deferred = planner.plan(due, 0, false, NOW + 10);
+        assertTrue(deferred.individual.isEmpty());
+        assertFalse(deferred.postSummary);
+        assertEquals(due, deferred.deferred);
+
+        ReminderNotificationPlanner.Plan retried = planner.plan(due, 0, false,
+                NOW + ReminderNotificationPlanner.RATE_WINDOW_MS);
+        assertEquals(due, retried.individual);
+        assertFalse(retried.postSummary);
+        assertTrue(retried.deferred.isEmpty());
+    }
+
+    @Test
+    public void dismissedSummary_clearsOverflow() {
+        ReminderNotificationPlanner.Plan first = planner.plan(todos(1, 10), 0, false, NOW);
+        assertTrue(first.overflowCount > 0);
+
+        // 用户清除了摘要和所有提醒
+        ReminderNotificationPlanner.Plan next = planner.plan(todos(11, 1), 0, false, NOW + 60_000);
+        assertEquals(1, next.individual.size());
+        assertFalse(next.postSummary);
+        assertEquals(0, next.overflowCount);
+    }
+
+    @Test
+    public void dismissedSummary_doesNotDropDeferredReminders() {
+        // 第一批发布了摘要（没有并入的提醒），之后同一秒内的提醒交还调用方
+        planner.plan(todos(1, 4), 0, false, NOW);
+        List<Todo> due = todos(5, 3);
+        ReminderNotificationPlanner.Plan deferred = planner.plan(due, 4, true, NOW + 10);
+        assertEquals(due, deferred.deferred);
+        // 用户清除了第一批的摘要，重新送达的提醒从未显示过，照常发布
+        ReminderNotificationPlanner.Plan posted = planner.plan(due, 4, false, NOW + 2_000);
+        assertEquals(due, posted.individual);
+        assertTrue(posted.postSummary);
+        assertEquals(0, posted.overflowCount);
+        assertEquals(7, posted.totalCount);
+    }
+
+    private static List<Todo> todos(int first, int count) {
+        List<Todo> todos = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) {
+            Todo todo = new Todo("Task " + i, null, NOW + i * 60_000L, 2);
+            todo.setId(i);
+            todos.add(todo);
+        }
+        return todos;
+    }
+}